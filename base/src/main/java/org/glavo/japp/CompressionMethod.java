@@ -21,7 +21,18 @@ import java.nio.ByteBuffer;
 public enum CompressionMethod {
     NONE,
     CLASSFILE,
-    ZSTD;
+    ZSTD,
+    ZSTD_DICT,
+
+    /**
+     * The resource is an entry of a solid block, see {@code SolidBlock} in the specification.
+     */
+    SOLID,
+
+    /**
+     * The data is an LZ4 block, whose uncompressed size is recorded outside the block.
+     */
+    LZ4;
 
     private static final CompressionMethod[] METHODS = values();
 
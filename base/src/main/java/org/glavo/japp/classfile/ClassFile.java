@@ -42,6 +42,16 @@ public final class ClassFile {
     public static final byte CONSTANT_EXTERNAL_STRING_Descriptor = -3;
     public static final byte CONSTANT_EXTERNAL_STRING_Signature = -4;
 
+    /**
+     * The tail (everything after the constant pool) is stored as is.
+     */
+    public static final byte TAIL_RAW = 0;
+
+    /**
+     * The tail is split into streams, see {@link ColumnarTailCodec}.
+     */
+    public static final byte TAIL_COLUMNAR = 1;
+
     public static final byte[] CONSTANT_SIZE = new byte[32];
     static {
         CONSTANT_SIZE[CONSTANT_Integer] = 4;
@@ -0,0 +1,317 @@
+/*
+ * Copyright 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.classfile;
+
+import java.io.IOException;
+
+/**
+ * Walks the tail of a class file (everything after the constant pool) as a sequence of values,
+ * each of which belongs to one of the streams.
+ * <p>
+ * The encoder reads the values from the class file and appends them to the streams,
+ * the decoder reads them from the streams and writes the class file,
+ * so that both sides always agree on the layout of the streams.
+ * The bodies of the {@code Code} attributes are split into instructions and operands,
+ * the bodies of other attributes are copied to {@link #STREAM_OTHERS} as is.
+ */
+public abstract class ColumnarTailCodec {
+
+    public static final int STREAM_OPCODES = 0;
+    public static final int STREAM_CONSTANTS = 1;
+    public static final int STREAM_LOCALS = 2;
+    public static final int STREAM_BRANCHES = 3;
+    public static final int STREAM_FLAGS = 4;
+    public static final int STREAM_LENGTHS = 5;
+    public static final int STREAM_OTHERS = 6;
+
+    public static final int STREAM_COUNT = 7;
+
+    private static final byte KIND_INVALID = 0;
+    private static final byte KIND_NONE = 1;
+    private static final byte KIND_LOCAL = 2;
+    private static final byte KIND_BYTE = 3;
+    private static final byte KIND_SHORT = 4;
+    private static final byte KIND_CONSTANT_U1 = 5;
+    private static final byte KIND_CONSTANT = 6;
+    private static final byte KIND_IINC = 7;
+    private static final byte KIND_BRANCH = 8;
+    private static final byte KIND_BRANCH_WIDE = 9;
+    private static final byte KIND_INVOKEINTERFACE = 10;
+    private static final byte KIND_INVOKEDYNAMIC = 11;
+    private static final byte KIND_MULTIANEWARRAY = 12;
+    private static final byte KIND_WIDE = 13;
+    private static final byte KIND_TABLESWITCH = 14;
+    private static final byte KIND_LOOKUPSWITCH = 15;
+
+    private static final int OPCODE_IINC = 0x84;
+
+    private static final byte[] OPCODE_KINDS = new byte[256];
+
+    private static void setKind(int from, int to, byte kind) {
+        for (int opcode = from; opcode <= to; opcode++) {
+            OPCODE_KINDS[opcode] = kind;
+        }
+    }
+
+    static {
+        setKind(0x00, 0xc3, KIND_NONE);
+
+        setKind(0x10, 0x10, KIND_BYTE); // bipush
+        setKind(0x11, 0x11, KIND_SHORT); // sipush
+        setKind(0x12, 0x12, KIND_CONSTANT_U1); // ldc
+        setKind(0x13, 0x14, KIND_CONSTANT); // ldc_w, ldc2_w
+        setKind(0x15, 0x19, KIND_LOCAL); // iload ... aload
+        setKind(0x36, 0x3a, KIND_LOCAL); // istore ... astore
+        setKind(OPCODE_IINC, OPCODE_IINC, KIND_IINC);
+        setKind(0x99, 0xa8, KIND_BRANCH); // ifeq ... jsr
+        setKind(0xa9, 0xa9, KIND_LOCAL); // ret
+        setKind(0xaa, 0xaa, KIND_TABLESWITCH);
+        setKind(0xab, 0xab, KIND_LOOKUPSWITCH);
+        setKind(0xb2, 0xb8, KIND_CONSTANT); // getstatic ... invokestatic
+        setKind(0xb9, 0xb9, KIND_INVOKEINTERFACE);
+        setKind(0xba, 0xba, KIND_INVOKEDYNAMIC);
+        setKind(0xbb, 0xbb, KIND_CONSTANT); // new
+        setKind(0xbc, 0xbc, KIND_BYTE); // newarray
+        setKind(0xbd, 0xbd, KIND_CONSTANT); // anewarray
+        setKind(0xc0, 0xc1, KIND_CONSTANT); // checkcast, instanceof
+        setKind(0xc4, 0xc4, KIND_WIDE);
+        setKind(0xc5, 0xc5, KIND_MULTIANEWARRAY);
+        setKind(0xc6, 0xc7, KIND_BRANCH); // ifnull, ifnonnull
+        setKind(0xc8, 0xc9, KIND_BRANCH_WIDE); // goto_w, jsr_w
+    }
+
+    private final int codeNameIndex;
+
+    /**
+     * @param codeNameIndex the index of the {@code CONSTANT_Utf8} entry {@code "Code"},
+     *                      or {@code 0} if the bodies of all attributes are copied as is
+     */
+    protected ColumnarTailCodec(int codeNameIndex) {
+        this.codeNameIndex = codeNameIndex;
+    }
+
+    protected abstract int u1(int stream) throws IOException;
+
+    protected abstract int u2(int stream) throws IOException;
+
+    protected abstract int u4(int stream) throws IOException;
+
+    protected abstract void copy(int stream, int length) throws IOException;
+
+    public final void walk() throws IOException {
+        u2(STREAM_FLAGS); // access_flags
+        u2(STREAM_CONSTANTS); // this_class
+        u2(STREAM_CONSTANTS); // super_class
+
+        int interfacesCount = u2(STREAM_LENGTHS);
+        for (int i = 0; i < interfacesCount; i++) {
+            u2(STREAM_CONSTANTS);
+        }
+
+        // fields
+        walkMembers();
+
+        // methods
+        walkMembers();
+
+        walkAttributes();
+    }
+
+    private void walkMembers() throws IOException {
+        int count = u2(STREAM_LENGTHS);
+        for (int i = 0; i < count; i++) {
+            u2(STREAM_FLAGS); // access_flags
+            u2(STREAM_CONSTANTS); // name_index
+            u2(STREAM_CONSTANTS); // descriptor_index
+            walkAttributes();
+        }
+    }
+
+    /**
+     * Returns the size of the attribute table.
+     */
+    private long walkAttributes() throws IOException {
+        long size = 2;
+
+        int attributesCount = u2(STREAM_LENGTHS);
+        for (int i = 0; i < attributesCount; i++) {
+            int attributeNameIndex = u2(STREAM_CONSTANTS);
+            int attributeLength = u4(STREAM_LENGTHS);
+            if (attributeLength < 0) {
+                throw new IOException("attribute length is too large");
+            }
+
+            if (codeNameIndex != 0 && attributeNameIndex == codeNameIndex) {
+                long actual = walkCode();
+                if (actual != attributeLength) {
+                    throw new IOException("Code attribute length mismatch (expected=" + attributeLength + ", actual=" + actual + ")");
+                }
+            } else {
+                copy(STREAM_OTHERS, attributeLength);
+            }
+
+            size += 6 + (long) attributeLength;
+        }
+
+        return size;
+    }
+
+    /**
+     * Returns the size of the body of the {@code Code} attribute.
+     */
+    private long walkCode() throws IOException {
+        u2(STREAM_LENGTHS); // max_stack
+        u2(STREAM_LENGTHS); // max_locals
+
+        int codeLength = u4(STREAM_LENGTHS);
+        if (codeLength < 0) {
+            throw new IOException("code length is too large");
+        }
+        walkInstructions(codeLength);
+
+        int exceptionTableLength = u2(STREAM_LENGTHS);
+        for (int i = 0; i < exceptionTableLength; i++) {
+            u2(STREAM_BRANCHES); // start_pc
+            u2(STREAM_BRANCHES); // end_pc
+            u2(STREAM_BRANCHES); // handler_pc
+            u2(STREAM_CONSTANTS); // catch_type
+        }
+
+        return 8 + (long) codeLength + 2 + exceptionTableLength * 8L + walkAttributes();
+    }
+
+    private long walkSwitchPadding(long pc) throws IOException {
+        while ((pc & 3) != 0) {
+            u1(STREAM_OTHERS);
+            pc++;
+        }
+        return pc;
+    }
+
+    private void walkInstructions(int codeLength) throws IOException {
+        long pc = 0;
+        while (pc < codeLength) {
+            int opcode = u1(STREAM_OPCODES);
+            pc++;
+
+            switch (OPCODE_KINDS[opcode]) {
+                case KIND_NONE:
+                    break;
+                case KIND_LOCAL:
+                    u1(STREAM_LOCALS);
+                    pc += 1;
+                    break;
+                case KIND_BYTE:
+                    u1(STREAM_OTHERS);
+                    pc += 1;
+                    break;
+                case KIND_SHORT:
+                    u2(STREAM_OTHERS);
+                    pc += 2;
+                    break;
+                case KIND_CONSTANT_U1:
+                    u1(STREAM_CONSTANTS);
+                    pc += 1;
+                    break;
+                case KIND_CONSTANT:
+                    u2(STREAM_CONSTANTS);
+                    pc += 2;
+                    break;
+                case KIND_IINC:
+                    u1(STREAM_LOCALS);
+                    u1(STREAM_OTHERS); // const
+                    pc += 2;
+                    break;
+                case KIND_BRANCH:
+                    u2(STREAM_BRANCHES);
+                    pc += 2;
+                    break;
+                case KIND_BRANCH_WIDE:
+                    u4(STREAM_BRANCHES);
+                    pc += 4;
+                    break;
+                case KIND_INVOKEINTERFACE:
+                    u2(STREAM_CONSTANTS);
+                    u1(STREAM_OTHERS); // count
+                    u1(STREAM_OTHERS); // 0
+                    pc += 4;
+                    break;
+                case KIND_INVOKEDYNAMIC:
+                    u2(STREAM_CONSTANTS);
+                    u2(STREAM_OTHERS); // 0, 0
+                    pc += 4;
+                    break;
+                case KIND_MULTIANEWARRAY:
+                    u2(STREAM_CONSTANTS);
+                    u1(STREAM_OTHERS); // dimensions
+                    pc += 3;
+                    break;
+                case KIND_WIDE: {
+                    int modifiedOpcode = u1(STREAM_OPCODES);
+                    if (modifiedOpcode == OPCODE_IINC) {
+                        u2(STREAM_LOCALS);
+                        u2(STREAM_OTHERS); // const
+                        pc += 5;
+                    } else if (OPCODE_KINDS[modifiedOpcode] == KIND_LOCAL) {
+                        u2(STREAM_LOCALS);
+                        pc += 3;
+                    } else {
+                        throw new IOException(String.format("Invalid wide opcode: 0x%02x", modifiedOpcode));
+                    }
+                    break;
+                }
+                case KIND_TABLESWITCH: {
+                    pc = walkSwitchPadding(pc);
+                    u4(STREAM_BRANCHES); // default
+                    int low = u4(STREAM_OTHERS);
+                    int high = u4(STREAM_OTHERS);
+
+                    long count = (long) high - low + 1;
+                    if (count < 0 || count > codeLength) {
+                        throw new IOException("Invalid tableswitch (low=" + low + ", high=" + high + ")");
+                    }
+
+                    for (long i = 0; i < count; i++) {
+                        u4(STREAM_BRANCHES);
+                    }
+                    pc += 12 + count * 4;
+                    break;
+                }
+                case KIND_LOOKUPSWITCH: {
+                    pc = walkSwitchPadding(pc);
+                    u4(STREAM_BRANCHES); // default
+                    int npairs = u4(STREAM_LENGTHS);
+                    if (npairs < 0 || npairs > codeLength) {
+                        throw new IOException("Invalid lookupswitch (npairs=" + npairs + ")");
+                    }
+
+                    for (int i = 0; i < npairs; i++) {
+                        u4(STREAM_OTHERS); // match
+                        u4(STREAM_BRANCHES); // offset
+                    }
+                    pc += 8 + npairs * 8L;
+                    break;
+                }
+                default:
+                    throw new IOException(String.format("Unknown opcode: 0x%02x", opcode));
+            }
+        }
+
+        if (pc != codeLength) {
+            throw new IOException("The last instruction exceeds the code length");
+        }
+    }
+}
@@ -21,10 +21,12 @@ import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.InvalidMarkException;
 import java.util.Objects;
+import java.util.function.Consumer;
 
 public final class ByteBufferInputStream extends InputStream {
 
-    private final ByteBuffer buffer;
+    private ByteBuffer buffer;
+    private Consumer<ByteBuffer> onClose;
 
     public ByteBufferInputStream(byte[] array) {
         this.buffer = ByteBuffer.wrap(array);
@@ -34,6 +36,15 @@ public final class ByteBufferInputStream extends InputStream {
         this.buffer = buffer;
     }
 
+    /**
+     * Creates a stream that passes the buffer to {@code onClose} when it is closed, for example to return it to a pool.
+     * The stream is empty after it is closed.
+     */
+    public ByteBufferInputStream(ByteBuffer buffer, Consumer<ByteBuffer> onClose) {
+        this.buffer = buffer;
+        this.onClose = onClose;
+    }
+
     @Override
     public int available() throws IOException {
         return buffer.remaining();
@@ -118,4 +129,15 @@ public final class ByteBufferInputStream extends InputStream {
             throw new IOException(e);
         }
     }
+
+    @Override
+    public void close() throws IOException {
+        Consumer<ByteBuffer> onClose = this.onClose;
+        if (onClose != null) {
+            ByteBuffer buffer = this.buffer;
+            this.onClose = null;
+            this.buffer = ByteBuffer.allocate(0);
+            onClose.accept(buffer);
+        }
+    }
 }
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.util;
+
+import org.glavo.japp.io.LittleEndianDataOutput;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A bloom filter of UTF-8 strings.
+ * <p>
+ * Strings of different kinds can share a filter by hashing them with different seeds.
+ * Strings are hashed by their UTF-8 bytes, ASCII strings are hashed without encoding them.
+ */
+public final class BloomFilter {
+
+    private static final int BITS_PER_ENTRY = 10;
+    private static final int HASH_COUNT = 7;
+
+    private static final int MAX_WORD_COUNT = 1 << 24;
+
+    /**
+     * Creates an empty filter with a false positive rate of about 1% for the expected number of entries.
+     */
+    public static BloomFilter create(int expectedEntries) {
+        long bits = Math.max(64L, (long) expectedEntries * BITS_PER_ENTRY);
+        int wordCount = (int) Math.min(MAX_WORD_COUNT, Long.highestOneBit((bits + 63) / 64 * 2 - 1));
+        return new BloomFilter(new long[wordCount], HASH_COUNT);
+    }
+
+    public static BloomFilter readFrom(ByteBuffer buffer) throws IOException {
+        int wordCount = buffer.getInt();
+        int hashCount = Byte.toUnsignedInt(buffer.get());
+        if (wordCount <= 0 || wordCount > MAX_WORD_COUNT || Integer.bitCount(wordCount) != 1 || hashCount == 0) {
+            throw new IOException(String.format("Invalid bloom filter (words=%d, hashes=%d)", wordCount, hashCount));
+        }
+
+        long[] words = new long[wordCount];
+        for (int i = 0; i < wordCount; i++) {
+            words[i] = buffer.getLong();
+        }
+        return new BloomFilter(words, hashCount);
+    }
+
+    private final long[] words;
+    private final int hashCount;
+
+    private BloomFilter(long[] words, int hashCount) {
+        this.words = words;
+        this.hashCount = hashCount;
+    }
+
+    private static long mix(long h) {
+        h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+        h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    private static long hash(byte[] bytes, int offset, int length, long seed) {
+        long h = 0xcbf29ce484222325L ^ seed;
+        for (int i = 0; i < length; i++) {
+            h = (h ^ (bytes[offset + i] & 0xff)) * 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    private static long hash(String str, long seed) {
+        long h = 0xcbf29ce484222325L ^ seed;
+        for (int i = 0; i < str.length(); i++) {
+            char ch = str.charAt(i);
+            if (ch >= 0x80) {
+                byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+                return hash(bytes, 0, bytes.length, seed);
+            }
+            h = (h ^ ch) * 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    private void add(long hash) {
+        int mask = words.length * 64 - 1;
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            int bit = (h1 + i * h2) & mask;
+            words[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    private boolean mightContain(long hash) {
+        int mask = words.length * 64 - 1;
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            int bit = (h1 + i * h2) & mask;
+            if ((words[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void add(String str, long seed) {
+        add(hash(str, seed));
+    }
+
+    /**
+     * Returns {@code false} if the string is definitely not in the filter.
+     */
+    public boolean mightContain(String str, long seed) {
+        return mightContain(hash(str, seed));
+    }
+
+    /**
+     * Returns {@code false} if the UTF-8 encoded string {@code bytes[offset, offset + length)} is definitely not in the filter.
+     */
+    public boolean mightContain(byte[] bytes, int offset, int length, long seed) {
+        return mightContain(hash(bytes, offset, length, seed));
+    }
+
+    public void writeTo(LittleEndianDataOutput output) throws IOException {
+        output.writeInt(words.length);
+        output.writeByte((byte) hashCount);
+        for (long word : words) {
+            output.writeLong(word);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.util;
+
+public final class SizeUtils {
+
+    /**
+     * Parses sizes such as {@code 4096}, {@code 256K}, {@code 1M} and {@code 2G}, returns {@code -1} if the size is invalid.
+     */
+    public static long parseSize(String value) {
+        long unit = 1;
+        if (value.endsWith("K") || value.endsWith("k")) {
+            unit = 1024;
+        } else if (value.endsWith("M") || value.endsWith("m")) {
+            unit = 1024 * 1024;
+        } else if (value.endsWith("G") || value.endsWith("g")) {
+            unit = 1024 * 1024 * 1024;
+        }
+
+        try {
+            long size = Long.parseLong(unit == 1 ? value : value.substring(0, value.length() - 1));
+            return size >= 0 && size <= Long.MAX_VALUE / unit ? size * unit : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private SizeUtils() {
+    }
+}
@@ -39,9 +39,14 @@ public final class XxHash64 {
         if (buffer.hasArray()) {
             inputBase = buffer.array();
             inputAddress = ARRAY_BYTE_BASE_OFFSET + buffer.arrayOffset() + buffer.position();
-        } else {
+        } else if (buffer.isDirect()) {
             inputBase = null;
-            inputAddress = MemoryAccess.getDirectBufferAddress(buffer);
+            inputAddress = MemoryAccess.getDirectBufferAddress(buffer) + buffer.position();
+        } else {
+            // Read-only heap buffer, whose array is not accessible
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.duplicate().get(bytes);
+            return hash(seed, bytes);
         }
         inputLimit = inputAddress + buffer.remaining();
 
@@ -31,7 +31,8 @@ public final class JAppBootArgs {
         ADD_READS,
         ADD_EXPORTS,
         ADD_OPENS,
-        ENABLE_NATIVE_ACCESS;
+        ENABLE_NATIVE_ACCESS,
+        PLUGIN_MODULES;
 
         private static final Field[] VALUES = values();
 
@@ -61,5 +62,12 @@ public final class JAppBootArgs {
 
     final List<String> enableNativeAccess = new ArrayList<>();
 
+    final List<String> pluginModules = new ArrayList<>();
+
     final List<Path> externalModules = new ArrayList<>();
+
+    /**
+     * The verifier started after the main class is loaded, or {@code null} if the verify mode is not background.
+     */
+    JAppVerifier backgroundVerifier;
 }
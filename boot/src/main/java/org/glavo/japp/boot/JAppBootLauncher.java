@@ -32,7 +32,22 @@ import java.nio.ByteOrder;
 import java.util.*;
 
 public final class JAppBootLauncher {
-    private static void addExportsOrOpens(ModuleLayer layer, boolean opens, List<String> list) {
+    /**
+     * Returns the module, or {@code null} if it is a plugin module that has not been loaded into the layer.
+     * The options that refer to a plugin module are applied again when the module is loaded.
+     */
+    private static Module findModule(ModuleLayer layer, String name, Set<String> pluginModules) {
+        Optional<Module> module = layer.findModule(name);
+        if (module.isPresent()) {
+            return module.get();
+        }
+        if (pluginModules.contains(name)) {
+            return null;
+        }
+        throw new IllegalArgumentException("Module " + name + " not found");
+    }
+
+    private static void addExportsOrOpens(ModuleLayer layer, boolean opens, List<String> list, Set<String> pluginModules) {
         for (String value : list) {
             int pos = value.indexOf('=');
             if (pos <= 0) {
@@ -44,7 +59,10 @@ public final class JAppBootLauncher {
                 throw new IllegalArgumentException(value);
             }
 
-            Module sourceModule = layer.findModule(left[0]).get();
+            Module sourceModule = findModule(layer, left[0], pluginModules);
+            if (sourceModule == null) {
+                continue;
+            }
             String sourcePackage = left[1];
 
             for (String name : value.substring(pos + 1).split(",")) {
@@ -52,26 +70,30 @@ public final class JAppBootLauncher {
                     continue;
                 }
 
-                Module targetModule = name.equals("ALL-UNNAMED") ? null : layer.findModule(name).get();
-
-                if (opens) {
-                    if (targetModule == null) {
+                if (name.equals("ALL-UNNAMED")) {
+                    if (opens) {
                         Modules.addOpensToAllUnnamed(sourceModule, sourcePackage);
                     } else {
-                        Modules.addOpens(sourceModule, sourcePackage, targetModule);
-                    }
-                } else {
-                    if (targetModule == null) {
                         Modules.addExportsToAllUnnamed(sourceModule, sourcePackage);
-                    } else {
-                        Modules.addExports(sourceModule, sourcePackage, targetModule);
                     }
+                    continue;
+                }
+
+                Module targetModule = findModule(layer, name, pluginModules);
+                if (targetModule == null) {
+                    continue;
+                }
+
+                if (opens) {
+                    Modules.addOpens(sourceModule, sourcePackage, targetModule);
+                } else {
+                    Modules.addExports(sourceModule, sourcePackage, targetModule);
                 }
             }
         }
     }
 
-    private static void addReads(ModuleLayer layer, List<String> list) {
+    private static void addReads(ModuleLayer layer, List<String> list, Set<String> pluginModules) {
         for (String value : list) {
             int pos = value.indexOf('=');
             if (pos <= 0) {
@@ -79,25 +101,30 @@ public final class JAppBootLauncher {
             }
 
             String left = value.substring(0, pos);
-            Module sourceModule = layer.findModule(left).get();
+            Module sourceModule = findModule(layer, left, pluginModules);
+            if (sourceModule == null) {
+                continue;
+            }
 
             for (String name : value.substring(pos + 1).split(",")) {
                 if (name.isEmpty()) {
                     continue;
                 }
 
-                Module targetModule = name.equals("ALL-UNNAMED") ? null : layer.findModule(name).get();
-
-                if (targetModule == null) {
+                if (name.equals("ALL-UNNAMED")) {
                     Modules.addReadsAllUnnamed(sourceModule);
-                } else {
+                    continue;
+                }
+
+                Module targetModule = findModule(layer, name, pluginModules);
+                if (targetModule != null) {
                     Modules.addReads(sourceModule, targetModule);
                 }
             }
         }
     }
 
-    private static void enableNativeAccess(ModuleLayer layer, List<String> list) throws Throwable {
+    private static void enableNativeAccess(ModuleLayer layer, List<String> list, Set<String> pluginModules) throws Throwable {
         if (list.isEmpty()) {
             return;
         }
@@ -108,15 +135,20 @@ public final class JAppBootLauncher {
                         MethodType.methodType(Module.class));
 
         for (String m : list) {
-            Optional<Module> module = layer.findModule(m);
-            if (!module.isPresent()) {
-                throw new IllegalArgumentException("Module " + m + " not found");
+            Module module = findModule(layer, m, pluginModules);
+            if (module != null) {
+                Module ignored = (Module) implAddEnableNativeAccess.invokeExact(module);
             }
-
-            Module ignored = (Module) implAddEnableNativeAccess.invokeExact(module.get());
         }
     }
 
+    private static void applyModuleOptions(ModuleLayer layer, JAppBootArgs args, Set<String> pluginModules) throws Throwable {
+        addReads(layer, args.addReads, pluginModules);
+        addExportsOrOpens(layer, true, args.addOpens, pluginModules);
+        addExportsOrOpens(layer, false, args.addExports, pluginModules);
+        enableNativeAccess(layer, args.enableNativeAccess, pluginModules);
+    }
+
     private static Method findMainMethod() throws Throwable {
         String bootArgs = System.getProperty("org.glavo.japp.boot.args");
         if (bootArgs == null) {
@@ -133,6 +165,16 @@ public final class JAppBootLauncher {
         ModuleLayer layer;
 
         Map<String, JAppResourceGroup> modules = reader.getRoot(JAppResourceRoot.MODULES);
+
+        // The plugin modules are kept out of the application layer, they are loaded by JAppPluginManager on demand
+        Set<String> pluginModules = new HashSet<>(args.pluginModules);
+        Map<String, JAppResourceGroup> pluginGroups = new LinkedHashMap<>();
+        if (!pluginModules.isEmpty()) {
+            Map<String, JAppResourceGroup> bootModules = new LinkedHashMap<>();
+            modules.forEach((name, group) -> (pluginModules.contains(name) ? pluginGroups : bootModules).put(name, group));
+            modules = bootModules;
+        }
+
         if (modules.isEmpty() && args.externalModules.isEmpty()) {
             layer = ModuleLayer.boot();
         } else {
@@ -151,10 +193,20 @@ public final class JAppBootLauncher {
             layer = ModuleLayer.defineModules(configuration, Collections.singletonList(ModuleLayer.boot()), mn -> loader).layer();
         }
 
-        addReads(layer, args.addReads);
-        addExportsOrOpens(layer, true, args.addOpens);
-        addExportsOrOpens(layer, false, args.addExports);
-        enableNativeAccess(layer, args.enableNativeAccess);
+        applyModuleOptions(layer, args, pluginModules);
+
+        if (!pluginGroups.isEmpty()) {
+            JAppModuleFinder pluginFinder = new JAppModuleFinder(reader, pluginGroups, null, false);
+            JAppPluginManager.setInstance(new JAppPluginManager(pluginFinder, pluginGroups.keySet(), layer, pluginLayer -> {
+                try {
+                    applyModuleOptions(pluginLayer, args, pluginModules);
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+        }
 
         Class<?> mainClass;
         Module mainModule;
@@ -179,7 +231,11 @@ public final class JAppBootLauncher {
             Modules.addOpens(mainModule, mainClass.getPackageName(), JAppBootLauncher.class.getModule());
         }
 
-        return mainClass.getMethod("main", String[].class);
+        Method mainMethod = mainClass.getMethod("main", String[].class);
+        if (args.backgroundVerifier != null) {
+            args.backgroundVerifier.startInBackground();
+        }
+        return mainMethod;
     }
 
     public static void main(String[] args) throws Throwable {
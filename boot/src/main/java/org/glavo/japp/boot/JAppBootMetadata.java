@@ -15,110 +15,86 @@
  */
 package org.glavo.japp.boot;
 
-import org.glavo.japp.CompressionMethod;
+import org.glavo.japp.boot.decompressor.ZstdDecompressorPool;
 import org.glavo.japp.boot.decompressor.classfile.ByteArrayPool;
+import org.glavo.japp.boot.decompressor.zstd.ZstdDictionary;
 import org.glavo.japp.boot.decompressor.zstd.ZstdFrameDecompressor;
-import org.glavo.japp.util.ByteBufferUtils;
-import org.glavo.japp.util.XxHash64;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.util.Arrays;
 import java.util.List;
 
 public final class JAppBootMetadata {
     public static final int MAGIC_NUMBER = 0x544f4f42;
 
+    /**
+     * The groups are followed by a {@link JAppServiceIndex}.
+     */
+    public static final int FLAG_SERVICE_INDEX = 0x0001;
+
     public static JAppBootMetadata readFrom(ByteBuffer buffer, ZstdFrameDecompressor decompressor) throws IOException {
+        return readFrom(buffer, decompressor, true);
+    }
+
+    /**
+     * @param verifyGroups whether the checksums of the groups are verified when they are decoded
+     */
+    public static JAppBootMetadata readFrom(ByteBuffer buffer, ZstdFrameDecompressor decompressor, boolean verifyGroups) throws IOException {
         int bootMagic = buffer.getInt();
         if (bootMagic != MAGIC_NUMBER) {
             throw new IOException(String.format("Wrong boot magic: 0x%02x", bootMagic));
         }
 
+        int flags = buffer.getInt();
+        if ((flags & ~FLAG_SERVICE_INDEX) != 0) {
+            throw new IOException(String.format("Unknown boot metadata flags: 0x%08x", flags));
+        }
+
         int groupCount = buffer.getInt();
 
         ByteArrayPool pool = ByteArrayPool.readFrom(buffer, decompressor);
 
-        JAppResourceGroup[] groups = new JAppResourceGroup[groupCount];
-
-        ByteBuffer uncompressedBuffer = ByteBuffer.allocate(8192).order(ByteOrder.LITTLE_ENDIAN);
-        for (int i = 0; i < groupCount; i++) {
-            byte magic = buffer.get();
-            if (magic != JAppResourceGroup.MAGIC_NUMBER) {
-                throw new IOException(String.format("Wrong resource group magic: 0x%02x", magic));
-            }
-
-            CompressionMethod compressionMethod = CompressionMethod.readFrom(buffer);
-
-            short reserved = buffer.getShort();
-            if (reserved != 0) {
-                throw new IOException("Reserved is not 0");
-            }
-
-            int uncompressedSize = buffer.getInt();
-            int compressedSize = buffer.getInt();
-            int resourcesCount = buffer.getInt();
-            long checksum = buffer.getLong();
-
-            JAppResourceGroup group = new JAppResourceGroup();
-
-            ByteBuffer compressedBuffer = ByteBufferUtils.slice(buffer, buffer.position(), compressedSize).order(ByteOrder.LITTLE_ENDIAN);
-            buffer.position(buffer.position() + compressedSize);
-
-            ByteBuffer uncompressed;
-            if (compressionMethod == CompressionMethod.NONE) {
-                uncompressed = compressedBuffer;
-            } else {
-                if (uncompressedBuffer.capacity() >= uncompressedSize) {
-                    uncompressedBuffer.clear();
-                } else {
-                    int nextLen = Math.max(uncompressedSize, uncompressedBuffer.capacity() * 2);
-                    uncompressedBuffer = ByteBuffer.allocate(nextLen).order(ByteOrder.LITTLE_ENDIAN);
-                }
-                uncompressedBuffer.limit(uncompressedSize);
-
-                if (compressionMethod == CompressionMethod.ZSTD) {
-                    decompressor.decompress(compressedBuffer, uncompressedBuffer);
-                    if (uncompressedBuffer.hasRemaining()) {
-                        throw new IOException();
-                    }
-                    uncompressedBuffer.flip();
-                } else {
-                    throw new IOException("Unsupported compression method: " + compressionMethod);
-                }
-                uncompressed = uncompressedBuffer;
-            }
-
-            long actualChecksum = XxHash64.hashByteBufferWithoutUpdate(uncompressed);
-            if (actualChecksum != checksum) {
-                throw new IOException(String.format(
-                        "Failed while verifying resource group at index %d (expected=%x, actual=%x)",
-                        i, checksum, actualChecksum
-                ));
-            }
-
-            for (int j = 0; j < resourcesCount; j++) {
-                JAppResource resource = JAppResource.readFrom(uncompressed);
-                group.put(resource.getName(), resource);
-            }
+        int dictionaryCount = buffer.getInt();
+        ZstdDictionary[] dictionaries = new ZstdDictionary[dictionaryCount];
+        for (int i = 0; i < dictionaryCount; i++) {
+            byte[] dictionary = new byte[buffer.getInt()];
+            buffer.get(dictionary);
 
-            if (uncompressedBuffer.hasRemaining()) {
-                throw new IOException();
+            dictionaries[i] = new ZstdDictionary(dictionary);
+            if (dictionaries[i].getId() != i + 1) {
+                throw new IOException(String.format("Wrong zstd dictionary id: %d (expected=%d)", dictionaries[i].getId(), i + 1));
             }
+        }
 
-            groups[i] = group;
+        // The groups and the service index are decoded on the first lookup, with decompressors of their own,
+        // because the given decompressor is not thread-safe and is used by the caller after this method returns
+        ZstdDecompressorPool groupDecompressors = new ZstdDecompressorPool();
+        JAppResourceGroup[] groups = new JAppResourceGroup[groupCount];
+        for (int i = 0; i < groupCount; i++) {
+            groups[i] = JAppResourceGroup.readFrom(buffer, i, groupDecompressors, verifyGroups);
         }
 
-        return new JAppBootMetadata(Arrays.asList(groups), pool);
+        JAppServiceIndex serviceIndex = (flags & FLAG_SERVICE_INDEX) != 0 ? JAppServiceIndex.readFrom(buffer, groupDecompressors) : null;
+
+        return new JAppBootMetadata(Arrays.asList(groups), pool, dictionaries, serviceIndex);
     }
 
     private final List<JAppResourceGroup> groups;
     private final ByteArrayPool pool;
+    private final ZstdDictionary[] dictionaries;
+    private final JAppServiceIndex serviceIndex;
+
+    public JAppBootMetadata(List<JAppResourceGroup> groups, ByteArrayPool pool, ZstdDictionary[] dictionaries) {
+        this(groups, pool, dictionaries, null);
+    }
 
-    public JAppBootMetadata(List<JAppResourceGroup> groups, ByteArrayPool pool) {
+    public JAppBootMetadata(List<JAppResourceGroup> groups, ByteArrayPool pool, ZstdDictionary[] dictionaries,
+                            JAppServiceIndex serviceIndex) {
         this.groups = groups;
         this.pool = pool;
+        this.dictionaries = dictionaries;
+        this.serviceIndex = serviceIndex;
     }
 
     public List<JAppResourceGroup> getGroups() {
@@ -128,4 +104,18 @@ public final class JAppBootMetadata {
     public ByteArrayPool getPool() {
         return pool;
     }
+
+    /**
+     * Returns the zstd dictionaries, the dictionary at index {@code i} has the dictionary id {@code i + 1}.
+     */
+    public ZstdDictionary[] getDictionaries() {
+        return dictionaries;
+    }
+
+    /**
+     * Returns the index of the service provider configuration files on the class path, or {@code null} if absent.
+     */
+    public JAppServiceIndex getServiceIndex() {
+        return serviceIndex;
+    }
 }
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.boot;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A lock-free pool of heap buffers used to read resources.
+ * <p>
+ * Buffers are grouped by power-of-two capacities from 4 KiB to 16 MiB, and the pool keeps at most
+ * a few buffers of each capacity per processor, and at most {@link #DEFAULT_MAX_RETAINED_BYTES} bytes in total by default.
+ * Larger buffers are neither pooled nor retained.
+ * A buffer must not be used after it is released.
+ * <p>
+ * The arrays of pooled buffers are one byte longer than the buffers,
+ * which tells them from other heap buffers when they are released.
+ */
+public final class JAppBufferPool {
+    private static final int MIN_CAPACITY_SHIFT = 12;
+    private static final int MAX_CAPACITY_SHIFT = 24;
+    private static final int CAPACITY_CLASSES = MAX_CAPACITY_SHIFT - MIN_CAPACITY_SHIFT + 1;
+
+    public static final long DEFAULT_MAX_RETAINED_BYTES = 32L * 1024 * 1024;
+
+    private static int getCapacityClass(int size) {
+        if (size <= 1 << MIN_CAPACITY_SHIFT) {
+            return 0;
+        }
+        int shift = 32 - Integer.numberOfLeadingZeros(size - 1);
+        return shift <= MAX_CAPACITY_SHIFT ? shift - MIN_CAPACITY_SHIFT : -1;
+    }
+
+    private final int slotsPerClass;
+    private final long maxRetainedBytes;
+    private final AtomicReferenceArray<ByteBuffer> slots;
+    private final AtomicLong retainedBytes = new AtomicLong();
+
+    public JAppBufferPool() {
+        this(Runtime.getRuntime().availableProcessors() * 2, DEFAULT_MAX_RETAINED_BYTES);
+    }
+
+    public JAppBufferPool(int slotsPerClass, long maxRetainedBytes) {
+        if (slotsPerClass < 1) {
+            throw new IllegalArgumentException("slotsPerClass: " + slotsPerClass);
+        }
+        if (maxRetainedBytes < 0) {
+            throw new IllegalArgumentException("maxRetainedBytes: " + maxRetainedBytes);
+        }
+        this.slotsPerClass = slotsPerClass;
+        this.maxRetainedBytes = maxRetainedBytes;
+        this.slots = new AtomicReferenceArray<>(slotsPerClass * CAPACITY_CLASSES);
+    }
+
+    /**
+     * Returns the total capacity of the buffers kept by the pool.
+     */
+    public long getRetainedBytes() {
+        return retainedBytes.get();
+    }
+
+    private int getStartSlot() {
+        // Threads start probing from different slots, so that they rarely compete for the same slot
+        return (int) (Thread.currentThread().getId() % slotsPerClass);
+    }
+
+    /**
+     * Returns a big-endian buffer whose position is zero and whose limit is {@code size}.
+     */
+    public ByteBuffer acquire(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("size: " + size);
+        }
+
+        int capacityClass = getCapacityClass(size);
+        if (capacityClass < 0) {
+            return ByteBuffer.allocate(size);
+        }
+
+        int base = capacityClass * slotsPerClass;
+        int start = getStartSlot();
+        for (int i = 0; i < slotsPerClass; i++) {
+            int slot = base + (start + i) % slotsPerClass;
+            if (slots.get(slot) != null) {
+                ByteBuffer buffer = slots.getAndSet(slot, null);
+                if (buffer != null) {
+                    retainedBytes.addAndGet(-buffer.capacity());
+                    buffer.clear().limit(size);
+                    return buffer;
+                }
+            }
+        }
+
+        int capacity = 1 << (capacityClass + MIN_CAPACITY_SHIFT);
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[capacity + 1], 0, capacity).slice();
+        buffer.limit(size);
+        return buffer;
+    }
+
+    /**
+     * Returns the buffer to the pool, the buffer is dropped if the pool is full.
+     * Buffers larger than the largest pooled capacity are ignored.
+     *
+     * @throws IllegalArgumentException if the buffer was not acquired from a pool
+     * @throws IllegalStateException    if the buffer has already been released
+     */
+    public void release(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        if (capacity > 1 << MAX_CAPACITY_SHIFT) {
+            return;
+        }
+
+        int capacityClass = getCapacityClass(capacity);
+        if (buffer.isDirect() || buffer.isReadOnly() || buffer.arrayOffset() != 0
+                || capacity != 1 << (capacityClass + MIN_CAPACITY_SHIFT) || buffer.array().length != capacity + 1) {
+            throw new IllegalArgumentException("The buffer was not acquired from a pool");
+        }
+
+        int base = capacityClass * slotsPerClass;
+        for (int i = 0; i < slotsPerClass; i++) {
+            if (slots.get(base + i) == buffer) {
+                throw new IllegalStateException("The buffer has already been released");
+            }
+        }
+
+        if (retainedBytes.addAndGet(capacity) > maxRetainedBytes) {
+            retainedBytes.addAndGet(-capacity);
+            return;
+        }
+
+        buffer.order(ByteOrder.BIG_ENDIAN);
+
+        int start = getStartSlot();
+        for (int i = 0; i < slotsPerClass; i++) {
+            int slot = base + (start + i) % slotsPerClass;
+            if (slots.get(slot) == null && slots.compareAndSet(slot, null, buffer)) {
+                return;
+            }
+        }
+        retainedBytes.addAndGet(-capacity);
+    }
+}
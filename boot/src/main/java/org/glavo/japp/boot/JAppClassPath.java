@@ -0,0 +1,396 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.boot;
+
+import jdk.internal.loader.BuiltinClassLoader;
+import jdk.internal.loader.Resource;
+import jdk.internal.loader.URLClassPath;
+import org.glavo.japp.boot.module.JAppModuleInfo;
+import org.glavo.japp.boot.url.JAppURLHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLStreamHandler;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The class path of the system class loader.
+ * <p>
+ * Resources of the groups on the class path are found through a package-to-group index built from
+ * the bloom filters of the groups, and are read from the {@link JAppReader} directly,
+ * so the system class loader defines classes from the decompressed {@link ByteBuffer}s
+ * without going through {@code japp:} URL connections.
+ * The code source of each class is the URL of its group, and the URLs returned by {@code getResource}
+ * are the same {@code japp:} URLs as before.
+ * <p>
+ * The groups that contain a service provider configuration file are found through the {@link JAppServiceIndex}.
+ */
+public final class JAppClassPath extends URLClassPath {
+
+    private static final URLStreamHandler HANDLER = new JAppURLHandler();
+
+    private static URL toURL(URI uri) {
+        try {
+            return new URL(null, uri.toString(), HANDLER);
+        } catch (MalformedURLException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private final URLClassPath parent;
+    private final JAppReader reader;
+
+    private volatile Index index;
+
+    /**
+     * @param parent the class path that is searched before the JApp class path, such as the original class path of the loader
+     */
+    public JAppClassPath(URLClassPath parent, JAppReader reader) {
+        super(new URL[0], null);
+        this.parent = parent;
+        this.reader = reader;
+        this.index = new Index(new Entry[0], reader.serviceIndex);
+    }
+
+    /**
+     * Replaces the class path of the loader, which must be the parent of this class path, with this class path.
+     * <p>
+     * On older Java versions the class path of the loader cannot be replaced,
+     * so the URLs of the entries are added to it instead.
+     */
+    void install(BuiltinClassLoader loader) {
+        MethodHandle setter;
+        try {
+            setter = MethodHandles.privateLookupIn(BuiltinClassLoader.class, MethodHandles.lookup())
+                    .findSetter(BuiltinClassLoader.class, "ucp", URLClassPath.class);
+        } catch (ReflectiveOperationException e) {
+            for (Entry entry : index.entries) {
+                parent.addURL(entry.getBaseURL());
+            }
+            return;
+        }
+
+        try {
+            setter.invokeExact(loader, (URLClassPath) this);
+        } catch (Throwable e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private synchronized void addEntry(Entry entry) {
+        Entry[] entries = Arrays.copyOf(index.entries, index.entries.length + 1);
+        entries[entries.length - 1] = entry;
+        this.index = new Index(entries, reader.serviceIndex);
+    }
+
+    public void addGroup(JAppResourceGroup group) {
+        addEntry(new GroupEntry(group));
+    }
+
+    @Override
+    public void addURL(URL url) {
+        addEntry(new URLEntry(url));
+    }
+
+    @Override
+    public URL[] getURLs() {
+        URL[] parentURLs = parent.getURLs();
+        Entry[] entries = index.entries;
+        URL[] urls = Arrays.copyOf(parentURLs, parentURLs.length + entries.length);
+        for (int i = 0; i < entries.length; i++) {
+            urls[parentURLs.length + i] = entries[i].getBaseURL();
+        }
+        return urls;
+    }
+
+    @Override
+    public synchronized List<IOException> closeLoaders() {
+        List<IOException> result = new ArrayList<>(parent.closeLoaders());
+        for (Entry entry : index.entries) {
+            if (entry instanceof URLEntry) {
+                result.addAll(((URLEntry) entry).classPath.closeLoaders());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Resource getResource(String name, boolean check) {
+        Resource resource = parent.getResource(name, check);
+        if (resource != null) {
+            return resource;
+        }
+
+        for (Entry entry : index.getEntries(name)) {
+            resource = entry.getResource(name, check);
+            if (resource != null) {
+                return resource;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Resource getResource(String name) {
+        return getResource(name, true);
+    }
+
+    @Override
+    public URL findResource(String name, boolean check) {
+        URL url = parent.findResource(name, check);
+        if (url != null) {
+            return url;
+        }
+
+        for (Entry entry : index.getEntries(name)) {
+            url = entry.findResource(name, check);
+            if (url != null) {
+                return url;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Enumeration<URL> findResources(String name, boolean check) {
+        List<URL> result = Collections.list(parent.findResources(name, check));
+        for (Entry entry : index.getEntries(name)) {
+            URL url = entry.findResource(name, check);
+            if (url != null) {
+                result.add(url);
+            }
+        }
+        return Collections.enumeration(result);
+    }
+
+    @Override
+    public Enumeration<Resource> getResources(String name, boolean check) {
+        List<Resource> result = Collections.list(parent.getResources(name, check));
+        for (Entry entry : index.getEntries(name)) {
+            Resource resource = entry.getResource(name, check);
+            if (resource != null) {
+                result.add(resource);
+            }
+        }
+        return Collections.enumeration(result);
+    }
+
+    @Override
+    public Enumeration<Resource> getResources(String name) {
+        return getResources(name, true);
+    }
+
+    private static final class Index {
+        final Entry[] entries;
+        final JAppServiceIndex serviceIndex;
+
+        /**
+         * Maps package names to the entries that may contain resources in the package.
+         */
+        final ConcurrentHashMap<String, Entry[]> packages = new ConcurrentHashMap<>();
+
+        /**
+         * Maps service names to the entries that may contain the provider configuration file of the service.
+         */
+        final ConcurrentHashMap<String, Entry[]> services = new ConcurrentHashMap<>();
+
+        Index(Entry[] entries, JAppServiceIndex serviceIndex) {
+            this.entries = entries;
+            this.serviceIndex = serviceIndex;
+        }
+
+        Entry[] getEntries(String resourceName) {
+            String serviceName;
+            if (serviceIndex != null && (serviceName = JAppModuleInfo.getServiceName(resourceName)) != null) {
+                Entry[] result = services.get(serviceName);
+                if (result == null) {
+                    List<Entry> list = new ArrayList<>();
+                    for (Entry entry : entries) {
+                        if (entry.mightContainService(serviceName, serviceIndex)) {
+                            list.add(entry);
+                        }
+                    }
+                    result = list.toArray(new Entry[0]);
+                    services.putIfAbsent(serviceName, result);
+                }
+                return result;
+            }
+
+            String packageName = JAppResourceGroup.getPackageName(resourceName);
+            Entry[] result = packages.get(packageName);
+            if (result == null) {
+                List<Entry> list = new ArrayList<>();
+                for (Entry entry : entries) {
+                    if (entry.mightContainPackage(packageName)) {
+                        list.add(entry);
+                    }
+                }
+                result = list.toArray(new Entry[0]);
+                packages.putIfAbsent(packageName, result);
+            }
+            return result;
+        }
+    }
+
+    private static abstract class Entry {
+        abstract URL getBaseURL();
+
+        abstract boolean mightContainPackage(String packageName);
+
+        abstract boolean mightContainService(String serviceName, JAppServiceIndex serviceIndex);
+
+        abstract Resource getResource(String name, boolean check);
+
+        abstract URL findResource(String name, boolean check);
+    }
+
+    private final class GroupEntry extends Entry {
+        final JAppResourceGroup group;
+        final URL baseURL;
+
+        GroupEntry(JAppResourceGroup group) {
+            this.group = group;
+            this.baseURL = toURL(JAppResourceRoot.CLASSPATH.toURI(group));
+        }
+
+        @Override
+        URL getBaseURL() {
+            return baseURL;
+        }
+
+        @Override
+        boolean mightContainPackage(String packageName) {
+            return group.mightContainPackage(packageName);
+        }
+
+        @Override
+        boolean mightContainService(String serviceName, JAppServiceIndex serviceIndex) {
+            return serviceIndex.contains(serviceName, group);
+        }
+
+        @Override
+        Resource getResource(String name, boolean check) {
+            JAppResource resource = group.get(name);
+            return resource != null ? new JAppClassPathResource(this, resource) : null;
+        }
+
+        @Override
+        URL findResource(String name, boolean check) {
+            JAppResource resource = group.get(name);
+            return resource != null ? toURL(JAppResourceRoot.CLASSPATH.toURI(group, resource)) : null;
+        }
+    }
+
+    private final class JAppClassPathResource extends Resource {
+        private final GroupEntry entry;
+        private final JAppResource resource;
+
+        JAppClassPathResource(GroupEntry entry, JAppResource resource) {
+            this.entry = entry;
+            this.resource = resource;
+        }
+
+        @Override
+        public String getName() {
+            return resource.getName();
+        }
+
+        @Override
+        public URL getURL() {
+            return toURL(JAppResourceRoot.CLASSPATH.toURI(entry.group, resource));
+        }
+
+        @Override
+        public URL getCodeSourceURL() {
+            return entry.baseURL;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return reader.openResource(resource);
+        }
+
+        @Override
+        public int getContentLength() {
+            return Math.toIntExact(resource.getSize());
+        }
+
+        @Override
+        public ByteBuffer getByteBuffer() throws IOException {
+            // The buffer must be owned by this resource: before the class is defined from it,
+            // SecureClassLoader computes the protection domain, which may load other classes on this thread
+            return reader.readResource(resource);
+        }
+
+        @Override
+        public byte[] getBytes() throws IOException {
+            // Only the returned array is allocated, the content is decompressed into a pooled buffer
+            JAppBufferPool pool = reader.getBufferPool();
+            ByteBuffer buffer = pool.acquire(getContentLength());
+            try {
+                reader.readResource(resource, buffer);
+                byte[] bytes = new byte[buffer.position()];
+                buffer.flip();
+                buffer.get(bytes);
+                return bytes;
+            } finally {
+                pool.release(buffer);
+            }
+        }
+    }
+
+    private static final class URLEntry extends Entry {
+        final URL url;
+        final URLClassPath classPath;
+
+        URLEntry(URL url) {
+            this.url = url;
+            this.classPath = new URLClassPath(new URL[]{url}, null);
+        }
+
+        @Override
+        URL getBaseURL() {
+            return url;
+        }
+
+        @Override
+        boolean mightContainPackage(String packageName) {
+            return true;
+        }
+
+        @Override
+        boolean mightContainService(String serviceName, JAppServiceIndex serviceIndex) {
+            return true;
+        }
+
+        @Override
+        Resource getResource(String name, boolean check) {
+            return classPath.getResource(name, check);
+        }
+
+        @Override
+        URL findResource(String name, boolean check) {
+            return classPath.findResource(name, check);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.boot;
+
+import org.glavo.japp.util.SizeUtils;
+
+/**
+ * How the resources of a japp file are accessed at runtime.
+ */
+public enum JAppMappingPolicy {
+    /**
+     * Maps the whole file into memory, files larger than 2 GiB are mapped as several overlapping segments.
+     */
+    ALWAYS_MAP("always-map"),
+
+    /**
+     * Copies files smaller than the copy threshold into memory, and maps larger files.
+     */
+    COPY_SMALL("copy-small"),
+
+    /**
+     * Reads each resource from the file when it is accessed.
+     */
+    NEVER_MAP("never-map");
+
+    /**
+     * The system property that selects the policy, the default policy is {@link #COPY_SMALL}.
+     */
+    public static final String PROPERTY = "org.glavo.japp.boot.mapping";
+
+    /**
+     * The system property that overrides the copy threshold of {@link #COPY_SMALL}, such as {@code 32M}.
+     */
+    public static final String PROPERTY_COPY_THRESHOLD = "org.glavo.japp.boot.mapping.copyThreshold";
+
+    public static final long DEFAULT_COPY_THRESHOLD = 16 * 1024 * 1024;
+
+    static JAppMappingPolicy fromSystemProperties() {
+        String value = System.getProperty(PROPERTY);
+        return value != null ? of(value.trim()) : COPY_SMALL;
+    }
+
+    static long getCopyThreshold() {
+        String value = System.getProperty(PROPERTY_COPY_THRESHOLD);
+        if (value == null) {
+            return DEFAULT_COPY_THRESHOLD;
+        }
+
+        long threshold = SizeUtils.parseSize(value.trim());
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Invalid " + PROPERTY_COPY_THRESHOLD + ": " + value);
+        }
+        return threshold;
+    }
+
+    public static JAppMappingPolicy of(String name) {
+        for (JAppMappingPolicy policy : values()) {
+            if (policy.name.equals(name)) {
+                return policy;
+            }
+        }
+        throw new IllegalArgumentException("Unknown mapping policy: " + name);
+    }
+
+    private final String name;
+
+    JAppMappingPolicy(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.boot;
+
+import java.lang.module.Configuration;
+import java.lang.module.ModuleFinder;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Loads the plugin modules of the japp file, which are left out of the boot layer,
+ * into child layers of the application layer on demand.
+ * <p>
+ * Each call of {@link #load(String)} that finds a module not loaded yet defines a new layer with a class loader of its own,
+ * containing the module and the plugin modules it requires that are not loaded yet.
+ * The layers of the previously loaded plugin modules are parents of the new layer.
+ *
+ * @see org.glavo.japp.boot.plugin.JAppPlugins
+ */
+public final class JAppPluginManager {
+
+    private static volatile JAppPluginManager instance;
+
+    /**
+     * Returns the plugin manager of the running japp file, or {@code null} if the application is not launched by japp.
+     */
+    public static JAppPluginManager getInstance() {
+        return instance;
+    }
+
+    static void setInstance(JAppPluginManager manager) {
+        instance = manager;
+    }
+
+    private final ModuleFinder finder;
+    private final Set<String> pluginModules;
+    private final Consumer<ModuleLayer> layerInitializer;
+
+    private final List<ModuleLayer> layers = new ArrayList<>();
+    private final Map<String, ModuleLayer> loaded = new HashMap<>();
+
+    /**
+     * @param finder           the finder of the plugin modules
+     * @param layerInitializer applies the module options of the command line to each new layer
+     */
+    JAppPluginManager(ModuleFinder finder, Set<String> pluginModules, ModuleLayer parent,
+                      Consumer<ModuleLayer> layerInitializer) {
+        this.finder = finder;
+        this.pluginModules = Collections.unmodifiableSet(pluginModules);
+        this.layerInitializer = layerInitializer;
+        this.layers.add(parent);
+    }
+
+    public Set<String> getPluginModules() {
+        return pluginModules;
+    }
+
+    public synchronized Optional<ModuleLayer> findLayer(String moduleName) {
+        return Optional.ofNullable(loaded.get(moduleName));
+    }
+
+    /**
+     * Returns the layer that contains the plugin module, the module is loaded if it has not been loaded.
+     *
+     * @throws IllegalArgumentException if the module is not a plugin module
+     */
+    public synchronized ModuleLayer load(String moduleName) {
+        ModuleLayer layer = loaded.get(moduleName);
+        if (layer != null) {
+            return layer;
+        }
+
+        if (!pluginModules.contains(moduleName)) {
+            throw new IllegalArgumentException("Module " + moduleName + " is not a plugin module");
+        }
+
+        List<Configuration> parentConfigurations = new ArrayList<>(layers.size());
+        for (ModuleLayer parent : layers) {
+            parentConfigurations.add(parent.configuration());
+        }
+
+        // The plugin finder is searched after the parents, so the modules that have been loaded are not loaded again
+        Configuration configuration = Configuration.resolve(
+                ModuleFinder.of(), parentConfigurations, finder, Collections.singleton(moduleName));
+        layer = ModuleLayer.defineModulesWithOneLoader(
+                configuration, new ArrayList<>(layers), ClassLoader.getSystemClassLoader()).layer();
+
+        layerInitializer.accept(layer);
+
+        for (Module module : layer.modules()) {
+            loaded.put(module.getName(), layer);
+        }
+        layers.add(layer);
+        return layer;
+    }
+}
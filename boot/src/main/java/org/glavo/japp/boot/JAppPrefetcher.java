@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.boot;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Reads the resources of a {@link JAppStartupProfile} in the recorded order on a background thread,
+ * ahead of the class loaders.
+ * <p>
+ * Resources whose content is a view of the mapped file are only touched, so that their pages are loaded
+ * before they are needed. Other resources are decompressed into a short-lived cache,
+ * and each cached content is handed over to the reader once by {@link #take(JAppResource)}.
+ */
+final class JAppPrefetcher implements Runnable {
+    private static final long MAX_CACHED_BYTES = 16L * 1024 * 1024;
+    private static final long CACHE_LIFETIME_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final long POLL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final int PAGE_SIZE = 4096;
+
+    private final JAppReader reader;
+    private final List<JAppResourceGroup> groups;
+    private final List<JAppStartupProfile.Entry> entries;
+
+    private final ConcurrentHashMap<JAppResource, ByteBuffer> cache = new ConcurrentHashMap<>();
+    private final AtomicLong cachedBytes = new AtomicLong();
+
+    // The resources that have been read by the reader, they are not prefetched anymore
+    private final Set<JAppResource> consumed = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean done = false;
+
+    // Keeps the touched bytes alive, so that the reads are not eliminated
+    @SuppressWarnings("unused")
+    private int touched;
+
+    JAppPrefetcher(JAppReader reader, List<JAppResourceGroup> groups, List<JAppStartupProfile.Entry> entries) {
+        this.reader = reader;
+        this.groups = groups;
+        this.entries = entries;
+    }
+
+    void start() {
+        Thread thread = new Thread(this, "JApp Prefetcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Removes the prefetched content of the resource from the cache and returns it,
+     * or returns {@code null} if the resource has not been prefetched.
+     */
+    ByteBuffer take(JAppResource resource) {
+        if (done) {
+            return null;
+        }
+
+        // Mark the resource before looking it up, so that the prefetcher either sees the mark after inserting
+        // the content into the cache, or has inserted the content before the lookup
+        consumed.add(resource);
+
+        ByteBuffer content = cache.remove(resource);
+        if (content != null) {
+            cachedBytes.addAndGet(-content.remaining());
+        }
+        return content;
+    }
+
+    private void touch(ByteBuffer content) {
+        int sum = 0;
+        for (int i = content.position(); i < content.limit(); i += PAGE_SIZE) {
+            sum += content.get(i);
+        }
+        touched = sum;
+    }
+
+    private boolean waitForSpace(long deadline) {
+        while (cachedBytes.get() >= MAX_CACHED_BYTES) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            LockSupport.parkNanos(this, POLL_INTERVAL_NANOS);
+        }
+        return true;
+    }
+
+    @Override
+    public void run() {
+        long deadline = System.nanoTime() + CACHE_LIFETIME_NANOS;
+        try {
+            for (JAppStartupProfile.Entry entry : entries) {
+                if (done || !reader.isOpen() || !waitForSpace(deadline)) {
+                    break;
+                }
+
+                if (entry.groupIndex < 0 || entry.groupIndex >= groups.size()) {
+                    continue;
+                }
+
+                JAppResource resource = groups.get(entry.groupIndex).get(entry.name);
+                if (resource == null || resource.getSize() == 0 || consumed.contains(resource)) {
+                    continue;
+                }
+
+                ByteBuffer content = reader.prefetchResource(resource);
+                if (content.isReadOnly()) {
+                    touch(content);
+                } else if (!consumed.contains(resource) && cache.putIfAbsent(resource, content) == null) {
+                    cachedBytes.addAndGet(content.remaining());
+
+                    // The reader may have missed the cache and read the resource itself while the content was inserted
+                    if (consumed.contains(resource) && cache.remove(resource, content)) {
+                        cachedBytes.addAndGet(-content.remaining());
+                    }
+                }
+            }
+
+            // Keep the remaining contents until they are taken or the cache expires
+            while (!done && !cache.isEmpty() && System.nanoTime() - deadline < 0) {
+                LockSupport.parkNanos(this, POLL_INTERVAL_NANOS * 10);
+            }
+        } catch (Throwable ignored) {
+            // Prefetching is only an optimization, the resources are read again by the reader on demand
+        } finally {
+            done = true;
+            cache.clear();
+            consumed.clear();
+        }
+    }
+}
@@ -19,8 +19,11 @@ import jdk.internal.loader.BuiltinClassLoader;
 import jdk.internal.loader.URLClassPath;
 import org.glavo.japp.CompressionMethod;
 import org.glavo.japp.boot.decompressor.DecompressContext;
+import org.glavo.japp.boot.decompressor.ZstdDecompressorPool;
 import org.glavo.japp.boot.decompressor.classfile.ClassFileDecompressor;
 import org.glavo.japp.boot.decompressor.classfile.ByteArrayPool;
+import org.glavo.japp.boot.decompressor.lz4.Lz4Decompressor;
+import org.glavo.japp.boot.decompressor.zstd.ZstdDictionary;
 import org.glavo.japp.boot.decompressor.zstd.ZstdFrameDecompressor;
 import org.glavo.japp.io.ByteBufferInputStream;
 import org.glavo.japp.util.ByteBufferUtils;
@@ -31,15 +34,25 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.invoke.MethodHandles;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.ReadOnlyBufferException;
 import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
 
 public final class JAppReader implements DecompressContext, Closeable {
-    private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+    private static final int MAX_ARRAY_LENGTH = JAppResource.MAX_SIZE;
+    private static final int MAX_CACHED_SOLID_BLOCKS = 8;
+
+    /**
+     * The distance between the starts of the mapped segments of files larger than 2 GiB.
+     * Each segment is mapped with a length of up to 2 GiB, so adjacent segments overlap by about 1 GiB,
+     * and a resource smaller than 1 GiB is always contained in the segment where it starts.
+     */
+    private static final long MAPPED_SEGMENT_STRIDE = 1L << 30;
 
     private static JAppReader systemReader;
 
@@ -58,24 +71,30 @@ public final class JAppReader implements DecompressContext, Closeable {
         long metadataSize = bootArgs.getLong();
 
         ZstdFrameDecompressor decompressor = new ZstdFrameDecompressor();
+        JAppVerifyMode verifyMode = JAppVerifyMode.fromSystemProperties();
 
         FileChannel channel = FileChannel.open(Paths.get(file));
         ByteBuffer metadataBuffer = ByteBuffer.allocateDirect(Math.toIntExact(metadataSize)).order(ByteOrder.LITTLE_ENDIAN);
         IOUtils.readFully(channel.position(baseOffset + metadataOffset), metadataBuffer);
         metadataBuffer.flip();
-        JAppBootMetadata metadata = JAppBootMetadata.readFrom(metadataBuffer, decompressor);
 
-        ByteBuffer mappedBuffer = null;
-        if (metadataOffset < 16 * 1024 * 1024) { // TODO: Configurable threshold
-            mappedBuffer = ByteBuffer.allocateDirect((int) metadataOffset);
-            IOUtils.readFully(channel.position(baseOffset), mappedBuffer);
-            mappedBuffer.flip();
-            mappedBuffer = mappedBuffer.asReadOnlyBuffer();
-        } else if (metadataOffset < Integer.MAX_VALUE) {
-            mappedBuffer = channel.map(FileChannel.MapMode.READ_ONLY, baseOffset, metadataOffset);
+        String profileFile = System.getProperty(JAppStartupProfile.PROPERTY);
+        long metadataHash = profileFile != null ? XxHash64.hashByteBufferWithoutUpdate(metadataBuffer) : 0L;
+        JAppBootMetadata metadata = JAppBootMetadata.readFrom(metadataBuffer, decompressor, verifyMode.verifiesOnAccess());
+
+        JAppMappingPolicy mappingPolicy = JAppMappingPolicy.fromSystemProperties();
+        ByteBuffer[] mappedSegments = null;
+        if (mappingPolicy == JAppMappingPolicy.COPY_SMALL && metadataOffset < JAppMappingPolicy.getCopyThreshold()
+                && metadataOffset <= MAX_ARRAY_LENGTH) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect((int) metadataOffset);
+            IOUtils.readFully(channel.position(baseOffset), buffer);
+            buffer.flip();
+            mappedSegments = new ByteBuffer[]{buffer.asReadOnlyBuffer()};
+        } else if (mappingPolicy != JAppMappingPolicy.NEVER_MAP) {
+            mappedSegments = mapSegments(channel, baseOffset, metadataOffset);
         }
 
-        if (mappedBuffer != null) {
+        if (mappedSegments != null) {
             channel.close();
             channel = null;
         }
@@ -84,6 +103,13 @@ public final class JAppReader implements DecompressContext, Closeable {
         Map<String, JAppResourceGroup> modules = new HashMap<>();
         Map<String, JAppResourceGroup> classPath = new LinkedHashMap<>();
 
+        JAppReader reader = new JAppReader(channel, baseOffset, mappedSegments, MAPPED_SEGMENT_STRIDE,
+                metadata.getPool(), metadata.getDictionaries(), decompressor, modules, classPath,
+                JAppResourceCache.fromSystemProperties(), verifyMode);
+        reader.serviceIndex = metadata.getServiceIndex();
+        BuiltinClassLoader systemClassLoader = (BuiltinClassLoader) ClassLoader.getSystemClassLoader();
+        JAppClassPath jappClassPath = null;
+
         int unnamedCount = 0;
         JAppBootArgs.Field field;
         while ((field = JAppBootArgs.Field.readFrom(bootArgs)) != JAppBootArgs.Field.END) {
@@ -106,18 +132,20 @@ public final class JAppReader implements DecompressContext, Closeable {
                 case MODULE_PATH: {
                     boolean isModulePath = field == JAppBootArgs.Field.MODULE_PATH;
                     Map<String, JAppResourceGroup> map;
-                    URLClassPath ucp;
                     if (isModulePath) {
                         map = modules;
-                        ucp = null;
                     } else {
                         map = classPath;
-                        try {
-                            ucp = (URLClassPath) MethodHandles.privateLookupIn(BuiltinClassLoader.class, MethodHandles.lookup())
-                                    .findGetter(BuiltinClassLoader.class, "ucp", URLClassPath.class)
-                                    .invokeExact((BuiltinClassLoader) ClassLoader.getSystemClassLoader());
-                        } catch (Throwable e) {
-                            throw new AssertionError(e);
+                        if (jappClassPath == null) {
+                            URLClassPath ucp;
+                            try {
+                                ucp = (URLClassPath) MethodHandles.privateLookupIn(BuiltinClassLoader.class, MethodHandles.lookup())
+                                        .findGetter(BuiltinClassLoader.class, "ucp", URLClassPath.class)
+                                        .invokeExact(systemClassLoader);
+                            } catch (Throwable e) {
+                                throw new AssertionError(e);
+                            }
+                            jappClassPath = new JAppClassPath(ucp, reader);
                         }
                     }
 
@@ -139,13 +167,13 @@ public final class JAppReader implements DecompressContext, Closeable {
                             }
 
                             while ((index = bootArgs.getInt()) != -1) {
-                                group.putAll(metadata.getGroups().get(index));
+                                group.addAll(metadata.getGroups().get(index));
                             }
 
                             map.put(group.getName(), group);
 
                             if (!isModulePath) {
-                                ucp.addURL(JAppResourceRoot.CLASSPATH.toURI(group).toURL());
+                                jappClassPath.addGroup(group);
                             }
                         } else if (type == JAppBootArgs.ID_RESOLVED_REFERENCE_EXTERNAL) { // External
                             Path path = Paths.get(ByteBufferUtils.readString(bootArgs));
@@ -153,7 +181,7 @@ public final class JAppReader implements DecompressContext, Closeable {
                             if (isModulePath) {
                                 args.externalModules.add(path);
                             } else {
-                                ucp.addURL(path.toUri().toURL());
+                                jappClassPath.addURL(path.toUri().toURL());
                             }
                         } else {
                             throw new IOException();
@@ -165,7 +193,8 @@ public final class JAppReader implements DecompressContext, Closeable {
                 case ADD_READS:
                 case ADD_EXPORTS:
                 case ADD_OPENS:
-                case ENABLE_NATIVE_ACCESS: {
+                case ENABLE_NATIVE_ACCESS:
+                case PLUGIN_MODULES: {
                     List<String> list;
                     if (field == JAppBootArgs.Field.ADD_READS) {
                         list = args.addReads;
@@ -175,6 +204,8 @@ public final class JAppReader implements DecompressContext, Closeable {
                         list = args.addOpens;
                     } else if (field == JAppBootArgs.Field.ENABLE_NATIVE_ACCESS) {
                         list = args.enableNativeAccess;
+                    } else if (field == JAppBootArgs.Field.PLUGIN_MODULES) {
+                        list = args.pluginModules;
                     } else {
                         throw new AssertionError("Field: " + field);
                     }
@@ -186,38 +217,160 @@ public final class JAppReader implements DecompressContext, Closeable {
             }
         }
 
-        JAppReader.systemReader = new JAppReader(channel, baseOffset, mappedBuffer, metadata.getPool(), decompressor, modules, classPath);
+        if (verifyMode == JAppVerifyMode.EAGER) {
+            new JAppVerifier(reader, metadata.getGroups()).verify();
+        } else if (verifyMode == JAppVerifyMode.BACKGROUND) {
+            args.backgroundVerifier = new JAppVerifier(reader, metadata.getGroups());
+        }
+
+        if (profileFile != null) {
+            Path profilePath = Paths.get(profileFile);
+            List<JAppStartupProfile.Entry> entries = Boolean.getBoolean(JAppStartupProfile.PROPERTY_RECORD)
+                    ? null
+                    : JAppStartupProfile.readFrom(profilePath, metadataHash);
+
+            if (entries != null) {
+                reader.prefetcher = new JAppPrefetcher(reader, metadata.getGroups(), entries);
+                reader.prefetcher.start();
+            } else {
+                JAppStartupProfile profile = new JAppStartupProfile(metadataHash);
+                reader.profile = profile;
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        profile.writeTo(profilePath);
+                    } catch (Throwable e) {
+                        System.err.println("Warning: Failed to write the startup profile to " + profilePath);
+                        e.printStackTrace();
+                    }
+                }, "JApp Profile Writer"));
+            }
+        }
+
+        if (jappClassPath != null) {
+            jappClassPath.install(systemClassLoader);
+        }
+
+        JAppReader.systemReader = reader;
         return args;
     }
 
+    /**
+     * Maps the content as segments that start every {@link #MAPPED_SEGMENT_STRIDE} bytes.
+     */
+    private static ByteBuffer[] mapSegments(FileChannel channel, long offset, long size) throws IOException {
+        List<ByteBuffer> segments = new ArrayList<>();
+        long position = 0;
+        while (true) {
+            long length = Math.min(size - position, Integer.MAX_VALUE);
+            segments.add(channel.map(FileChannel.MapMode.READ_ONLY, offset + position, length));
+            if (position + length >= size) {
+                break;
+            }
+            position += MAPPED_SEGMENT_STRIDE;
+        }
+        return segments.toArray(new ByteBuffer[0]);
+    }
+
     private final FileChannel channel;
     private final long baseOffset;
 
-    private final ByteBuffer mappedBuffer;
+    private final ByteBuffer[] mappedSegments;
+    private final long mappedSegmentStride;
 
     private final Map<String, JAppResourceGroup> modules;
     private final Map<String, JAppResourceGroup> classpath;
     private final Map<String, JAppResourceGroup> resources;
 
     private final ByteArrayPool pool;
-    private final ZstdFrameDecompressor decompressor;
+    private final ZstdDictionary[] dictionaries;
+    private final ZstdDecompressorPool decompressors = new ZstdDecompressorPool();
+    private final JAppBufferPool bufferPool = new JAppBufferPool();
+
+    private final Map<Long, JAppSolidBlock> solidBlocks = new LinkedHashMap<Long, JAppSolidBlock>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, JAppSolidBlock> eldest) {
+            return size() > MAX_CACHED_SOLID_BLOCKS;
+        }
+    };
+
+    private final JAppResourceCache resourceCache;
+    private final JAppVerifyMode verifyMode;
+
+    // The profile that records the order of reads, or the prefetcher that follows a recorded profile
+    JAppStartupProfile profile;
+    JAppPrefetcher prefetcher;
+
+    JAppServiceIndex serviceIndex;
 
     private volatile boolean isClosed = false;
 
     public JAppReader(FileChannel channel, long baseOffset,
                       ByteBuffer mappedBuffer,
                       ByteArrayPool pool,
+                      ZstdDictionary[] dictionaries,
                       ZstdFrameDecompressor decompressor,
                       Map<String, JAppResourceGroup> modules,
                       Map<String, JAppResourceGroup> classpath) throws IOException {
+        this(channel, baseOffset, mappedBuffer, pool, dictionaries, decompressor, modules, classpath, null);
+    }
+
+    public JAppReader(FileChannel channel, long baseOffset,
+                      ByteBuffer mappedBuffer,
+                      ByteArrayPool pool,
+                      ZstdDictionary[] dictionaries,
+                      ZstdFrameDecompressor decompressor,
+                      Map<String, JAppResourceGroup> modules,
+                      Map<String, JAppResourceGroup> classpath,
+                      JAppResourceCache resourceCache) throws IOException {
+        this(channel, baseOffset, mappedBuffer != null ? new ByteBuffer[]{mappedBuffer} : null, Integer.MAX_VALUE,
+                pool, dictionaries, decompressor, modules, classpath, resourceCache, JAppVerifyMode.LAZY);
+    }
+
+    /**
+     * @param mappedSegments      the mapped content, or {@code null} if the content is read from the channel
+     * @param mappedSegmentStride the distance between the starts of the mapped segments
+     */
+    JAppReader(FileChannel channel, long baseOffset,
+               ByteBuffer[] mappedSegments, long mappedSegmentStride,
+               ByteArrayPool pool,
+               ZstdDictionary[] dictionaries,
+               ZstdFrameDecompressor decompressor,
+               Map<String, JAppResourceGroup> modules,
+               Map<String, JAppResourceGroup> classpath,
+               JAppResourceCache resourceCache,
+               JAppVerifyMode verifyMode) throws IOException {
         this.channel = channel;
         this.baseOffset = baseOffset;
-        this.mappedBuffer = mappedBuffer;
+        this.mappedSegments = mappedSegments;
+        this.mappedSegmentStride = mappedSegmentStride;
         this.pool = pool;
-        this.decompressor = decompressor;
+        this.dictionaries = dictionaries;
+        this.decompressors.release(decompressor);
         this.modules = modules;
         this.classpath = classpath;
         this.resources = new LinkedHashMap<>();
+        this.resourceCache = resourceCache;
+        this.verifyMode = verifyMode;
+    }
+
+    /**
+     * Returns the cache of decompressed resources, or {@code null} if the cache is disabled.
+     */
+    public JAppResourceCache getResourceCache() {
+        return resourceCache;
+    }
+
+    public JAppVerifyMode getVerifyMode() {
+        return verifyMode;
+    }
+
+    /**
+     * Returns the pool of buffers used to read resources.
+     *
+     * @see #readResource(JAppResource, ByteBuffer)
+     */
+    public JAppBufferPool getBufferPool() {
+        return bufferPool;
     }
 
     public boolean isOpen() {
@@ -242,8 +395,38 @@ public final class JAppReader implements DecompressContext, Closeable {
     }
 
     @Override
-    public synchronized void decompressZstd(ByteBuffer input, ByteBuffer output) {
-        decompressor.decompress(input, output);
+    public ByteBuffer acquireBuffer(int size) {
+        return bufferPool.acquire(size);
+    }
+
+    @Override
+    public void releaseBuffer(ByteBuffer buffer) {
+        bufferPool.release(buffer);
+    }
+
+    @Override
+    public void decompressZstd(ByteBuffer input, ByteBuffer output) {
+        ZstdFrameDecompressor decompressor = decompressors.acquire();
+        try {
+            decompressor.decompress(input, output);
+        } finally {
+            decompressors.release(decompressor);
+        }
+    }
+
+    @Override
+    public void decompressZstdDict(ByteBuffer input, ByteBuffer output) throws IOException {
+        long id = ZstdFrameDecompressor.getDictionaryId(input);
+        if (id < 1 || id > dictionaries.length) {
+            throw new IOException("Unknown zstd dictionary: " + id);
+        }
+
+        ZstdFrameDecompressor decompressor = decompressors.acquire();
+        try {
+            decompressor.decompress(input, output, dictionaries[(int) id - 1]);
+        } finally {
+            decompressors.release(decompressor);
+        }
     }
 
     public Map<String, JAppResourceGroup> getRoot(JAppResourceRoot root) {
@@ -268,25 +451,29 @@ public final class JAppReader implements DecompressContext, Closeable {
         return g.get(path);
     }
 
-    private ByteBuffer decompressResource(
-            CompressionMethod method,
-            ByteBuffer compressed,
-            int size) throws IOException {
+    /**
+     * Decompresses the resource into the remaining bytes of the output buffer.
+     */
+    private void decompressResource(CompressionMethod method, ByteBuffer compressed, ByteBuffer output) throws IOException {
         switch (method) {
-            case CLASSFILE: {
-                byte[] output = new byte[size];
+            case CLASSFILE:
                 ClassFileDecompressor.decompress(this, compressed, output);
-                return ByteBuffer.wrap(output);
-            }
-            case ZSTD: {
-                ByteBuffer outputBuffer = ByteBuffer.allocate(size);
-                decompressZstd(compressed, outputBuffer);
-                outputBuffer.flip();
-                return outputBuffer;
-            }
-            default: {
+                break;
+            case ZSTD:
+                decompressZstd(compressed, output);
+                break;
+            case ZSTD_DICT:
+                decompressZstdDict(compressed, output);
+                break;
+            case LZ4:
+                Lz4Decompressor.decompress(compressed, output);
+                break;
+            default:
                 throw new IOException("Unsupported compression method: " + method);
-            }
+        }
+
+        if (output.hasRemaining()) {
+            throw new IOException(String.format("Resource size mismatch (remaining=%d)", output.remaining()));
         }
     }
 
@@ -298,36 +485,252 @@ public final class JAppReader implements DecompressContext, Closeable {
         return (int) value;
     }
 
-    public ByteBuffer readResource(JAppResource resource) throws IOException {
-        int size = castArrayLength(resource.getSize());
-        if (size == 0) {
-            return ByteBuffer.allocate(0);
+    private ByteBuffer readContent(long offset, int size) throws IOException {
+        ByteBuffer content;
+        if (mappedSegments != null) {
+            content = readMappedContent(offset, size);
+        } else {
+            content = ByteBuffer.allocateDirect(size);
+            readContent(offset, content);
+            content.flip();
+        }
+        return content;
+    }
+
+    /**
+     * Reads the content at the offset into the remaining bytes of the output buffer.
+     */
+    private void readContent(long offset, ByteBuffer output) throws IOException {
+        if (mappedSegments != null) {
+            output.put(readMappedContent(offset, output.remaining()));
+            return;
+        }
+
+        long position = offset + baseOffset - output.position();
+        while (output.hasRemaining()) {
+            int n = channel.read(output, position + output.position());
+            if (n <= 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+    }
+
+    private ByteBuffer readMappedContent(long offset, int size) throws IOException {
+        long index = offset / mappedSegmentStride;
+        if (offset < 0 || index >= mappedSegments.length) {
+            throw new IOException("Offset out of range: " + offset);
+        }
+
+        ByteBuffer segment = mappedSegments[(int) index];
+        int position = (int) (offset - index * mappedSegmentStride);
+        if (position > segment.limit()) {
+            throw new IOException("Offset out of range: " + offset);
         }
 
+        if (size <= segment.limit() - position) {
+            return ByteBufferUtils.slice(segment, position, size);
+        }
+
+        // Only content larger than the overlap of the segments crosses the end of a segment
+        ByteBuffer content = ByteBuffer.allocateDirect(size);
+        while (true) {
+            int end = (int) Math.min(segment.limit(), mappedSegmentStride);
+            content.put(ByteBufferUtils.slice(segment, position, Math.min(content.remaining(), end - position)));
+            if (!content.hasRemaining()) {
+                break;
+            }
+
+            if (++index >= mappedSegments.length) {
+                throw new IOException("Unexpected end of file");
+            }
+            segment = mappedSegments[(int) index];
+            position = 0;
+        }
+        return content.flip();
+    }
+
+    private JAppSolidBlock readSolidBlock(long offset) throws IOException {
+        ByteBuffer header = readContent(offset, JAppSolidBlock.HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+
+        byte magic = header.get();
+        if (magic != JAppSolidBlock.MAGIC_NUMBER) {
+            throw new IOException(String.format("Wrong solid block magic: 0x%02x", magic));
+        }
+
+        CompressionMethod method = CompressionMethod.readFrom(header);
+        short reserved = header.getShort();
+        if (reserved != 0) {
+            throw new IOException("Reserved is not zero");
+        }
+
+        int count = header.getInt();
+        int uncompressedSize = header.getInt();
+        int compressedSize = header.getInt();
+        if (count < 0 || uncompressedSize < 0 || compressedSize < 0 || count > (MAX_ARRAY_LENGTH - compressedSize) / 5) {
+            throw new IOException("Invalid solid block header");
+        }
+
+        ByteBuffer body;
+        ByteBuffer scratch = null;
+        if (mappedSegments == null && method != CompressionMethod.NONE) {
+            // The compressed body is only needed until the block is decompressed
+            body = scratch = bufferPool.acquire(count * 5 + compressedSize);
+            readContent(offset + JAppSolidBlock.HEADER_LENGTH, body);
+            body.flip();
+        } else {
+            body = readContent(offset + JAppSolidBlock.HEADER_LENGTH, count * 5 + compressedSize);
+        }
+        body.order(ByteOrder.LITTLE_ENDIAN);
+
+        try {
+            return readSolidBlockBody(body, count, uncompressedSize, compressedSize, method);
+        } finally {
+            if (scratch != null) {
+                bufferPool.release(scratch);
+            }
+        }
+    }
+
+    private JAppSolidBlock readSolidBlockBody(ByteBuffer body, int count, int uncompressedSize, int compressedSize,
+                                              CompressionMethod method) throws IOException {
+        int[] offsets = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            offsets[i] = body.getInt();
+            if (offsets[i] < (i == 0 ? 0 : offsets[i - 1]) || offsets[i] > uncompressedSize) {
+                throw new IOException("Invalid solid block offset table");
+            }
+        }
+        offsets[count] = uncompressedSize;
+
+        CompressionMethod[] methods = new CompressionMethod[count];
+        for (int i = 0; i < count; i++) {
+            methods[i] = CompressionMethod.readFrom(body);
+        }
+
+        ByteBuffer compressed = ByteBufferUtils.slice(body, body.position(), compressedSize);
+        ByteBuffer content;
+        if (method == CompressionMethod.NONE) {
+            if (compressedSize != uncompressedSize) {
+                throw new IOException("Invalid solid block header");
+            }
+            content = compressed;
+        } else if (method == CompressionMethod.ZSTD || method == CompressionMethod.ZSTD_DICT || method == CompressionMethod.LZ4) {
+            // The block is shared by its resources, so it is decompressed into a read-only direct buffer,
+            // which can be accessed directly just like the mapped buffer
+            ByteBuffer output = ByteBuffer.allocateDirect(uncompressedSize);
+            if (method == CompressionMethod.ZSTD) {
+                decompressZstd(compressed, output);
+            } else if (method == CompressionMethod.LZ4) {
+                Lz4Decompressor.decompress(compressed, output);
+            } else {
+                decompressZstdDict(compressed, output);
+            }
+            if (output.hasRemaining()) {
+                throw new IOException("Solid block size mismatch");
+            }
+            content = output.flip().asReadOnlyBuffer();
+        } else {
+            throw new IOException("Unsupported compression method: " + method);
+        }
+
+        return new JAppSolidBlock(content, offsets, methods);
+    }
+
+    private JAppSolidBlock getSolidBlock(long offset) throws IOException {
+        JAppSolidBlock block;
+        synchronized (solidBlocks) {
+            block = solidBlocks.get(offset);
+        }
+        if (block != null) {
+            return block;
+        }
+
+        // The block is decompressed without holding the lock, so that reading other blocks is not blocked.
+        // Threads that miss the same block at the same time may decompress it more than once
+        block = readSolidBlock(offset);
+        synchronized (solidBlocks) {
+            JAppSolidBlock existing = solidBlocks.putIfAbsent(offset, block);
+            return existing != null ? existing : block;
+        }
+    }
+
+    /**
+     * Reads the uncompressed content of the resource.
+     * <p>
+     * If {@code output} is {@code null}, returns the content, which may be a read-only view of the mapped file
+     * or a cached solid block. Otherwise, fills the remaining bytes of {@code output} with the content and returns it.
+     */
+    private ByteBuffer readUncompressed(JAppResource resource, int size, ByteBuffer output) throws IOException {
         CompressionMethod method = resource.getMethod();
-        int offset = Math.toIntExact(resource.getOffset());
-        int compressedSize = castArrayLength(resource.getCompressedSize());
 
         ByteBuffer compressed;
-        if (mappedBuffer != null) {
-            compressed = ByteBufferUtils.slice(mappedBuffer, offset, compressedSize);
+        ByteBuffer scratch = null;
+        if (method == CompressionMethod.SOLID) {
+            JAppSolidBlock block = getSolidBlock(resource.getOffset());
+
+            int index = resource.solidBlockIndex;
+            if (index >= block.getEntryCount()) {
+                throw new IOException(String.format("Solid block index out of range (index=%d, count=%d)", index, block.getEntryCount()));
+            }
+
+            compressed = block.getEntry(index);
+            if (compressed.remaining() != resource.getCompressedSize()) {
+                throw new IOException(String.format("Solid block entry size mismatch (expected=%d, actual=%d)",
+                        resource.getCompressedSize(), compressed.remaining()));
+            }
+
+            method = block.getEntryMethod(index);
+            if (method != CompressionMethod.NONE && method != CompressionMethod.CLASSFILE) {
+                throw new IOException("Unsupported solid block entry compression method: " + method);
+            }
         } else {
-            compressed = ByteBuffer.allocateDirect(compressedSize);
+            int compressedSize = castArrayLength(resource.getCompressedSize());
+            if (mappedSegments != null || method == CompressionMethod.NONE && output == null) {
+                compressed = readContent(resource.getOffset(), compressedSize);
+            } else if (method == CompressionMethod.NONE) {
+                if (compressedSize != size) {
+                    throw new IOException(String.format("Resource size mismatch (expected=%d, actual=%d)", size, compressedSize));
+                }
+                readContent(resource.getOffset(), output);
+                return output;
+            } else {
+                compressed = scratch = bufferPool.acquire(compressedSize);
+                readContent(resource.getOffset(), scratch);
+                scratch.flip();
+            }
+        }
+
+        try {
+            if (method == CompressionMethod.NONE) {
+                if (compressed.remaining() != size) {
+                    throw new IOException(String.format("Resource size mismatch (expected=%d, actual=%d)", size, compressed.remaining()));
+                }
 
-            while (compressed.hasRemaining()) {
-                int n = channel.read(compressed, offset + baseOffset + compressed.position());
-                if (n <= 0) {
-                    throw new IOException("Unexpected end of file");
+                if (output == null) {
+                    return compressed;
                 }
+                output.put(compressed);
+                return output;
             }
 
-            compressed.flip();
-        }
+            if (output == null) {
+                ByteBuffer result = ByteBuffer.allocate(size);
+                decompressResource(method, compressed, result);
+                return result.flip();
+            }
 
-        ByteBuffer uncompressed = method == CompressionMethod.NONE ? compressed : decompressResource(method, compressed, size);
+            decompressResource(method, compressed, output);
+            return output;
+        } finally {
+            if (scratch != null) {
+                bufferPool.release(scratch);
+            }
+        }
+    }
 
-        if (resource.needCheck) {
-            long checksum = XxHash64.hashByteBufferWithoutUpdate(uncompressed);
+    private void verify(JAppResource resource, ByteBuffer content) throws IOException {
+        if (resource.needCheck && verifyMode.verifiesOnAccess()) {
+            long checksum = XxHash64.hashByteBufferWithoutUpdate(content);
             if (resource.checksum != checksum) {
                 throw new IOException(String.format(
                         "Failed while verifying resource (expected=%x, actual=%x)",
@@ -337,11 +740,186 @@ public final class JAppReader implements DecompressContext, Closeable {
 
             resource.needCheck = false;
         }
+    }
+
+    /**
+     * Verifies the checksum of the resource if it has not been verified, regardless of the verify mode.
+     */
+    void verifyResource(JAppResource resource) throws IOException {
+        if (!resource.needCheck) {
+            return;
+        }
+
+        int size = castArrayLength(resource.getSize());
+        ByteBuffer buffer = bufferPool.acquire(size);
+        try {
+            readUncompressed(resource, size, buffer);
+            buffer.flip();
+
+            long checksum = XxHash64.hashByteBufferWithoutUpdate(buffer);
+            if (resource.checksum != checksum) {
+                throw new IOException(String.format(
+                        "Failed while verifying resource %s (expected=%x, actual=%x)",
+                        resource.getName(), resource.checksum, checksum
+                ));
+            }
+
+            resource.needCheck = false;
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * Reads the resource for {@link JAppPrefetcher}, returns the content in the same way as
+     * {@link #readUncompressed(JAppResource, int, ByteBuffer)} with a {@code null} output.
+     */
+    ByteBuffer prefetchResource(JAppResource resource) throws IOException {
+        ByteBuffer uncompressed = readUncompressed(resource, castArrayLength(resource.getSize()), null);
+        if (!uncompressed.isReadOnly()) {
+            verify(resource, uncompressed);
+        }
+        return uncompressed;
+    }
+
+    /**
+     * Returns the content of the resource if it does not need to be read from the file,
+     * because it is in the service index or has been prefetched, otherwise returns {@code null}.
+     */
+    private ByteBuffer getAvailableContent(JAppResource resource) throws IOException {
+        ByteBuffer content = serviceIndex != null ? serviceIndex.getContent(resource) : null;
+        if (content == null && prefetcher != null) {
+            content = prefetcher.take(resource);
+        }
+        return content;
+    }
+
+    /**
+     * Returns whether the content of the resource may be in the resource cache.
+     * <p>
+     * Stored contents of the mapped file are read as views, and so are the contents that turned out to be views
+     * when they were read, so looking them up would only count misses.
+     */
+    private boolean isCacheable(JAppResource resource) {
+        return resourceCache != null && !resource.uncacheable
+               && (resource.getMethod() != CompressionMethod.NONE || mappedSegments == null);
+    }
+
+    public ByteBuffer readResource(JAppResource resource) throws IOException {
+        if (profile != null) {
+            profile.record(resource);
+        }
+
+        int size = castArrayLength(resource.getSize());
+        if (size == 0) {
+            return ByteBuffer.allocate(0);
+        }
+
+        boolean cacheable = isCacheable(resource);
+        if (cacheable) {
+            ByteBuffer cached = resourceCache.get(resource);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        ByteBuffer uncompressed = getAvailableContent(resource);
+        if (uncompressed == null) {
+            uncompressed = readUncompressed(resource, size, null);
+        }
+        verify(resource, uncompressed);
+
+        // Read-only contents are views of the mapped file or the cached solid blocks, which are cheap to read again
+        if (uncompressed.isReadOnly()) {
+            resource.uncacheable = true;
+        } else if (cacheable) {
+            return resourceCache.put(resource, uncompressed);
+        }
 
         return uncompressed;
     }
 
+    /**
+     * Reads the uncompressed content of the resource into the output buffer, and advances its position by the size of the resource.
+     * <p>
+     * Unlike {@link #readResource(JAppResource)}, this method does not allocate buffers for the content,
+     * so the output buffer is usually acquired from {@link #getBufferPool()} and released after use:
+     *
+     * <pre>{@code
+     * ByteBuffer buffer = reader.getBufferPool().acquire(Math.toIntExact(resource.getSize()));
+     * try {
+     *     reader.readResource(resource, buffer);
+     *     buffer.flip();
+     *     // use the buffer
+     * } finally {
+     *     reader.getBufferPool().release(buffer);
+     * }
+     * }</pre>
+     *
+     * @throws BufferOverflowException if the remaining bytes of the output buffer are fewer than the size of the resource
+     */
+    public void readResource(JAppResource resource, ByteBuffer output) throws IOException {
+        if (output.isReadOnly()) {
+            throw new ReadOnlyBufferException();
+        }
+
+        if (profile != null) {
+            profile.record(resource);
+        }
+
+        int size = castArrayLength(resource.getSize());
+        if (size > output.remaining()) {
+            throw new BufferOverflowException();
+        }
+        if (size == 0) {
+            return;
+        }
+
+        int position = output.position();
+        int limit = output.limit();
+        output.limit(position + size);
+        try {
+            ByteBuffer cached = isCacheable(resource) ? resourceCache.get(resource) : null;
+            ByteBuffer available;
+            if (cached != null) {
+                output.put(cached);
+            } else if ((available = getAvailableContent(resource)) != null) {
+                output.put(available);
+                output.position(position);
+                verify(resource, output);
+            } else {
+                readUncompressed(resource, size, output);
+                output.position(position);
+                verify(resource, output);
+            }
+        } finally {
+            output.limit(limit);
+        }
+        output.position(position + size);
+    }
+
+    /**
+     * Opens a stream over the uncompressed content of the resource.
+     * <p>
+     * The content of a compressed resource is read into a buffer of {@link #getBufferPool()},
+     * which is returned to the pool when the stream is closed.
+     */
     public InputStream openResource(JAppResource resource) throws IOException {
-        return new ByteBufferInputStream(readResource(resource));
+        int size = castArrayLength(resource.getSize());
+
+        // Stored contents are views of the mapped file, there is nothing to pool
+        if (size == 0 || resource.getMethod() == CompressionMethod.NONE) {
+            return new ByteBufferInputStream(readResource(resource));
+        }
+
+        ByteBuffer buffer = bufferPool.acquire(size);
+        try {
+            readResource(resource, buffer);
+        } catch (Throwable e) {
+            bufferPool.release(buffer);
+            throw e;
+        }
+        buffer.flip();
+        return new ByteBufferInputStream(buffer, bufferPool::release);
     }
 }
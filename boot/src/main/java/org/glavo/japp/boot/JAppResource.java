@@ -27,6 +27,11 @@ public final class JAppResource {
     public static final byte MAGIC_NUMBER = (byte) 0x1b;
     public static final long NO_TIME = Long.MIN_VALUE;
 
+    /**
+     * The maximum uncompressed and stored size of a resource, the reader reads a resource into a single array or buffer.
+     */
+    public static final int MAX_SIZE = Integer.MAX_VALUE - 8;
+
     private final String name;
 
     private final long offset;
@@ -42,6 +47,14 @@ public final class JAppResource {
     boolean needCheck;
     long checksum;
 
+    int solidBlockIndex = -1;
+
+    // The index of the group that the resource belongs to, or -1 if the resource is not read from a group
+    int groupIndex = -1;
+
+    // Set when the content has been read as a read-only view, which the reader does not put into the resource cache
+    boolean uncacheable;
+
     public JAppResource(String name, long offset, long size, CompressionMethod method, long compressedSize) {
         this.name = name;
         this.offset = offset;
@@ -82,6 +95,54 @@ public final class JAppResource {
         return compressedSize;
     }
 
+    /**
+     * Offset of the name in a resource record.
+     */
+    static final int NAME_OFFSET = 32; // 1 + 1 + 2 + 4 + 8 + 8 + 8
+
+    /**
+     * Returns the length of the name of the resource record at the index of the buffer.
+     */
+    static int getNameLength(ByteBuffer buffer, int index) {
+        return Short.toUnsignedInt(buffer.getShort(index + 2));
+    }
+
+    /**
+     * Skips a resource record without decoding it, this only checks the structure of the record.
+     */
+    static void skip(ByteBuffer buffer) throws IOException {
+        int start = buffer.position();
+
+        byte magic = buffer.get();
+        if (magic != MAGIC_NUMBER) {
+            throw new IOException(String.format("Wrong resource magic: 0x%02x", magic));
+        }
+
+        buffer.position(start + NAME_OFFSET + getNameLength(buffer, start));
+
+        int fieldId;
+        while ((fieldId = Byte.toUnsignedInt(buffer.get())) != 0) {
+            JAppResourceField field = JAppResourceField.of(fieldId);
+            if (field == null) {
+                throw new IOException(String.format("Unknown field: 0x%02x", fieldId));
+            }
+
+            switch (field) {
+                case CHECKSUM:
+                case FILE_CREATE_TIME:
+                case FILE_LAST_MODIFIED_TIME:
+                case FILE_LAST_ACCESS_TIME:
+                    buffer.position(buffer.position() + 8);
+                    break;
+                case SOLID_BLOCK_INDEX:
+                    buffer.position(buffer.position() + 4);
+                    break;
+                default:
+                    throw new AssertionError("Field: " + field);
+            }
+        }
+    }
+
     public static JAppResource readFrom(ByteBuffer buffer) throws IOException {
         byte magic = buffer.get();
         if (magic != MAGIC_NUMBER) {
@@ -156,18 +217,36 @@ public final class JAppResource {
                     }
                     break;
                 }
+                case SOLID_BLOCK_INDEX: {
+                    int index = buffer.getInt();
+                    if (index < 0) {
+                        throw new IOException("Invalid solid block index: " + Integer.toUnsignedString(index));
+                    }
+
+                    if (resource.solidBlockIndex != -1) {
+                        throw new IOException("Duplicate field: " + field);
+                    }
+
+                    resource.solidBlockIndex = index;
+                    break;
+                }
                 default:
                     throw new AssertionError("Field: " + field);
             }
         }
 
+        if ((compressionMethod == CompressionMethod.SOLID) != (resource.solidBlockIndex != -1)) {
+            throw new IOException("Resource " + path + " has compression method " + compressionMethod
+                                  + ", but the solid block index is " + resource.solidBlockIndex);
+        }
+
         return resource;
     }
 
     @Override
     public String toString() {
         return String.format(
-                "JAppResource[name=%s, offset=%d, size=%d, method=%s, compressedSize=%d, creationTime=%d, lastModifiedTime=%d, lastAccessTime=%d, needCheck=%s, checksum=%d]",
-                name, offset, size, method, compressedSize, creationTime, lastModifiedTime, lastAccessTime, needCheck, checksum);
+                "JAppResource[name=%s, offset=%d, size=%d, method=%s, compressedSize=%d, creationTime=%d, lastModifiedTime=%d, lastAccessTime=%d, needCheck=%s, checksum=%d, solidBlockIndex=%d]",
+                name, offset, size, method, compressedSize, creationTime, lastModifiedTime, lastAccessTime, needCheck, checksum, solidBlockIndex);
     }
 }
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.boot;
+
+import org.glavo.japp.util.SizeUtils;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A cache of decompressed resources with a limit on the total size of the cached contents.
+ * <p>
+ * Resources that are read repeatedly (such as service files and property bundles) are decompressed only once.
+ * The least recently used resources are evicted when the cache is full,
+ * and resources larger than 1/8 of the limit are never cached, so that a single large resource does not flush the cache.
+ */
+public final class JAppResourceCache {
+
+    /**
+     * The system property that enables the cache, its value is the maximum size of the cache,
+     * such as {@code 16M}. The cache is disabled if the property is not set or the size is {@code 0}.
+     */
+    public static final String PROPERTY_SIZE = "org.glavo.japp.boot.resourceCache.size";
+
+    /**
+     * Returns the cache configured by {@link #PROPERTY_SIZE}, or {@code null} if the cache is disabled.
+     */
+    static JAppResourceCache fromSystemProperties() {
+        String value = System.getProperty(PROPERTY_SIZE);
+        if (value == null) {
+            return null;
+        }
+
+        long maxSize = SizeUtils.parseSize(value.trim());
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Invalid " + PROPERTY_SIZE + ": " + value);
+        }
+        return maxSize > 0 ? new JAppResourceCache(maxSize) : null;
+    }
+
+    private final long maxSize;
+    private final long maxEntrySize;
+
+    private final LinkedHashMap<JAppResource, ByteBuffer> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long size = 0;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+    public JAppResourceCache(long maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize: " + maxSize);
+        }
+
+        this.maxSize = maxSize;
+        this.maxEntrySize = maxSize / 8;
+    }
+
+    /**
+     * Returns a read-only view of the cached content of the resource, or {@code null} if it is not cached.
+     */
+    ByteBuffer get(JAppResource resource) {
+        ByteBuffer content;
+        synchronized (entries) {
+            content = entries.get(resource);
+        }
+
+        if (content != null) {
+            hitCount.increment();
+            return content.duplicate();
+        } else {
+            missCount.increment();
+            return null;
+        }
+    }
+
+    /**
+     * Caches the content of the resource if it is small enough, and returns a read-only view of the content.
+     */
+    ByteBuffer put(JAppResource resource, ByteBuffer content) {
+        ByteBuffer readOnly = content.asReadOnlyBuffer();
+        int contentSize = readOnly.remaining();
+        if (contentSize > maxEntrySize) {
+            return readOnly;
+        }
+
+        synchronized (entries) {
+            ByteBuffer old = entries.put(resource, readOnly);
+            if (old != null) {
+                size -= old.remaining();
+            }
+            size += contentSize;
+
+            Iterator<Map.Entry<JAppResource, ByteBuffer>> iterator = entries.entrySet().iterator();
+            while (size > maxSize && iterator.hasNext()) {
+                size -= iterator.next().getValue().remaining();
+                iterator.remove();
+            }
+        }
+
+        return readOnly.duplicate();
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the total size of the cached contents.
+     */
+    public long getSize() {
+        synchronized (entries) {
+            return size;
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+}
@@ -25,7 +25,12 @@ public enum JAppResourceField {
 
     FILE_CREATE_TIME,
     FILE_LAST_MODIFIED_TIME,
-    FILE_LAST_ACCESS_TIME
+    FILE_LAST_ACCESS_TIME,
+
+    /**
+     * Index of the resource in the solid block (4byte)
+     */
+    SOLID_BLOCK_INDEX
     ;
 
     private static final JAppResourceField[] FIELDS = values();
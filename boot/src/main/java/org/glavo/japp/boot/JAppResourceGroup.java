@@ -15,16 +15,139 @@
  */
 package org.glavo.japp.boot;
 
+import org.glavo.japp.CompressionMethod;
+import org.glavo.japp.boot.decompressor.ZstdDecompressorPool;
+import org.glavo.japp.boot.decompressor.zstd.ZstdFrameDecompressor;
+import org.glavo.japp.boot.module.JAppModuleInfo;
+import org.glavo.japp.util.BloomFilter;
+import org.glavo.japp.util.ByteBufferUtils;
+import org.glavo.japp.util.XxHash64;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
-public final class JAppResourceGroup extends LinkedHashMap<String, JAppResource> {
+/**
+ * The resources of a group.
+ * <p>
+ * The compressed content of the group is kept when the metadata is read, and is decompressed, verified and indexed
+ * on the first lookup, so that the groups which are never accessed cost nothing at startup.
+ * The decoded group is kept as a {@link JAppResourceIndex}, which creates the {@link JAppResource} objects on demand.
+ */
+public final class JAppResourceGroup {
 
     public static final byte MAGIC_NUMBER = (byte) 0xeb;
     public static final int HEADER_LENGTH = 24; // 1 + 1 + 2 + 4 + 4 + 4 + 8
 
+    /**
+     * The group is followed by a {@link BloomFilter} of its resource names and package names.
+     */
+    public static final short FLAG_BLOOM_FILTER = 0x0001;
+
+    /**
+     * The group is followed by a {@link JAppModuleInfo}, after the bloom filter if present.
+     */
+    public static final short FLAG_MODULE_INFO = 0x0002;
+
+    public static final long BLOOM_FILTER_SEED_RESOURCE = 0L;
+    public static final long BLOOM_FILTER_SEED_PACKAGE = 0x5f3759dfL;
+
+    /**
+     * Returns the package of the resource with '/' as separator, or an empty string if the resource is at the root.
+     */
+    public static String getPackageName(String resourceName) {
+        int idx = resourceName.lastIndexOf('/');
+        return idx > 0 ? resourceName.substring(0, idx) : "";
+    }
+
+    /**
+     * Reads the header of the group at the position of the buffer, and skips its content without decoding it.
+     *
+     * @param verifyOnDecode whether the checksum of the group is verified when it is decoded,
+     *                       otherwise it is only verified by {@link #verify()}
+     */
+    static JAppResourceGroup readFrom(ByteBuffer buffer, int index, ZstdDecompressorPool decompressors,
+                                      boolean verifyOnDecode) throws IOException {
+        byte magic = buffer.get();
+        if (magic != MAGIC_NUMBER) {
+            throw new IOException(String.format("Wrong resource group magic: 0x%02x", magic));
+        }
+
+        CompressionMethod compressionMethod = CompressionMethod.readFrom(buffer);
+        if (compressionMethod != CompressionMethod.NONE && compressionMethod != CompressionMethod.ZSTD) {
+            throw new IOException("Unsupported compression method: " + compressionMethod);
+        }
+
+        short flags = buffer.getShort();
+        if ((flags & ~(FLAG_BLOOM_FILTER | FLAG_MODULE_INFO)) != 0) {
+            throw new IOException(String.format("Unknown resource group flags: 0x%04x", flags));
+        }
+
+        int uncompressedSize = buffer.getInt();
+        int compressedSize = buffer.getInt();
+        int resourcesCount = buffer.getInt();
+        long checksum = buffer.getLong();
+
+        if (uncompressedSize < 0 || compressedSize < 0 || compressedSize > buffer.remaining() || resourcesCount < 0) {
+            throw new IOException("Invalid resource group header");
+        }
+
+        ByteBuffer content = ByteBufferUtils.slice(buffer, buffer.position(), compressedSize);
+        buffer.position(buffer.position() + compressedSize);
+
+        BloomFilter bloomFilter = (flags & FLAG_BLOOM_FILTER) != 0 ? BloomFilter.readFrom(buffer) : null;
+        JAppModuleInfo moduleInfo = (flags & FLAG_MODULE_INFO) != 0 ? JAppModuleInfo.readFrom(buffer) : null;
+
+        return new JAppResourceGroup(index, compressionMethod, content, uncompressedSize, resourcesCount, checksum,
+                bloomFilter, moduleInfo, decompressors, verifyOnDecode);
+    }
+
     private String name;
 
-    public JAppResourceGroup() {
+    private final int index;
+
+    // The encoded group, released after the group is decoded
+    private CompressionMethod compressionMethod;
+    private ByteBuffer content;
+    private final int uncompressedSize;
+    private final int resourcesCount;
+    private final long checksum;
+    private ZstdDecompressorPool decompressors;
+
+    private final boolean verifyOnDecode;
+    private volatile boolean verified;
+
+    private final BloomFilter bloomFilter;
+    private final JAppModuleInfo moduleInfo;
+
+    private volatile JAppResourceIndex resourceIndex;
+    private volatile JAppResourceGroup[] mergedGroups = new JAppResourceGroup[0];
+    private volatile MergedView mergedView;
+
+    private JAppResourceGroup(int index, CompressionMethod compressionMethod, ByteBuffer content,
+                              int uncompressedSize, int resourcesCount, long checksum,
+                              BloomFilter bloomFilter, JAppModuleInfo moduleInfo,
+                              ZstdDecompressorPool decompressors, boolean verifyOnDecode) {
+        this.index = index;
+        this.compressionMethod = compressionMethod;
+        this.content = content;
+        this.uncompressedSize = uncompressedSize;
+        this.resourcesCount = resourcesCount;
+        this.checksum = checksum;
+        this.bloomFilter = bloomFilter;
+        this.moduleInfo = moduleInfo;
+        this.decompressors = decompressors;
+        this.verifyOnDecode = verifyOnDecode;
     }
 
     public void initName(String name) {
@@ -39,9 +162,353 @@ public final class JAppResourceGroup extends LinkedHashMap<String, JAppResource>
         return name;
     }
 
+    /**
+     * Returns the index of the group in the boot metadata.
+     */
+    int getIndex() {
+        return index;
+    }
+
+    JAppResourceGroup[] getMergedGroups() {
+        return mergedGroups;
+    }
+
+    /**
+     * Adds the resources of the group to this group, replacing the resources with the same names.
+     */
+    public synchronized void addAll(JAppResourceGroup group) {
+        JAppResourceGroup[] oldGroups = this.mergedGroups;
+        JAppResourceGroup[] newGroups = Arrays.copyOf(oldGroups, oldGroups.length + 1);
+        newGroups[oldGroups.length] = group;
+        this.mergedGroups = newGroups;
+    }
+
+    /**
+     * Returns the module info of the group merged with the groups added by {@link #addAll(JAppResourceGroup)},
+     * or {@code null} if the module info of any of them was not written by the packer.
+     */
+    public JAppModuleInfo getModuleInfo() {
+        JAppModuleInfo result = moduleInfo;
+        for (JAppResourceGroup group : mergedGroups) {
+            JAppModuleInfo info = group.getModuleInfo();
+            if (result == null || info == null) {
+                return null;
+            }
+            result = result.merge(info);
+        }
+        return result;
+    }
+
+    private JAppResourceIndex getResourceIndex() {
+        JAppResourceIndex resourceIndex = this.resourceIndex;
+        if (resourceIndex != null) {
+            return resourceIndex;
+        }
+
+        synchronized (this) {
+            resourceIndex = this.resourceIndex;
+            if (resourceIndex == null) {
+                try {
+                    resourceIndex = decode();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+
+                this.resourceIndex = resourceIndex;
+                this.compressionMethod = null;
+                this.content = null;
+                this.decompressors = null;
+            }
+            return resourceIndex;
+        }
+    }
+
+    private JAppResourceIndex decode() throws IOException {
+        byte[] records = new byte[uncompressedSize];
+        if (compressionMethod == CompressionMethod.NONE) {
+            if (content.remaining() != uncompressedSize) {
+                throw new IOException(String.format("Resource group size mismatch at index %d", index));
+            }
+            content.duplicate().get(records);
+        } else {
+            ByteBuffer uncompressed = ByteBuffer.wrap(records);
+
+            ZstdFrameDecompressor decompressor = decompressors.acquire();
+            try {
+                decompressor.decompress(content.duplicate(), uncompressed);
+            } finally {
+                decompressors.release(decompressor);
+            }
+
+            if (uncompressed.hasRemaining()) {
+                throw new IOException(String.format("Resource group size mismatch at index %d", index));
+            }
+        }
+
+        if (verifyOnDecode) {
+            verifyChecksum(records);
+            verified = true;
+        }
+
+        return JAppResourceIndex.build(records, resourcesCount, index);
+    }
+
+    private void verifyChecksum(byte[] records) throws IOException {
+        long actualChecksum = XxHash64.hashByteBufferWithoutUpdate(ByteBuffer.wrap(records));
+        if (actualChecksum != checksum) {
+            throw new IOException(String.format(
+                    "Failed while verifying resource group at index %d (expected=%x, actual=%x)",
+                    index, checksum, actualChecksum
+            ));
+        }
+    }
+
+    /**
+     * Decodes the group if it has not been decoded, and verifies its checksum if it has not been verified.
+     */
+    void verify() throws IOException {
+        JAppResourceIndex resourceIndex;
+        try {
+            resourceIndex = getResourceIndex();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        if (!verified) {
+            verifyChecksum(resourceIndex.getRecords());
+            verified = true;
+        }
+    }
+
+    /**
+     * Returns the resource with the given name, or {@code null} if there is no such resource.
+     *
+     * @throws UncheckedIOException if the group is corrupted
+     */
+    public JAppResource get(String name) {
+        JAppResourceGroup[] mergedGroups = this.mergedGroups;
+        for (int i = mergedGroups.length - 1; i >= 0; i--) {
+            JAppResource resource = mergedGroups[i].get(name);
+            if (resource != null) {
+                return resource;
+            }
+        }
+
+        // Most lookups on class paths miss, the filter answers them without decoding the group
+        if (bloomFilter != null && !bloomFilter.mightContain(name, BLOOM_FILTER_SEED_RESOURCE)) {
+            return null;
+        }
+
+        JAppResourceIndex resourceIndex = getResourceIndex();
+        int i = resourceIndex.indexOf(name);
+        return i >= 0 ? resourceIndex.getResource(i) : null;
+    }
+
+    /**
+     * Returns the resource with the UTF-8 encoded name {@code name[offset, offset + length)},
+     * or {@code null} if there is no such resource.
+     *
+     * @throws UncheckedIOException if the group is corrupted
+     */
+    public JAppResource get(byte[] name, int offset, int length) {
+        JAppResourceGroup[] mergedGroups = this.mergedGroups;
+        for (int i = mergedGroups.length - 1; i >= 0; i--) {
+            JAppResource resource = mergedGroups[i].get(name, offset, length);
+            if (resource != null) {
+                return resource;
+            }
+        }
+
+        if (bloomFilter != null && !bloomFilter.mightContain(name, offset, length, BLOOM_FILTER_SEED_RESOURCE)) {
+            return null;
+        }
+
+        JAppResourceIndex resourceIndex = getResourceIndex();
+        int i = resourceIndex.indexOf(name, offset, length);
+        return i >= 0 ? resourceIndex.getResource(i) : null;
+    }
+
+    /**
+     * Returns {@code false} if the group definitely has no resources in the package.
+     *
+     * @param packageName the name of the package with '/' as separator
+     */
+    public boolean mightContainPackage(String packageName) {
+        for (JAppResourceGroup group : mergedGroups) {
+            if (group.mightContainPackage(packageName)) {
+                return true;
+            }
+        }
+
+        if (bloomFilter != null) {
+            return bloomFilter.mightContain(packageName, BLOOM_FILTER_SEED_PACKAGE);
+        }
+
+        JAppResourceIndex resourceIndex = getResourceIndex();
+        for (int i = 0; i < resourceIndex.getRecordCount(); i++) {
+            if (getPackageName(resourceIndex.getName(i)).equals(packageName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The resources of the group merged with the groups added by {@link #addAll(JAppResourceGroup)}.
+     */
+    private static final class MergedView {
+        final long version;
+        final Map<String, JAppResource> resources;
+
+        MergedView(long version, Map<String, JAppResource> resources) {
+            this.version = version;
+            this.resources = resources;
+        }
+    }
+
+    /**
+     * Returns the number of groups added to this group and, recursively, to the merged groups.
+     * Groups are never removed, so the number changes whenever the resources of the merged view may change.
+     */
+    private long getMergedVersion() {
+        JAppResourceGroup[] mergedGroups = this.mergedGroups;
+        long version = mergedGroups.length;
+        for (JAppResourceGroup group : mergedGroups) {
+            version += group.getMergedVersion();
+        }
+        return version;
+    }
+
+    /**
+     * Returns the resources by name in the order of the resources, the names of the merged groups follow the names of this group.
+     * The view is rebuilt when a group is added to this group or to any of the merged groups.
+     */
+    private Map<String, JAppResource> getMergedResources() {
+        // Read the version before the groups, a group added while building only makes the next call rebuild the view
+        long version = getMergedVersion();
+        MergedView view = this.mergedView;
+        if (view != null && view.version == version) {
+            return view.resources;
+        }
+
+        JAppResourceGroup[] mergedGroups = this.mergedGroups;
+
+        Map<String, JAppResource> resources = new LinkedHashMap<>();
+        JAppResourceIndex resourceIndex = getResourceIndex();
+        for (int i = 0; i < resourceIndex.getRecordCount(); i++) {
+            if (!resourceIndex.isShadowed(i)) {
+                resources.put(resourceIndex.getName(i), resourceIndex.getResource(i));
+            }
+        }
+        // A resource of a later group replaces the resource with the same name, as in get(String)
+        for (JAppResourceGroup group : mergedGroups) {
+            for (JAppResource resource : group.values()) {
+                resources.put(resource.getName(), resource);
+            }
+        }
+
+        resources = Collections.unmodifiableMap(resources);
+        this.mergedView = new MergedView(version, resources);
+        return resources;
+    }
+
+    public int size() {
+        return mergedGroups.length == 0 ? getResourceIndex().size() : getMergedResources().size();
+    }
+
+    public Set<String> keySet() {
+        return new AbstractSet<String>() {
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof String && get((String) o) != null;
+            }
+
+            @Override
+            public int size() {
+                return JAppResourceGroup.this.size();
+            }
+
+            @Override
+            public Iterator<String> iterator() {
+                if (mergedGroups.length != 0) {
+                    return getMergedResources().keySet().iterator();
+                }
+
+                JAppResourceIndex resourceIndex = getResourceIndex();
+                return new IndexIterator<String>(resourceIndex) {
+                    @Override
+                    String get(int i) {
+                        return resourceIndex.getName(i);
+                    }
+                };
+            }
+        };
+    }
+
+    public Collection<JAppResource> values() {
+        return new AbstractCollection<JAppResource>() {
+            @Override
+            public int size() {
+                return JAppResourceGroup.this.size();
+            }
+
+            @Override
+            public Iterator<JAppResource> iterator() {
+                if (mergedGroups.length != 0) {
+                    return getMergedResources().values().iterator();
+                }
+
+                JAppResourceIndex resourceIndex = getResourceIndex();
+                return new IndexIterator<JAppResource>(resourceIndex) {
+                    @Override
+                    JAppResource get(int i) {
+                        return resourceIndex.getResource(i);
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Iterates over the records of the index that are not replaced by later records.
+     */
+    private static abstract class IndexIterator<T> implements Iterator<T> {
+        private final JAppResourceIndex resourceIndex;
+        private int next;
+
+        IndexIterator(JAppResourceIndex resourceIndex) {
+            this.resourceIndex = resourceIndex;
+            this.next = skipShadowed(0);
+        }
+
+        private int skipShadowed(int i) {
+            while (i < resourceIndex.getRecordCount() && resourceIndex.isShadowed(i)) {
+                i++;
+            }
+            return i;
+        }
+
+        abstract T get(int i);
+
+        @Override
+        public boolean hasNext() {
+            return next < resourceIndex.getRecordCount();
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            T value = get(next);
+            next = skipShadowed(next + 1);
+            return value;
+        }
+    }
+
     @Override
     public String toString() {
-        return getClass().getSimpleName() + super.toString();
+        return getClass().getSimpleName() + "[name=" + name + ", size=" + size() + "]";
     }
-
 }
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.boot;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A flat index of the resource records of a decoded group.
+ * <p>
+ * The index keeps the decoded records as they are, and only stores the offset of each record
+ * and an open-addressing hash table of the UTF-8 names. Looking up a resource does not create strings,
+ * and the {@link JAppResource} objects are created when they are first accessed.
+ */
+final class JAppResourceIndex {
+
+    static JAppResourceIndex build(byte[] records, int count, int groupIndex) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(records).order(ByteOrder.LITTLE_ENDIAN);
+
+        int[] recordOffsets = new int[count];
+        try {
+            for (int i = 0; i < count; i++) {
+                recordOffsets[i] = buffer.position();
+                JAppResource.skip(buffer);
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Truncated resource group", e);
+        }
+
+        if (buffer.hasRemaining()) {
+            throw new IOException(String.format("Resource group has %d unused bytes", buffer.remaining()));
+        }
+
+        JAppResourceIndex index = new JAppResourceIndex(records, recordOffsets, groupIndex);
+        index.buildTable();
+        return index;
+    }
+
+    private final byte[] records;
+    private final int[] recordOffsets;
+    private final int groupIndex;
+    private final AtomicReferenceArray<JAppResource> resources;
+
+    // slot value is index + 1, 0 means the slot is empty
+    private int[] table;
+    private int distinctCount = 0;
+    private boolean hasDuplicates = false;
+
+    private JAppResourceIndex(byte[] records, int[] recordOffsets, int groupIndex) {
+        this.records = records;
+        this.recordOffsets = recordOffsets;
+        this.groupIndex = groupIndex;
+        this.resources = new AtomicReferenceArray<>(recordOffsets.length);
+    }
+
+    private static int mix(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    private static int hash(byte[] bytes, int offset, int length) {
+        int h = 0;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + bytes[offset + i];
+        }
+        return mix(h);
+    }
+
+    private void buildTable() {
+        int capacity = Integer.highestOneBit(Math.max(recordOffsets.length, 4) * 2 - 1) << 1;
+        table = new int[capacity];
+        int mask = capacity - 1;
+
+        for (int index = 0; index < recordOffsets.length; index++) {
+            int nameOffset = getNameOffset(index);
+            int nameLength = getNameLength(index);
+
+            int slot = hash(records, nameOffset, nameLength) & mask;
+            int entry;
+            while ((entry = table[slot]) != 0) {
+                if (nameEquals(entry - 1, records, nameOffset, nameLength)) {
+                    // The later record replaces the earlier one, just like Map.put
+                    hasDuplicates = true;
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (table[slot] == 0) {
+                distinctCount++;
+            }
+            table[slot] = index + 1;
+        }
+    }
+
+    private int getNameOffset(int index) {
+        return recordOffsets[index] + JAppResource.NAME_OFFSET;
+    }
+
+    private int getNameLength(int index) {
+        int offset = recordOffsets[index];
+        return Byte.toUnsignedInt(records[offset + 2]) | (Byte.toUnsignedInt(records[offset + 3]) << 8);
+    }
+
+    private boolean nameEquals(int index, byte[] name, int offset, int length) {
+        int nameOffset = getNameOffset(index);
+        return getNameLength(index) == length
+               && Arrays.equals(records, nameOffset, nameOffset + length, name, offset, offset + length);
+    }
+
+    /**
+     * Returns the decoded records, which must not be modified.
+     */
+    byte[] getRecords() {
+        return records;
+    }
+
+    /**
+     * Returns the number of records, including the records replaced by later records with the same name.
+     */
+    int getRecordCount() {
+        return recordOffsets.length;
+    }
+
+    /**
+     * Returns the number of distinct names.
+     */
+    int size() {
+        return distinctCount;
+    }
+
+    /**
+     * Returns the index of the resource with the UTF-8 encoded name {@code name[offset, offset + length)},
+     * or {@code -1} if there is no such resource.
+     */
+    int indexOf(byte[] name, int offset, int length) {
+        int mask = table.length - 1;
+        int slot = hash(name, offset, length) & mask;
+        int entry;
+        while ((entry = table[slot]) != 0) {
+            if (nameEquals(entry - 1, name, offset, length)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the resource with the given name, or {@code -1} if there is no such resource.
+     */
+    int indexOf(String name) {
+        // For ASCII names, the hash of the chars is the hash of the UTF-8 bytes
+        int h = 0;
+        for (int i = 0; i < name.length(); i++) {
+            char ch = name.charAt(i);
+            if (ch >= 0x80) {
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                return indexOf(bytes, 0, bytes.length);
+            }
+            h = 31 * h + ch;
+        }
+
+        int mask = table.length - 1;
+        int slot = mix(h) & mask;
+        int entry;
+        while ((entry = table[slot]) != 0) {
+            if (asciiNameEquals(entry - 1, name)) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private boolean asciiNameEquals(int index, String name) {
+        if (getNameLength(index) != name.length()) {
+            return false;
+        }
+
+        int nameOffset = getNameOffset(index);
+        for (int i = 0; i < name.length(); i++) {
+            if (records[nameOffset + i] != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the resource at the index is replaced by a later resource with the same name.
+     */
+    boolean isShadowed(int index) {
+        return hasDuplicates && indexOf(records, getNameOffset(index), getNameLength(index)) != index;
+    }
+
+    String getName(int index) {
+        return new String(records, getNameOffset(index), getNameLength(index), StandardCharsets.UTF_8);
+    }
+
+    JAppResource getResource(int index) {
+        JAppResource resource = resources.get(index);
+        if (resource != null) {
+            return resource;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(records).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(recordOffsets[index]);
+        try {
+            resource = JAppResource.readFrom(buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        resource.groupIndex = groupIndex;
+
+        // Publish a single instance, the reader keeps per-resource state such as whether the checksum has been verified
+        return resources.compareAndSet(index, null, resource) ? resource : resources.get(index);
+    }
+}
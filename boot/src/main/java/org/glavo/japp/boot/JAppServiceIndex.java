@@ -0,0 +1,304 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.boot;
+
+import org.glavo.japp.CompressionMethod;
+import org.glavo.japp.boot.decompressor.ZstdDecompressorPool;
+import org.glavo.japp.boot.decompressor.zstd.ZstdFrameDecompressor;
+import org.glavo.japp.boot.module.JAppModuleInfo;
+import org.glavo.japp.util.ByteBufferUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The service provider configuration files ({@code META-INF/services/<service>}) of all groups on the class path.
+ * <p>
+ * The index maps each service name to the groups that contain the file and the content of the file,
+ * so the class path finds the files of a service with a single lookup instead of probing every group,
+ * and the files are read without decompressing them.
+ * <p>
+ * Reading the boot metadata only keeps the encoded index. It is decompressed and its service names are read
+ * on the first lookup, and the providers of each service are read on the first lookup of the service.
+ */
+public final class JAppServiceIndex {
+    public static final byte MAGIC_NUMBER = (byte) 0x5e;
+
+    private static final Service NO_SERVICE = new Service(new int[0], new int[0]);
+
+    private static final class Service {
+        final int[] groupIndexes;
+        final int[] contentIndexes;
+
+        Service(int[] groupIndexes, int[] contentIndexes) {
+            this.groupIndexes = groupIndexes;
+            this.contentIndexes = contentIndexes;
+        }
+    }
+
+    /**
+     * The decoded index, the services are read from {@link #body} on demand.
+     */
+    private static final class Table {
+        final ByteBuffer body;
+        final Map<String, Integer> serviceOffsets;
+        final int[] contentOffsets;
+        final int[] contentSizes;
+
+        Table(ByteBuffer body, Map<String, Integer> serviceOffsets, int[] contentOffsets, int[] contentSizes) {
+            this.body = body;
+            this.serviceOffsets = serviceOffsets;
+            this.contentOffsets = contentOffsets;
+            this.contentSizes = contentSizes;
+        }
+    }
+
+    public static JAppServiceIndex readFrom(ByteBuffer buffer, ZstdDecompressorPool decompressors) throws IOException {
+        try {
+            byte magic = buffer.get();
+            if (magic != MAGIC_NUMBER) {
+                throw new IOException(String.format("Wrong service index magic: 0x%02x", magic));
+            }
+
+            CompressionMethod compressionMethod = CompressionMethod.readFrom(buffer);
+            if (compressionMethod != CompressionMethod.NONE && compressionMethod != CompressionMethod.ZSTD) {
+                throw new IOException("Unsupported compression method: " + compressionMethod);
+            }
+
+            short reserved = buffer.getShort();
+            if (reserved != 0) {
+                throw new IOException("Reserved is not zero");
+            }
+
+            int uncompressedSize = buffer.getInt();
+            int compressedSize = buffer.getInt();
+            if (uncompressedSize < 0 || compressedSize < 0 || compressedSize > buffer.remaining()) {
+                throw new IOException("Invalid service index header");
+            }
+
+            ByteBuffer content = ByteBufferUtils.slice(buffer, buffer.position(), compressedSize);
+            buffer.position(buffer.position() + compressedSize);
+            return new JAppServiceIndex(compressionMethod, content, uncompressedSize, decompressors);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated service index", e);
+        }
+    }
+
+    // The encoded index, released after the index is decoded
+    private CompressionMethod compressionMethod;
+    private ByteBuffer content;
+    private final int uncompressedSize;
+    private ZstdDecompressorPool decompressors;
+
+    private volatile Table table;
+    private final ConcurrentHashMap<String, Service> services = new ConcurrentHashMap<>();
+
+    private JAppServiceIndex(CompressionMethod compressionMethod, ByteBuffer content, int uncompressedSize,
+                             ZstdDecompressorPool decompressors) {
+        this.compressionMethod = compressionMethod;
+        this.content = content;
+        this.uncompressedSize = uncompressedSize;
+        this.decompressors = decompressors;
+    }
+
+    private Table getTable() {
+        Table table = this.table;
+        if (table != null) {
+            return table;
+        }
+
+        synchronized (this) {
+            table = this.table;
+            if (table == null) {
+                try {
+                    table = decode();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+
+                this.table = table;
+                this.compressionMethod = null;
+                this.content = null;
+                this.decompressors = null;
+            }
+            return table;
+        }
+    }
+
+    private Table decode() throws IOException {
+        byte[] bytes = new byte[uncompressedSize];
+        if (compressionMethod == CompressionMethod.NONE) {
+            if (content.remaining() != uncompressedSize) {
+                throw new IOException("Service index size mismatch");
+            }
+            content.duplicate().get(bytes);
+        } else {
+            ByteBuffer uncompressed = ByteBuffer.wrap(bytes);
+
+            ZstdFrameDecompressor decompressor = decompressors.acquire();
+            try {
+                decompressor.decompress(content.duplicate(), uncompressed);
+            } finally {
+                decompressors.release(decompressor);
+            }
+
+            if (uncompressed.hasRemaining()) {
+                throw new IOException("Service index size mismatch");
+            }
+        }
+
+        ByteBuffer body = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            int serviceCount = body.getInt();
+            if (serviceCount < 0) {
+                throw new IOException("Invalid service count: " + serviceCount);
+            }
+
+            Map<String, Integer> serviceOffsets = new HashMap<>();
+            for (int i = 0; i < serviceCount; i++) {
+                String serviceName = ByteBufferUtils.readString(body);
+                int providerCount = body.getInt();
+                if (providerCount < 0 || providerCount > body.remaining() / 8) {
+                    throw new IOException("Invalid provider count: " + providerCount);
+                }
+                serviceOffsets.put(serviceName, body.position() - 4);
+                body.position(body.position() + providerCount * 8);
+            }
+
+            int contentCount = body.getInt();
+            if (contentCount < 0 || contentCount > body.remaining() / 4) {
+                throw new IOException("Invalid content count: " + contentCount);
+            }
+            int[] contentSizes = new int[contentCount];
+            int[] contentOffsets = new int[contentCount];
+            int offset = body.position() + contentCount * 4;
+            for (int i = 0; i < contentCount; i++) {
+                int size = body.getInt();
+                if (size < 0 || size > bytes.length - offset) {
+                    throw new IOException("Invalid content size: " + size);
+                }
+                contentSizes[i] = size;
+                contentOffsets[i] = offset;
+                offset += size;
+            }
+
+            return new Table(body, serviceOffsets, contentOffsets, contentSizes);
+        } catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+            throw new IOException("Truncated service index", e);
+        }
+    }
+
+    private Service getService(String serviceName) {
+        Service service = services.get(serviceName);
+        if (service != null) {
+            return service;
+        }
+
+        Table table = getTable();
+        Integer offset = table.serviceOffsets.get(serviceName);
+        if (offset == null) {
+            return NO_SERVICE;
+        }
+
+        ByteBuffer body = table.body;
+        int providerCount = body.getInt(offset);
+        int[] groupIndexes = new int[providerCount];
+        int[] contentIndexes = new int[providerCount];
+        for (int i = 0; i < providerCount; i++) {
+            groupIndexes[i] = body.getInt(offset + 4 + i * 8);
+            contentIndexes[i] = body.getInt(offset + 8 + i * 8);
+            if (contentIndexes[i] < 0 || contentIndexes[i] >= table.contentSizes.length) {
+                throw new UncheckedIOException(new IOException("Invalid content index: " + contentIndexes[i]));
+            }
+        }
+
+        service = new Service(groupIndexes, contentIndexes);
+        Service previous = services.putIfAbsent(serviceName, service);
+        return previous != null ? previous : service;
+    }
+
+    private static int find(Service service, int groupIndex) {
+        for (int i = 0; i < service.groupIndexes.length; i++) {
+            if (service.groupIndexes[i] == groupIndex) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns whether the group, or any group merged into it, contains the configuration file of the service.
+     *
+     * @throws UncheckedIOException if the index is corrupted
+     */
+    boolean contains(String serviceName, JAppResourceGroup group) {
+        Service service = getService(serviceName);
+        return service != NO_SERVICE && contains(service, group);
+    }
+
+    private static boolean contains(Service service, JAppResourceGroup group) {
+        if (find(service, group.getIndex()) >= 0) {
+            return true;
+        }
+        for (JAppResourceGroup merged : group.getMergedGroups()) {
+            if (contains(service, merged)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the content of the resource if it is an indexed configuration file, otherwise returns {@code null}.
+     */
+    ByteBuffer getContent(JAppResource resource) throws IOException {
+        if (resource.groupIndex < 0) {
+            return null;
+        }
+
+        String serviceName = JAppModuleInfo.getServiceName(resource.getName());
+        if (serviceName == null) {
+            return null;
+        }
+
+        Service service;
+        Table table;
+        try {
+            service = getService(serviceName);
+            table = getTable();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        int i = find(service, resource.groupIndex);
+        if (i < 0) {
+            return null;
+        }
+
+        int contentIndex = service.contentIndexes[i];
+        if (table.contentSizes[contentIndex] != resource.getSize()) {
+            return null;
+        }
+        return ByteBufferUtils.slice(table.body, table.contentOffsets[contentIndex], table.contentSizes[contentIndex])
+                .asReadOnlyBuffer();
+    }
+}
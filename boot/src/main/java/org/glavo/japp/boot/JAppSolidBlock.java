@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.boot;
+
+import org.glavo.japp.CompressionMethod;
+import org.glavo.japp.util.ByteBufferUtils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A decompressed solid block.
+ * <p>
+ * Small resources of a resource group are concatenated into solid blocks that are compressed as a whole,
+ * the offset table in the block header is used to find the resources in the decompressed block.
+ */
+public final class JAppSolidBlock {
+
+    public static final byte MAGIC_NUMBER = (byte) 0x5b;
+    public static final int HEADER_LENGTH = 16; // 1 + 1 + 2 + 4 + 4 + 4
+
+    private final ByteBuffer content;
+    private final int[] offsets;
+    private final CompressionMethod[] methods;
+
+    JAppSolidBlock(ByteBuffer content, int[] offsets, CompressionMethod[] methods) {
+        this.content = content;
+        this.offsets = offsets;
+        this.methods = methods;
+    }
+
+    public int getEntryCount() {
+        return methods.length;
+    }
+
+    public CompressionMethod getEntryMethod(int index) {
+        return methods[index];
+    }
+
+    public ByteBuffer getEntry(int index) {
+        return ByteBufferUtils.slice(content, offsets[index], offsets[index + 1] - offsets[index]);
+    }
+}
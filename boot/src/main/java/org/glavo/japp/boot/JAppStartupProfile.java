@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.boot;
+
+import org.glavo.japp.io.LittleEndianDataOutput;
+import org.glavo.japp.util.ByteBufferUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The order in which the resources of a japp file are read, recorded in one run and followed by
+ * {@link JAppPrefetcher} in later runs.
+ * <p>
+ * A profile records each resource as the index of its group and its name,
+ * and is only valid for the japp file whose boot metadata has the same hash.
+ * Only the reads in the startup window are recorded, at most {@link #MAX_ENTRIES} resources.
+ */
+public final class JAppStartupProfile {
+    public static final int MAGIC_NUMBER = 0x464f5250; // "PROF"
+
+    /**
+     * The system property that specifies the profile file.
+     * If the file exists and was recorded for the same japp file, the resources are prefetched in the recorded order,
+     * otherwise the order is recorded and written to the file when the JVM exits.
+     */
+    public static final String PROPERTY = "org.glavo.japp.boot.profile";
+
+    /**
+     * The system property that forces the order to be recorded even if the profile file is valid.
+     */
+    public static final String PROPERTY_RECORD = "org.glavo.japp.boot.profile.record";
+
+    static final int MAX_ENTRIES = 1 << 16;
+    static final long RECORD_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    static final class Entry {
+        final int groupIndex;
+        final String name;
+
+        Entry(int groupIndex, String name) {
+            this.groupIndex = groupIndex;
+            this.name = name;
+        }
+    }
+
+    /**
+     * Returns the entries of the profile, or {@code null} if the file does not exist or was recorded for another japp file.
+     */
+    static List<Entry> readFrom(Path file, long archiveHash) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            if (buffer.getInt() != MAGIC_NUMBER || buffer.getLong() != archiveHash) {
+                return null;
+            }
+
+            int count = buffer.getInt();
+            if (count < 0) {
+                throw new IOException("Invalid profile: " + file);
+            }
+
+            List<Entry> entries = new ArrayList<>(Math.min(count, MAX_ENTRIES));
+            for (int i = 0; i < count; i++) {
+                int groupIndex = buffer.getInt();
+                String name = ByteBufferUtils.readString(buffer);
+                entries.add(new Entry(groupIndex, name));
+            }
+            return entries;
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            throw new IOException("Invalid profile: " + file, e);
+        }
+    }
+
+    private final long archiveHash;
+    private final long deadline;
+    private final int maxEntries;
+    private final Set<JAppResource> recorded = ConcurrentHashMap.newKeySet();
+    private final ConcurrentLinkedQueue<JAppResource> order = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger count = new AtomicInteger();
+
+    private volatile boolean stopped = false;
+
+    JAppStartupProfile(long archiveHash) {
+        this(archiveHash, RECORD_WINDOW_NANOS, MAX_ENTRIES);
+    }
+
+    JAppStartupProfile(long archiveHash, long windowNanos, int maxEntries) {
+        this.archiveHash = archiveHash;
+        this.deadline = System.nanoTime() + windowNanos;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Records that the resource is read, only the first read of each resource is recorded.
+     * <p>
+     * Recording stops once the startup window has passed or the profile is full,
+     * the reads after that are not part of the startup and are left out of the profile.
+     */
+    void record(JAppResource resource) {
+        if (stopped || resource.groupIndex < 0) {
+            return;
+        }
+
+        if (System.nanoTime() - deadline >= 0) {
+            stopped = true;
+            return;
+        }
+
+        if (!recorded.contains(resource)) {
+            if (count.incrementAndGet() > maxEntries) {
+                stopped = true;
+            } else if (recorded.add(resource)) {
+                order.add(resource);
+            } else {
+                count.decrementAndGet();
+            }
+        }
+    }
+
+    void writeTo(Path file) throws IOException {
+        List<JAppResource> resources = new ArrayList<>(order);
+
+        // Write to a temporary file first, so that a concurrent run never reads a partially written profile
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream stream = Files.newOutputStream(tempFile);
+             LittleEndianDataOutput output = LittleEndianDataOutput.of(stream)) {
+            output.writeInt(MAGIC_NUMBER);
+            output.writeLong(archiveHash);
+            output.writeInt(resources.size());
+            for (JAppResource resource : resources) {
+                output.writeInt(resource.groupIndex);
+                output.writeString(resource.getName());
+            }
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
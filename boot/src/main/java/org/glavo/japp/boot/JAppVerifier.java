@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.boot;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Verifies the checksums of all resource groups and resources of a japp file in parallel.
+ */
+final class JAppVerifier {
+
+    private final JAppReader reader;
+    private final List<JAppResourceGroup> groups;
+
+    JAppVerifier(JAppReader reader, List<JAppResourceGroup> groups) {
+        this.reader = reader;
+        this.groups = groups;
+    }
+
+    private static void verify(JAppReader reader, JAppResourceGroup group) throws IOException {
+        group.verify();
+        for (JAppResource resource : group.values()) {
+            reader.verifyResource(resource);
+        }
+    }
+
+    private ExecutorService createExecutor(int threads, int priority) {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "JApp Verifier " + counter.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(priority);
+            return thread;
+        });
+    }
+
+    /**
+     * Verifies all groups and waits for the verification to complete.
+     *
+     * @throws IOException if any checksum does not match
+     */
+    void verify() throws IOException {
+        int threads = Math.min(groups.size(), Runtime.getRuntime().availableProcessors());
+        if (threads <= 1) {
+            for (JAppResourceGroup group : groups) {
+                verify(reader, group);
+            }
+            return;
+        }
+
+        ExecutorService executor = createExecutor(threads, Thread.NORM_PRIORITY);
+        try {
+            List<Future<?>> futures = new ArrayList<>(groups.size());
+            for (JAppResourceGroup group : groups) {
+                futures.add(executor.submit(() -> {
+                    verify(reader, group);
+                    return null;
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    throw new IOException(cause);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Starts verifying all groups on low-priority daemon threads.
+     * If any checksum does not match, the error is reported and the JVM is terminated immediately,
+     * because the application may already be running with the corrupted contents.
+     */
+    void startInBackground() {
+        int threads = Math.max(1, Math.min(groups.size(), Runtime.getRuntime().availableProcessors() / 2));
+        ExecutorService executor = createExecutor(threads, Thread.MIN_PRIORITY);
+        for (JAppResourceGroup group : groups) {
+            executor.execute(() -> {
+                try {
+                    verify(reader, group);
+                } catch (Throwable e) {
+                    System.err.println("Error: The japp file is corrupted");
+                    e.printStackTrace();
+                    Runtime.getRuntime().halt(1);
+                }
+            });
+        }
+        executor.shutdown();
+    }
+}
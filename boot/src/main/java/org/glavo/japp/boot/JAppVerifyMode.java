@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.boot;
+
+/**
+ * When the checksums of the resource groups and resources of a japp file are verified.
+ */
+public enum JAppVerifyMode {
+    /**
+     * Verifies the whole file before the main method is invoked.
+     */
+    EAGER("eager"),
+
+    /**
+     * Verifies each group when it is decoded, and each resource when it is read for the first time.
+     */
+    LAZY("lazy"),
+
+    /**
+     * Verifies the whole file on low-priority background threads after the main class is loaded,
+     * and terminates the JVM if any checksum does not match. Groups and resources are not verified when they are read.
+     */
+    BACKGROUND("background"),
+
+    /**
+     * Never verifies the checksums.
+     */
+    OFF("off");
+
+    /**
+     * The system property that selects the mode, the default mode is {@link #LAZY}.
+     */
+    public static final String PROPERTY = "org.glavo.japp.boot.verify";
+
+    static JAppVerifyMode fromSystemProperties() {
+        String value = System.getProperty(PROPERTY);
+        return value != null ? of(value.trim()) : LAZY;
+    }
+
+    public static JAppVerifyMode of(String name) {
+        for (JAppVerifyMode mode : values()) {
+            if (mode.name.equals(name)) {
+                return mode;
+            }
+        }
+        throw new IllegalArgumentException("Unknown verify mode: " + name);
+    }
+
+    private final String name;
+
+    JAppVerifyMode(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns whether groups and resources are verified when they are accessed for the first time.
+     */
+    public boolean verifiesOnAccess() {
+        return this == EAGER || this == LAZY;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
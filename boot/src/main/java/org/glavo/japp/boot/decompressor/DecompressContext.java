@@ -15,12 +15,34 @@
  */
 package org.glavo.japp.boot.decompressor;
 
+import org.glavo.japp.CompressionMethod;
 import org.glavo.japp.boot.decompressor.classfile.ByteArrayPool;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 
 public interface DecompressContext {
     ByteArrayPool getPool();
 
     void decompressZstd(ByteBuffer input, ByteBuffer output);
+
+    /**
+     * Decompresses a zstd frame that references one of the dictionaries in the boot metadata.
+     */
+    default void decompressZstdDict(ByteBuffer input, ByteBuffer output) throws IOException {
+        throw new IOException("Unsupported compression method: " + CompressionMethod.ZSTD_DICT);
+    }
+
+    /**
+     * Returns a scratch buffer whose position is zero and whose limit is {@code size}.
+     */
+    default ByteBuffer acquireBuffer(int size) {
+        return ByteBuffer.allocate(size);
+    }
+
+    /**
+     * Returns a scratch buffer acquired by {@link #acquireBuffer(int)} after use.
+     */
+    default void releaseBuffer(ByteBuffer buffer) {
+    }
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.boot.decompressor;
+
+import org.glavo.japp.boot.decompressor.zstd.ZstdFrameDecompressor;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A lock-free pool of zstd decompressors.
+ * <p>
+ * A decompressor holds a buffer of the maximum block size, so the pool keeps at most a few of them per processor
+ * instead of one per thread. When all decompressors are in use, a new one is created,
+ * and it is dropped if the pool is full when it is released.
+ */
+public final class ZstdDecompressorPool {
+
+    private final AtomicReferenceArray<ZstdFrameDecompressor> slots;
+
+    public ZstdDecompressorPool() {
+        this(Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    public ZstdDecompressorPool(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity: " + capacity);
+        }
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    private static int getStartSlot(int capacity) {
+        // Threads start probing from different slots, so that they rarely compete for the same slot
+        return (int) (Thread.currentThread().getId() % capacity);
+    }
+
+    public ZstdFrameDecompressor acquire() {
+        int capacity = slots.length();
+        int start = getStartSlot(capacity);
+        for (int i = 0; i < capacity; i++) {
+            int slot = (start + i) % capacity;
+            if (slots.get(slot) != null) {
+                ZstdFrameDecompressor decompressor = slots.getAndSet(slot, null);
+                if (decompressor != null) {
+                    return decompressor;
+                }
+            }
+        }
+        return new ZstdFrameDecompressor();
+    }
+
+    public void release(ZstdFrameDecompressor decompressor) {
+        int capacity = slots.length();
+        int start = getStartSlot(capacity);
+        for (int i = 0; i < capacity; i++) {
+            int slot = (start + i) % capacity;
+            if (slots.get(slot) == null && slots.compareAndSet(slot, null, decompressor)) {
+                return;
+            }
+        }
+    }
+}
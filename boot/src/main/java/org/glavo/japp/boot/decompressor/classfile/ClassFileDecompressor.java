@@ -17,7 +17,9 @@ package org.glavo.japp.boot.decompressor.classfile;
 
 import org.glavo.japp.CompressionMethod;
 import org.glavo.japp.boot.decompressor.DecompressContext;
+import org.glavo.japp.boot.decompressor.lz4.Lz4Decompressor;
 import org.glavo.japp.classfile.ClassFile;
+import org.glavo.japp.classfile.ColumnarTailCodec;
 import org.glavo.japp.util.CompressedNumber;
 
 import java.io.IOException;
@@ -28,9 +30,22 @@ import static org.glavo.japp.classfile.ClassFile.*;
 
 public final class ClassFileDecompressor {
     public static void decompress(DecompressContext context, ByteBuffer compressed, byte[] output) throws IOException {
-        compressed.order(ByteOrder.BIG_ENDIAN);
-        ByteBuffer outputBuffer = ByteBuffer.wrap(output);
-        ByteArrayPool pool = context.getPool();
+        decompress(context, compressed, ByteBuffer.wrap(output));
+    }
+
+    /**
+     * Decompresses the class file into the remaining bytes of the output buffer, which must be exactly the size of the class file.
+     */
+    public static void decompress(DecompressContext context, ByteBuffer compressed, ByteBuffer output) throws IOException {
+        ByteOrder order = output.order();
+        try {
+            decompress(context, compressed.order(ByteOrder.BIG_ENDIAN), output.order(ByteOrder.BIG_ENDIAN), context.getPool());
+        } finally {
+            output.order(order);
+        }
+    }
+
+    private static void decompress(DecompressContext context, ByteBuffer compressed, ByteBuffer outputBuffer, ByteArrayPool pool) throws IOException {
 
         int magic = compressed.getInt();
         if (magic != ClassFile.MAGIC_NUMBER) {
@@ -157,7 +172,49 @@ public final class ClassFileDecompressor {
             }
         }
 
+        byte tailFormat = compressed.get();
         CompressionMethod compressionMethod = CompressionMethod.readFrom(compressed);
+        if (tailFormat == TAIL_RAW) {
+            decompressTail(context, compressionMethod, compressed, outputBuffer);
+        } else if (tailFormat == TAIL_COLUMNAR) {
+            int columnsSize = CompressedNumber.getInt(compressed);
+            // The streams hold the bytes of the tail, preceded by at most 8 compressed numbers
+            if (columnsSize < 0 || columnsSize > outputBuffer.remaining() + (ColumnarTailCodec.STREAM_COUNT + 1) * 5) {
+                throw new IOException("Invalid columnar tail size: " + Integer.toUnsignedString(columnsSize));
+            }
+
+            ByteBuffer columns;
+            if (compressionMethod == CompressionMethod.NONE) {
+                columns = compressed;
+            } else {
+                columns = context.acquireBuffer(columnsSize);
+                decompressTail(context, compressionMethod, compressed, columns);
+                columns.flip();
+            }
+
+            try {
+                if (columns.remaining() != columnsSize) {
+                    throw new IOException(String.format("The remaining bytes do not match: %d != %d",
+                            columns.remaining(), columnsSize));
+                }
+
+                ColumnarTailDecoder.decode(columns, outputBuffer);
+            } finally {
+                if (columns != compressed) {
+                    context.releaseBuffer(columns);
+                }
+            }
+
+            if (outputBuffer.hasRemaining()) {
+                throw new IOException("Class file size mismatch");
+            }
+        } else {
+            throw new IOException(String.format("Unknown tail format: 0x%02x", Byte.toUnsignedInt(tailFormat)));
+        }
+    }
+
+    private static void decompressTail(DecompressContext context, CompressionMethod compressionMethod,
+                                       ByteBuffer compressed, ByteBuffer outputBuffer) throws IOException {
         if (compressionMethod == CompressionMethod.NONE) {
             if (compressed.remaining() != outputBuffer.remaining()) {
                 throw new IOException(String.format("The remaining bytes do not match: %d != %d",
@@ -170,6 +227,13 @@ public final class ClassFileDecompressor {
             if (compressed.hasRemaining() || outputBuffer.hasRemaining()) {
                 throw new IOException();
             }
+        } else if (compressionMethod == CompressionMethod.ZSTD_DICT) {
+            context.decompressZstdDict(compressed, outputBuffer);
+            if (compressed.hasRemaining() || outputBuffer.hasRemaining()) {
+                throw new IOException();
+            }
+        } else if (compressionMethod == CompressionMethod.LZ4) {
+            Lz4Decompressor.decompress(compressed, outputBuffer);
         } else {
             throw new IOException("Unsupported compression method: " + compressionMethod);
         }
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.boot.decompressor.classfile;
+
+import org.glavo.japp.classfile.ColumnarTailCodec;
+import org.glavo.japp.util.ByteBufferUtils;
+import org.glavo.japp.util.CompressedNumber;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reassembles the tail of a class file from the streams of {@link ColumnarTailCodec}.
+ */
+final class ColumnarTailDecoder extends ColumnarTailCodec {
+
+    static void decode(ByteBuffer input, ByteBuffer output) throws IOException {
+        try {
+            decode0(input, output);
+        } catch (BufferUnderflowException | BufferOverflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Malformed class file tail", e);
+        }
+    }
+
+    private static void decode0(ByteBuffer input, ByteBuffer output) throws IOException {
+        int codeNameIndex = CompressedNumber.getInt(input);
+
+        int[] sizes = new int[STREAM_COUNT];
+        for (int i = 0; i < STREAM_COUNT; i++) {
+            sizes[i] = CompressedNumber.getInt(input);
+        }
+
+        ByteBuffer[] streams = new ByteBuffer[STREAM_COUNT];
+        int offset = input.position();
+        for (int i = 0; i < STREAM_COUNT; i++) {
+            if (sizes[i] < 0 || sizes[i] > input.limit() - offset) {
+                throw new IOException(String.format("Invalid size of stream %d: %d (remaining=%d)",
+                        i, sizes[i], input.limit() - offset));
+            }
+            streams[i] = ByteBufferUtils.slice(input, offset, sizes[i]);
+            offset += sizes[i];
+        }
+
+        if (offset != input.limit()) {
+            throw new IOException("The remaining bytes do not match: " + (input.limit() - offset));
+        }
+        input.position(offset);
+
+        new ColumnarTailDecoder(codeNameIndex, streams, output).walk();
+
+        for (ByteBuffer stream : streams) {
+            if (stream.hasRemaining()) {
+                throw new IOException("Stream has " + stream.remaining() + " unused bytes");
+            }
+        }
+    }
+
+    private final ByteBuffer[] streams;
+    private final ByteBuffer output;
+
+    private ColumnarTailDecoder(int codeNameIndex, ByteBuffer[] streams, ByteBuffer output) {
+        super(codeNameIndex);
+        this.streams = streams;
+        this.output = output;
+    }
+
+    @Override
+    protected int u1(int stream) {
+        byte v = streams[stream].get();
+        output.put(v);
+        return Byte.toUnsignedInt(v);
+    }
+
+    @Override
+    protected int u2(int stream) {
+        short v = streams[stream].getShort();
+        output.putShort(v);
+        return Short.toUnsignedInt(v);
+    }
+
+    @Override
+    protected int u4(int stream) {
+        int v = streams[stream].getInt();
+        output.putInt(v);
+        return v;
+    }
+
+    @Override
+    protected void copy(int stream, int length) throws IOException {
+        ByteBuffer buffer = streams[stream];
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("Invalid attribute length: " + Integer.toUnsignedString(length));
+        }
+
+        int limit = buffer.limit();
+        output.put(buffer.limit(buffer.position() + length));
+        buffer.limit(limit);
+    }
+}
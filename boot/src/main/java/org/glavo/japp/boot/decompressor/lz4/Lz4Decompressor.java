@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.boot.decompressor.lz4;
+
+import org.glavo.japp.util.MemoryAccess;
+
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.nio.ByteBuffer;
+
+import static org.glavo.japp.util.MemoryAccess.ARRAY_BYTE_BASE_OFFSET;
+
+/**
+ * Decompressor of the LZ4 block format.
+ * <p>
+ * The uncompressed size of a resource is stored in the metadata, so the block must fill the output exactly.
+ */
+public final class Lz4Decompressor {
+    private static final int MIN_MATCH = 4;
+
+    private Lz4Decompressor() {
+    }
+
+    public static void decompress(ByteBuffer input, ByteBuffer output) throws IOException {
+        Object inputBase;
+        long inputBaseAddress;
+        if (input.hasArray()) {
+            inputBase = input.array();
+            inputBaseAddress = ARRAY_BYTE_BASE_OFFSET + input.arrayOffset();
+        } else {
+            inputBase = null;
+            inputBaseAddress = MemoryAccess.getDirectBufferAddress(input);
+        }
+
+        Object outputBase;
+        long outputBaseAddress;
+        if (output.hasArray()) {
+            outputBase = output.array();
+            outputBaseAddress = ARRAY_BYTE_BASE_OFFSET + output.arrayOffset();
+        } else {
+            outputBase = null;
+            outputBaseAddress = MemoryAccess.getDirectBufferAddress(output);
+        }
+
+        try {
+            decompress(inputBase, inputBaseAddress + input.position(), inputBaseAddress + input.limit(),
+                    outputBase, outputBaseAddress + output.position(), outputBaseAddress + output.limit());
+        } finally {
+            Reference.reachabilityFence(input);
+            Reference.reachabilityFence(output);
+        }
+
+        input.position(input.limit());
+        output.position(output.limit());
+    }
+
+    public static void decompress(byte[] input, int inputOffset, int inputLength, byte[] output, int outputOffset, int outputLength)
+            throws IOException {
+        if (inputOffset < 0 || inputLength < 0 || inputLength > input.length - inputOffset
+            || outputOffset < 0 || outputLength < 0 || outputLength > output.length - outputOffset) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        long inputAddress = ARRAY_BYTE_BASE_OFFSET + inputOffset;
+        long outputAddress = ARRAY_BYTE_BASE_OFFSET + outputOffset;
+        decompress(input, inputAddress, inputAddress + inputLength, output, outputAddress, outputAddress + outputLength);
+    }
+
+    private static IOException malformed(long offset) {
+        return new IOException("Malformed LZ4 block: offset=" + offset);
+    }
+
+    private static void decompress(
+            Object inputBase, final long inputAddress, final long inputLimit,
+            Object outputBase, final long outputAddress, final long outputLimit) throws IOException {
+        long input = inputAddress;
+        long output = outputAddress;
+
+        while (true) {
+            if (input >= inputLimit) {
+                throw malformed(input - inputAddress);
+            }
+
+            int token = MemoryAccess.getUnsignedByte(inputBase, input++);
+
+            // literals
+            int literalLength = token >>> 4;
+            if (literalLength == 15) {
+                int b;
+                do {
+                    if (input >= inputLimit) {
+                        throw malformed(input - inputAddress);
+                    }
+                    b = MemoryAccess.getUnsignedByte(inputBase, input++);
+                    literalLength += b;
+                } while (b == 255 && literalLength >= 0);
+            }
+
+            if (literalLength < 0 || literalLength > inputLimit - input || literalLength > outputLimit - output) {
+                throw malformed(input - inputAddress);
+            }
+
+            MemoryAccess.copyMemory(inputBase, input, outputBase, output, literalLength);
+            input += literalLength;
+            output += literalLength;
+
+            // The last sequence only contains literals
+            if (input == inputLimit) {
+                break;
+            }
+
+            // match
+            if (inputLimit - input < 2) {
+                throw malformed(input - inputAddress);
+            }
+
+            int offset = Short.toUnsignedInt(MemoryAccess.getShort(inputBase, input));
+            input += 2;
+            if (offset == 0 || offset > output - outputAddress) {
+                throw malformed(input - inputAddress);
+            }
+
+            int matchLength = token & 0xf;
+            if (matchLength == 15) {
+                int b;
+                do {
+                    if (input >= inputLimit) {
+                        throw malformed(input - inputAddress);
+                    }
+                    b = MemoryAccess.getUnsignedByte(inputBase, input++);
+                    matchLength += b;
+                } while (b == 255 && matchLength >= 0);
+            }
+            matchLength += MIN_MATCH;
+
+            if (matchLength < 0 || matchLength > outputLimit - output) {
+                throw malformed(input - inputAddress);
+            }
+
+            long matchAddress = output - offset;
+            long matchOutputLimit = output + matchLength;
+            if (offset >= 8) {
+                // The source of each 8-byte copy has been completely written
+                while (output <= matchOutputLimit - 8) {
+                    MemoryAccess.putLong(outputBase, output, MemoryAccess.getLong(outputBase, matchAddress));
+                    output += 8;
+                    matchAddress += 8;
+                }
+            }
+            while (output < matchOutputLimit) {
+                MemoryAccess.putByte(outputBase, output++, MemoryAccess.getByte(outputBase, matchAddress++));
+            }
+        }
+
+        if (output != outputLimit) {
+            throw new IOException(String.format("Uncompressed size mismatch (expected=%d, actual=%d)",
+                    outputLimit - outputAddress, output - outputAddress));
+        }
+    }
+}
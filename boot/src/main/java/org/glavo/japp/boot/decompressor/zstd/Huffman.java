@@ -48,6 +48,13 @@ class Huffman {
         return tableLog != -1;
     }
 
+    public void copyFrom(Huffman other) {
+        int size = other.isLoaded() ? 1 << other.tableLog : 0;
+        System.arraycopy(other.symbols, 0, symbols, 0, size);
+        System.arraycopy(other.numbersOfBits, 0, numbersOfBits, 0, size);
+        tableLog = other.tableLog;
+    }
+
     public int readTable(final Object inputBase, final long inputAddress, final int size) {
         Arrays.fill(ranks, 0);
         long input = inputAddress;
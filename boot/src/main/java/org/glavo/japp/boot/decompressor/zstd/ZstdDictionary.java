@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.boot.decompressor.zstd;
+
+import org.glavo.japp.util.MemoryAccess;
+
+import java.util.Arrays;
+
+import static org.glavo.japp.boot.decompressor.zstd.Constants.LITERAL_LENGTH_TABLE_LOG;
+import static org.glavo.japp.boot.decompressor.zstd.Constants.MATCH_LENGTH_TABLE_LOG;
+import static org.glavo.japp.boot.decompressor.zstd.Constants.MAX_LITERALS_LENGTH_SYMBOL;
+import static org.glavo.japp.boot.decompressor.zstd.Constants.MAX_MATCH_LENGTH_SYMBOL;
+import static org.glavo.japp.boot.decompressor.zstd.Constants.MAX_OFFSET_CODE_SYMBOL;
+import static org.glavo.japp.boot.decompressor.zstd.Constants.OFFSET_TABLE_LOG;
+import static org.glavo.japp.boot.decompressor.zstd.Constants.REPEATED_OFFSET_COUNT;
+import static org.glavo.japp.boot.decompressor.zstd.Constants.SIZE_OF_INT;
+import static org.glavo.japp.boot.decompressor.zstd.Util.verify;
+import static org.glavo.japp.util.MemoryAccess.ARRAY_BYTE_BASE_OFFSET;
+
+/**
+ * A zstd dictionary, see <a href="https://www.rfc-editor.org/rfc/rfc8878#section-5">RFC 8878 Section 5</a>.
+ * <p>
+ * Both formatted dictionaries (as produced by the zstd dictionary trainer) and raw content dictionaries are supported.
+ */
+public final class ZstdDictionary {
+    public static final int MAGIC_NUMBER = 0xEC30A437;
+
+    private final long id;
+    final byte[] content;
+
+    final int[] previousOffsets = {1, 4, 8};
+
+    // The entropy tables are null for raw content dictionaries
+    final Huffman huffman;
+    final FiniteStateEntropy.Table offsetCodesTable;
+    final FiniteStateEntropy.Table matchLengthTable;
+    final FiniteStateEntropy.Table literalsLengthTable;
+
+    public ZstdDictionary(byte[] dictionary) throws MalformedInputException {
+        if (dictionary.length < 8 || MemoryAccess.getInt(dictionary, ARRAY_BYTE_BASE_OFFSET) != MAGIC_NUMBER) {
+            this.id = 0;
+            this.content = dictionary.clone();
+            this.huffman = null;
+            this.offsetCodesTable = null;
+            this.matchLengthTable = null;
+            this.literalsLengthTable = null;
+            return;
+        }
+
+        long input = ARRAY_BYTE_BASE_OFFSET + SIZE_OF_INT;
+        long inputLimit = ARRAY_BYTE_BASE_OFFSET + dictionary.length;
+
+        this.id = MemoryAccess.getInt(dictionary, input) & 0xFFFF_FFFFL;
+        input += SIZE_OF_INT;
+
+        this.huffman = new Huffman();
+        input += huffman.readTable(dictionary, input, (int) (inputLimit - input));
+
+        FseTableReader reader = new FseTableReader();
+
+        this.offsetCodesTable = new FiniteStateEntropy.Table(OFFSET_TABLE_LOG);
+        input += reader.readFseTable(offsetCodesTable, dictionary, input, inputLimit, MAX_OFFSET_CODE_SYMBOL, OFFSET_TABLE_LOG);
+
+        this.matchLengthTable = new FiniteStateEntropy.Table(MATCH_LENGTH_TABLE_LOG);
+        input += reader.readFseTable(matchLengthTable, dictionary, input, inputLimit, MAX_MATCH_LENGTH_SYMBOL, MATCH_LENGTH_TABLE_LOG);
+
+        this.literalsLengthTable = new FiniteStateEntropy.Table(LITERAL_LENGTH_TABLE_LOG);
+        input += reader.readFseTable(literalsLengthTable, dictionary, input, inputLimit, MAX_LITERALS_LENGTH_SYMBOL, LITERAL_LENGTH_TABLE_LOG);
+
+        verify(input + REPEATED_OFFSET_COUNT * SIZE_OF_INT <= inputLimit, input, "Not enough input bytes");
+        int contentSize = (int) (inputLimit - input - REPEATED_OFFSET_COUNT * SIZE_OF_INT);
+        for (int i = 0; i < REPEATED_OFFSET_COUNT; i++) {
+            int offset = MemoryAccess.getInt(dictionary, input);
+            verify(offset > 0 && offset <= contentSize, input, "Dictionary is corrupted");
+            previousOffsets[i] = offset;
+            input += SIZE_OF_INT;
+        }
+
+        int contentOffset = (int) (input - ARRAY_BYTE_BASE_OFFSET);
+        this.content = Arrays.copyOfRange(dictionary, contentOffset, contentOffset + contentSize);
+    }
+
+    /**
+     * Returns the dictionary ID, or {@code 0} if this is a raw content dictionary.
+     */
+    public long getId() {
+        return id;
+    }
+}
@@ -135,6 +135,9 @@ public final class ZstdFrameDecompressor {
     private final Huffman huffman = new Huffman();
     private final FseTableReader fse = new FseTableReader();
 
+    // content of the dictionary used by the current frame
+    private byte[] dictionaryContent;
+
     public int decompress(
             final Object inputBase,
             final long inputAddress,
@@ -142,6 +145,17 @@ public final class ZstdFrameDecompressor {
             final Object outputBase,
             final long outputAddress,
             final long outputLimit) {
+        return decompress(inputBase, inputAddress, inputLimit, outputBase, outputAddress, outputLimit, null);
+    }
+
+    public int decompress(
+            final Object inputBase,
+            final long inputAddress,
+            final long inputLimit,
+            final Object outputBase,
+            final long outputAddress,
+            final long outputLimit,
+            final ZstdDictionary dictionary) {
         if (outputAddress == outputLimit) {
             return 0;
         }
@@ -150,11 +164,14 @@ public final class ZstdFrameDecompressor {
         long output = outputAddress;
 
         while (input < inputLimit) {
-            reset();
+            reset(dictionary);
             long outputStart = output;
             input += verifyMagic(inputBase, input, inputLimit);
 
             FrameHeader frameHeader = readFrameHeader(inputBase, input, inputLimit);
+            if (frameHeader.dictionaryId > 0 && (dictionary == null || dictionary.getId() != frameHeader.dictionaryId)) {
+                throw fail(input, "Missing dictionary: " + frameHeader.dictionaryId);
+            }
             input += frameHeader.headerSize;
 
             boolean lastBlock;
@@ -183,7 +200,7 @@ public final class ZstdFrameDecompressor {
                         break;
                     case COMPRESSED_BLOCK:
                         verify(inputAddress + blockSize <= inputLimit, input, "Not enough input bytes");
-                        decodedSize = decodeCompressedBlock(inputBase, input, blockSize, outputBase, output, outputLimit, frameHeader.windowSize, outputAddress);
+                        decodedSize = decodeCompressedBlock(inputBase, input, blockSize, outputBase, output, outputLimit, frameHeader.windowSize, outputStart);
                         input += blockSize;
                         break;
                     default:
@@ -210,14 +227,30 @@ public final class ZstdFrameDecompressor {
         return (int) (output - outputAddress);
     }
 
-    void reset() {
-        previousOffsets[0] = 1;
-        previousOffsets[1] = 4;
-        previousOffsets[2] = 8;
+    void reset(ZstdDictionary dictionary) {
+        if (dictionary == null) {
+            previousOffsets[0] = 1;
+            previousOffsets[1] = 4;
+            previousOffsets[2] = 8;
+
+            currentLiteralsLengthTable = null;
+            currentOffsetCodesTable = null;
+            currentMatchLengthTable = null;
+
+            dictionaryContent = null;
+        } else {
+            System.arraycopy(dictionary.previousOffsets, 0, previousOffsets, 0, previousOffsets.length);
 
-        currentLiteralsLengthTable = null;
-        currentOffsetCodesTable = null;
-        currentMatchLengthTable = null;
+            currentLiteralsLengthTable = dictionary.literalsLengthTable;
+            currentOffsetCodesTable = dictionary.offsetCodesTable;
+            currentMatchLengthTable = dictionary.matchLengthTable;
+
+            if (dictionary.huffman != null) {
+                huffman.copyFrom(dictionary.huffman);
+            }
+
+            dictionaryContent = dictionary.content;
+        }
     }
 
     static int decodeRawBlock(Object inputBase, long inputAddress, int blockSize, Object outputBase, long outputAddress, long outputLimit) {
@@ -485,9 +518,13 @@ public final class ZstdFrameDecompressor {
                 verify(literalEnd <= literalsLimit, input, "Input is corrupted");
 
                 long matchAddress = literalOutputLimit - offset;
-                verify(matchAddress >= outputAbsoluteBaseAddress, input, "Input is corrupted");
 
-                if (literalOutputLimit > fastOutputLimit) {
+                if (matchAddress < outputAbsoluteBaseAddress) {
+                    // the match starts in the dictionary content
+                    long dictionaryDistance = outputAbsoluteBaseAddress - matchAddress;
+                    verify(dictionaryContent != null && dictionaryDistance <= dictionaryContent.length, input, "Input is corrupted");
+                    executeDictionarySequence(outputBase, output, literalOutputLimit, matchOutputLimit, literalsInput, (int) dictionaryDistance, outputAbsoluteBaseAddress);
+                } else if (literalOutputLimit > fastOutputLimit) {
                     executeLastSequence(outputBase, output, literalOutputLimit, matchOutputLimit, fastOutputLimit, literalsInput, matchAddress);
                 } else {
                     // copy literals. literalOutputLimit <= fastOutputLimit, so we can copy
@@ -699,6 +736,27 @@ public final class ZstdFrameDecompressor {
         }
     }
 
+    private void executeDictionarySequence(Object outputBase, long output, long literalOutputLimit, long matchOutputLimit, long literalInput, int dictionaryDistance, long outputAbsoluteBaseAddress) {
+        // copy literals
+        MemoryAccess.copyMemory(literalsBase, literalInput, outputBase, output, literalOutputLimit - output);
+        output = literalOutputLimit;
+
+        // copy the part of the match that is in the dictionary
+        int dictionaryLength = (int) Math.min(dictionaryDistance, matchOutputLimit - output);
+        MemoryAccess.copyMemory(
+                dictionaryContent, ARRAY_BYTE_BASE_OFFSET + dictionaryContent.length - dictionaryDistance,
+                outputBase, output, dictionaryLength);
+        output += dictionaryLength;
+
+        // the rest of the match continues at the beginning of the frame
+        long matchAddress = outputAbsoluteBaseAddress;
+        while (output < matchOutputLimit) {
+            MemoryAccess.putByte(outputBase, output, MemoryAccess.getByte(outputBase, matchAddress));
+            output++;
+            matchAddress++;
+        }
+    }
+
     private int decodeCompressedLiterals(Object inputBase, final long inputAddress, int blockSize, int literalsBlockType) {
         long input = inputAddress;
         verify(blockSize >= 5, input, "Not enough input bytes");
@@ -893,7 +951,6 @@ public final class ZstdFrameDecompressor {
                 input += SIZE_OF_INT;
                 break;
         }
-        verify(dictionaryId == -1, input, "Custom dictionaries not supported");
 
         // decode content size
         long contentSize = -1;
@@ -935,6 +992,34 @@ public final class ZstdFrameDecompressor {
         return readFrameHeader(inputBase, input, inputLimit).contentSize;
     }
 
+    /**
+     * Returns the dictionary ID in the header of the first frame, or {@code 0} if the frame does not reference a dictionary.
+     */
+    public static long getDictionaryId(final Object inputBase, final long inputAddress, final long inputLimit) {
+        long input = inputAddress;
+        input += verifyMagic(inputBase, input, inputLimit);
+        return Math.max(readFrameHeader(inputBase, input, inputLimit).dictionaryId, 0);
+    }
+
+    public static long getDictionaryId(ByteBuffer input) {
+        Object inputBase;
+        long inputBaseAddress;
+
+        if (input.hasArray()) {
+            inputBase = input.array();
+            inputBaseAddress = ARRAY_BYTE_BASE_OFFSET + input.arrayOffset();
+        } else {
+            inputBase = null;
+            inputBaseAddress = MemoryAccess.getDirectBufferAddress(input);
+        }
+
+        try {
+            return getDictionaryId(inputBase, inputBaseAddress + input.position(), inputBaseAddress + input.limit());
+        } finally {
+            Reference.reachabilityFence(input);
+        }
+    }
+
     static int verifyMagic(Object inputBase, long inputAddress, long inputLimit) {
         verify(inputLimit - inputAddress >= 4, inputAddress, "Not enough input bytes");
 
@@ -952,6 +1037,10 @@ public final class ZstdFrameDecompressor {
     // Utils
 
     public int decompress(ByteBuffer input, ByteBuffer output) throws MalformedInputException {
+        return decompress(input, output, null);
+    }
+
+    public int decompress(ByteBuffer input, ByteBuffer output, ZstdDictionary dictionary) throws MalformedInputException {
         Object inputBase;
         long inputBaseAddress;
         long inputAddress;
@@ -983,13 +1072,18 @@ public final class ZstdFrameDecompressor {
         outputLimit = outputBaseAddress + output.limit();
 
         input.position(input.limit());
-        int n = decompress(inputBase, inputAddress, inputLimit, outputBase, outputAddress, outputLimit);
+        int n = decompress(inputBase, inputAddress, inputLimit, outputBase, outputAddress, outputLimit, dictionary);
         output.position(output.position() + n);
         return n;
     }
 
     public int decompress(byte[] input, int inputOffset, int inputLength, byte[] output, int outputOffset, int maxOutputLength)
             throws MalformedInputException {
+        return decompress(input, inputOffset, inputLength, output, outputOffset, maxOutputLength, null);
+    }
+
+    public int decompress(byte[] input, int inputOffset, int inputLength, byte[] output, int outputOffset, int maxOutputLength,
+                          ZstdDictionary dictionary) throws MalformedInputException {
         verifyRange(input, inputOffset, inputLength);
         verifyRange(output, outputOffset, maxOutputLength);
 
@@ -999,7 +1093,7 @@ public final class ZstdFrameDecompressor {
         long outputLimit = outputAddress + maxOutputLength;
 
         try {
-            return decompress(input, inputAddress, inputLimit, output, outputAddress, outputLimit);
+            return decompress(input, inputAddress, inputLimit, output, outputAddress, outputLimit, dictionary);
         } finally {
             Reference.reachabilityFence(input);
             Reference.reachabilityFence(output);
@@ -73,14 +73,7 @@ public final class JAppFileSystem extends FileSystem {
         DirectoryNode<?> dirNode = rootNode;
 
         for (int i = 0; i < elements.length; i++) {
-            String currentName = elements[i];
-            Node current = null;
-            for (Node subNode : dirNode.getChildren()) {
-                if (subNode.getName().equals(currentName)) {
-                    current = subNode;
-                    break;
-                }
-            }
+            Node current = dirNode.getChild(elements[i]);
 
             if (i == elements.length - 1) {
                 if (current == null) {
@@ -288,12 +281,41 @@ public final class JAppFileSystem extends FileSystem {
     }
 
     public static abstract class DirectoryNode<S extends Node> extends Node {
+        // Directories with more children are searched through a hash index
+        private static final int INDEX_THRESHOLD = 8;
+
         protected volatile List<S> children;
+        private volatile Map<String, S> index;
 
         public List<S> getChildren() {
             return children;
         }
 
+        /**
+         * Returns the child with the name, or {@code null} if there is no such child.
+         */
+        public S getChild(String name) {
+            List<S> children = getChildren();
+            if (children.size() <= INDEX_THRESHOLD) {
+                for (S child : children) {
+                    if (child.getName().equals(name)) {
+                        return child;
+                    }
+                }
+                return null;
+            }
+
+            Map<String, S> index = this.index;
+            if (index == null) {
+                index = new HashMap<>((int) (children.size() / 0.75f) + 1);
+                for (S child : children) {
+                    index.putIfAbsent(child.getName(), child);
+                }
+                this.index = index;
+            }
+            return index.get(name);
+        }
+
         @Override
         public String toString() {
             return this.getClass().getSimpleName() + (children == null ? "[<unresolved>]" : children);
@@ -341,49 +363,76 @@ public final class JAppFileSystem extends FileSystem {
             return group.getName();
         }
 
-        private static void put(List<Node> root, JAppResource resource) {
-            String[] paths = resource.getName().split("/");
-            if (paths.length < 1) {
-                throw new AssertionError("Resource: " + resource);
+        /**
+         * Compares the resource names element by element, that is, as strings in which {@code '/'} is less than any other character.
+         */
+        private static int comparePaths(String path1, String path2) {
+            int length = Math.min(path1.length(), path2.length());
+            for (int i = 0; i < length; i++) {
+                char c1 = path1.charAt(i);
+                char c2 = path2.charAt(i);
+                if (c1 != c2) {
+                    return c1 == '/' ? -1 : c2 == '/' ? 1 : Character.compare(c1, c2);
+                }
             }
+            return Integer.compare(path1.length(), path2.length());
+        }
 
-            String fileName = paths[paths.length - 1];
-
-            List<Node> current = root;
-            for (int i = 0; i < paths.length - 1; i++) {
-                String name = paths[i];
-                SubDirectoryNode dir = null;
+        private void addChild(List<Node> children, Node node, JAppResource resource) {
+            // The children are added in order, so a node with the same name can only be the last child
+            if (!children.isEmpty() && children.get(children.size() - 1).getName().equals(node.getName())) {
+                throw new AssertionError(String.format("Resource %s in group %s conflicts with a file or directory of the same name",
+                        resource.getName(), group.getName()));
+            }
+            children.add(node);
+        }
 
-                for (Node node : current) {
-                    if (node.getName().equals(name)) {
-                        if (!(node instanceof SubDirectoryNode)) {
-                            throw new AssertionError();
+        /**
+         * Builds the tree in one pass over the resources sorted element by element.
+         * After sorting, the resources of each directory are adjacent,
+         * so a directory is only compared with the directories that contain the previous resource.
+         */
+        private List<Node> resolve() {
+            JAppResource[] resources = group.values().toArray(new JAppResource[0]);
+            Arrays.sort(resources, (resource1, resource2) -> comparePaths(resource1.getName(), resource2.getName()));
+
+            List<Node> root = new ArrayList<>();
+            List<SubDirectoryNode> openDirectories = new ArrayList<>();
+
+            for (JAppResource resource : resources) {
+                String name = resource.getName();
+
+                int depth = 0;
+                int start = 0;
+                int end;
+                while ((end = name.indexOf('/', start)) >= 0) {
+                    if (depth < openDirectories.size()) {
+                        String dirName = openDirectories.get(depth).getName();
+                        if (dirName.length() == end - start && name.startsWith(dirName, start)) {
+                            depth++;
+                            start = end + 1;
+                            continue;
                         }
-
-                        dir = (SubDirectoryNode) node;
-                        break;
+                        openDirectories.subList(depth, openDirectories.size()).clear();
                     }
-                }
 
-                if (dir == null) {
-                    dir = new SubDirectoryNode(name);
-                    current.add(dir);
+                    SubDirectoryNode dir = new SubDirectoryNode(name.substring(start, end));
+                    addChild(depth == 0 ? root : openDirectories.get(depth - 1).children, dir, resource);
+                    openDirectories.add(dir);
+                    depth++;
+                    start = end + 1;
                 }
 
-                current = dir.children;
-            }
-
-            current.add(new ResourceNode(fileName, resource));
-        }
-
-        private List<Node> resolve() {
-            List<Node> list = new ArrayList<>();
+                if (start == name.length()) {
+                    // A directory entry, the directory has been created above
+                    continue;
+                }
 
-            for (JAppResource resource : group.values()) {
-                put(list, resource);
+                openDirectories.subList(depth, openDirectories.size()).clear();
+                addChild(depth == 0 ? root : openDirectories.get(depth - 1).children, new ResourceNode(name.substring(start), resource), resource);
             }
 
-            return list;
+            return root;
         }
 
         @Override
@@ -23,6 +23,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 
@@ -31,7 +32,8 @@ public final class JAppPath implements Path {
     private final JAppFileSystem fileSystem;
     private final String path;
 
-    private String[] pathElements;
+    // Parsed on demand, resolving a path against this path reuses the parsed elements
+    private volatile String[] pathElements;
 
     JAppPath(JAppFileSystem fileSystem, String path) {
         this.fileSystem = fileSystem;
@@ -98,17 +100,19 @@ public final class JAppPath implements Path {
     }
 
     String[] getPathElements() {
-        if (pathElements == null) {
+        String[] elements = pathElements;
+        if (elements == null) {
             if (path.equals("/")) {
-                pathElements = new String[0];
+                elements = new String[0];
             } else if (path.startsWith("/")) {
-                pathElements = path.substring(1).split("/");
+                elements = path.substring(1).split("/");
             } else {
-                pathElements = path.split("/");
+                elements = path.split("/");
             }
+            pathElements = elements;
         }
 
-        return pathElements;
+        return elements;
     }
 
     @Override
@@ -119,7 +123,7 @@ public final class JAppPath implements Path {
     @Override
     public Path getName(int index) {
         try {
-            return new JAppPath(fileSystem, getPathElements()[index]);
+            return new JAppPath(fileSystem, getPathElements()[index], true);
         } catch (ArrayIndexOutOfBoundsException e) {
             throw new IllegalArgumentException();
         }
@@ -132,7 +136,7 @@ public final class JAppPath implements Path {
             throw new IllegalArgumentException();
         }
 
-        if (beginIndex == 0 && endIndex == elements.length) {
+        if (beginIndex == 0 && endIndex == elements.length && !isAbsolute()) {
             return this;
         }
 
@@ -141,7 +145,7 @@ public final class JAppPath implements Path {
             newPath = elements[beginIndex];
         } else {
             StringBuilder builder = new StringBuilder();
-            builder.append(beginIndex);
+            builder.append(elements[beginIndex]);
             for (int i = beginIndex + 1; i < endIndex; i++) {
                 builder.append('/').append(elements[i]);
             }
@@ -246,7 +250,17 @@ public final class JAppPath implements Path {
         if (o.path.isEmpty()) {
             return this;
         }
-        return new JAppPath(fileSystem, path + '/' + o.path, true);
+
+        JAppPath result = new JAppPath(fileSystem, path.equals("/") ? path + o.path : path + '/' + o.path, true);
+
+        String[] elements = this.pathElements;
+        if (elements != null) {
+            String[] otherElements = o.getPathElements();
+            String[] resultElements = Arrays.copyOf(elements, elements.length + otherElements.length);
+            System.arraycopy(otherElements, 0, resultElements, elements.length, otherElements.length);
+            result.pathElements = resultElements;
+        }
+        return result;
     }
 
     @Override
@@ -15,45 +15,78 @@
  */
 package org.glavo.japp.boot.module;
 
+import org.glavo.japp.boot.JAppBufferPool;
 import org.glavo.japp.boot.JAppReader;
 import org.glavo.japp.boot.JAppResource;
 import org.glavo.japp.boot.JAppResourceGroup;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.lang.module.FindException;
 import java.lang.module.ModuleDescriptor;
 import java.lang.module.ModuleFinder;
 import java.lang.module.ModuleReference;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public final class JAppModuleFinder implements ModuleFinder {
 
-    private static final String MODULE_INFO = "module-info.class";
-    private static final String SERVICES_PREFIX = "META-INF/services/";
+    /**
+     * The system property that specifies whether the modules are loaded in parallel ({@code true} or {@code false}).
+     * By default, the modules are loaded in parallel if there are at least {@value #PARALLEL_THRESHOLD} modules
+     * and more than one processor.
+     */
+    public static final String PROPERTY_PARALLEL = "org.glavo.japp.boot.modules.parallel";
+
+    private static final int PARALLEL_THRESHOLD = 16;
+
+    private static boolean isParallelByDefault(Map<String, JAppResourceGroup> modules, List<Path> externalModules) {
+        String value = System.getProperty(PROPERTY_PARALLEL);
+        if (value != null) {
+            return Boolean.parseBoolean(value.trim());
+        }
+
+        int count = modules.size() + (externalModules != null ? externalModules.size() : 0);
+        return count >= PARALLEL_THRESHOLD && Runtime.getRuntime().availableProcessors() > 1;
+    }
 
     private final JAppReader reader;
     private final Map<String, JAppResourceGroup> modules;
-    private final ModuleFinder externalModulesFinder;
+    private final List<Path> externalModules;
+    private final boolean parallel;
+
+    private volatile Map<String, ModuleReference> all;
 
-    private Map<String, ModuleReference> all;
+    // The modules found by name before all modules are loaded, read by the workers of loadAll
+    private final ConcurrentHashMap<String, ModuleReference> found = new ConcurrentHashMap<>();
 
     public JAppModuleFinder(JAppReader reader, Map<String, JAppResourceGroup> modules, List<Path> externalModules) {
+        this(reader, modules, externalModules, isParallelByDefault(modules, externalModules));
+    }
+
+    /**
+     * @param parallel whether the modules are loaded in parallel on the common fork/join pool
+     */
+    public JAppModuleFinder(JAppReader reader, Map<String, JAppResourceGroup> modules, List<Path> externalModules,
+                            boolean parallel) {
         this.reader = reader;
         this.modules = modules;
-        this.externalModulesFinder = externalModules == null ? null : ModuleFinder.of(externalModules.toArray(new Path[0]));
+        this.externalModules = externalModules;
+        this.parallel = parallel;
     }
 
     private static Set<String> findPackages(JAppResourceGroup group) {
         Set<String> packages = new HashSet<>();
         for (String name : group.keySet()) {
-            if (name.endsWith(".class") && !name.startsWith("META-INF/")) {
-                int index = name.lastIndexOf("/");
-                if (index >= 0) {
-                    packages.add(name.substring(0, index).replace('/', '.'));
-                }
+            String packageName = JAppModuleInfo.getPackageName(name);
+            if (packageName != null) {
+                packages.add(packageName);
             }
         }
         return packages;
@@ -65,26 +98,12 @@ public final class JAppModuleFinder implements ModuleFinder {
         Set<String> packages = new HashSet<>();
 
         for (String name : group.keySet()) {
-            if (name.endsWith(".class") && !name.startsWith("META-INF/")) {
-                int index = name.lastIndexOf("/");
-                if (index >= 0) {
-                    packages.add(name.substring(0, index).replace('/', '.'));
-                }
-            } else if (name.startsWith(SERVICES_PREFIX)) {
-                String sn = name.substring(SERVICES_PREFIX.length());
-                if (sn.contains("/")) {
-                    continue;
-                }
-
-                List<String> providerClasses = new ArrayList<>();
-                try (BufferedReader fileReader = new BufferedReader(new InputStreamReader(reader.openResource(group.get(name))))) {
-                    String line;
-                    while ((line = fileReader.readLine()) != null) {
-                        if (!line.isEmpty()) {
-                            providerClasses.add(line);
-                        }
-                    }
-                }
+            String packageName = JAppModuleInfo.getPackageName(name);
+            String sn;
+            if (packageName != null) {
+                packages.add(packageName);
+            } else if ((sn = JAppModuleInfo.getServiceName(name)) != null) {
+                List<String> providerClasses = JAppModuleInfo.readProviders(reader.openResource(group.get(name)));
 
                 if (!providerClasses.isEmpty())
                     builder.provides(sn, providerClasses);
@@ -93,46 +112,113 @@ public final class JAppModuleFinder implements ModuleFinder {
 
         builder.packages(packages);
 
+        JAppResource manifest = group.get(JAppModuleInfo.MANIFEST);
+        if (manifest != null) {
+            JAppModuleInfo.setMainClass(builder, packages, JAppModuleInfo.readMainClass(reader.openResource(manifest)));
+        }
+
         return builder.build();
     }
 
+    private ModuleDescriptor readModuleDescriptor(JAppResource resource, Supplier<Set<String>> packageFinder) throws IOException {
+        // The descriptor does not keep the buffer, so it is returned to the pool after parsing
+        JAppBufferPool pool = reader.getBufferPool();
+        ByteBuffer buffer = pool.acquire(Math.toIntExact(resource.getSize()));
+        try {
+            reader.readResource(resource, buffer);
+            buffer.flip();
+            return ModuleDescriptor.read(buffer, packageFinder);
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
     private ModuleReference load(JAppResourceGroup group) throws IOException {
-        JAppResource resource = group.get(MODULE_INFO);
+        JAppModuleInfo info = group.getModuleInfo();
+        if (info != null) {
+            // The packages and services were computed by the packer, so only module-info.class needs to be read
+            ModuleDescriptor descriptor;
+            if (info.isExplicit()) {
+                JAppResource resource = group.get(JAppModuleInfo.MODULE_INFO);
+                if (resource == null) {
+                    throw new IOException("Missing " + JAppModuleInfo.MODULE_INFO + " in module " + group.getName());
+                }
+                descriptor = readModuleDescriptor(resource, info::getPackages);
+            } else {
+                descriptor = info.toAutomaticModuleDescriptor(group.getName());
+            }
+            return new JAppModuleReference(reader, descriptor, group);
+        }
+
+        JAppResource resource = group.get(JAppModuleInfo.MODULE_INFO);
         ModuleDescriptor descriptor;
         if (resource != null) {
-            descriptor = ModuleDescriptor.read(reader.readResource(resource), () -> findPackages(group));
+            descriptor = readModuleDescriptor(resource, () -> findPackages(group));
         } else {
             descriptor = deriveModuleDescriptor(group);
         }
         return new JAppModuleReference(reader, descriptor, group);
     }
 
+    private ModuleReference loadOrThrow(JAppResourceGroup group) {
+        try {
+            return load(group);
+        } catch (Throwable e) {
+            throw new FindException(e);
+        }
+    }
+
+    private ModuleReference loadOrThrow(Map.Entry<String, JAppResourceGroup> entry) {
+        ModuleReference reference = found.get(entry.getKey());
+        return reference != null ? reference : loadOrThrow(entry.getValue());
+    }
+
     private void loadAll() {
         if (all != null) {
             return;
         }
 
-        Map<String, ModuleReference> map = new HashMap<>();
+        List<Map.Entry<String, JAppResourceGroup>> entries = new ArrayList<>(modules.entrySet());
+        ModuleReference[] refs = new ModuleReference[entries.size()];
+        List<Set<ModuleReference>> allExternal;
 
-        for (Map.Entry<String, JAppResourceGroup> entry : modules.entrySet()) {
-            String name = entry.getKey();
-            JAppResourceGroup group = entry.getValue();
-            ModuleReference ref;
-            try {
-                ref = load(group);
-            } catch (Throwable e) {
-                throw new FindException(e);
+        if (parallel) {
+            // Each external path is searched by a finder of its own, and the results are merged in the order of the paths
+            ForkJoinTask<List<Set<ModuleReference>>> externalTask = null;
+            if (externalModules != null) {
+                externalTask = ForkJoinPool.commonPool().submit(() -> externalModules.parallelStream()
+                        .map(path -> ModuleFinder.of(path).findAll())
+                        .collect(Collectors.toList()));
             }
 
-            if (map.put(name, ref) != null) {
+            IntStream.range(0, refs.length).parallel().forEach(i -> refs[i] = loadOrThrow(entries.get(i)));
+            allExternal = externalTask != null ? externalTask.join() : Collections.emptyList();
+        } else {
+            for (int i = 0; i < refs.length; i++) {
+                refs[i] = loadOrThrow(entries.get(i));
+            }
+            allExternal = externalModules != null
+                    ? Collections.singletonList(ModuleFinder.of(externalModules.toArray(new Path[0])).findAll())
+                    : Collections.emptyList();
+        }
+
+        Map<String, ModuleReference> map = new HashMap<>();
+
+        for (int i = 0; i < refs.length; i++) {
+            String name = entries.get(i).getKey();
+            if (map.put(name, refs[i]) != null) {
                 throw new FindException("Duplicate module " + name);
             }
         }
 
-        if (externalModulesFinder != null) {
-            Set<ModuleReference> allExternal = externalModulesFinder.findAll();
-            for (ModuleReference external : allExternal) {
+        // Same as ModuleFinder.of, a module in an earlier external path hides the modules with the same name in later paths
+        Set<String> externalNames = new HashSet<>();
+        for (Set<ModuleReference> references : allExternal) {
+            for (ModuleReference external : references) {
                 String name = external.descriptor().name();
+                if (!externalNames.add(name)) {
+                    continue;
+                }
                 if (map.put(name, external) != null) {
                     throw new FindException("Duplicate module " + name);
                 }
@@ -144,6 +230,25 @@ public final class JAppModuleFinder implements ModuleFinder {
 
     @Override
     public Optional<ModuleReference> find(String name) {
+        if (all == null && externalModules == null) {
+            // Each module is stored in the group of the same name, so only the group of the module needs to be loaded.
+            // External modules are always loaded together, because their names and duplicates are only known after scanning them
+            JAppResourceGroup group = modules.get(name);
+            if (group == null) {
+                return Optional.empty();
+            }
+
+            ModuleReference reference = found.get(name);
+            if (reference == null) {
+                reference = loadOrThrow(group);
+                ModuleReference previous = found.putIfAbsent(name, reference);
+                if (previous != null) {
+                    reference = previous;
+                }
+            }
+            return Optional.of(reference);
+        }
+
         loadAll();
         return Optional.ofNullable(all.get(name));
     }
@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.boot.module;
+
+import org.glavo.japp.io.LittleEndianDataOutput;
+import org.glavo.japp.util.ByteBufferUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.module.ModuleDescriptor;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+
+/**
+ * The module data of a resource group on the module path, computed by the packer,
+ * so that the module descriptor can be built without scanning the resources of the group.
+ * <p>
+ * The data contains the packages of the class files, the service providers listed in {@code META-INF/services},
+ * the {@code Main-Class} of the manifest, and whether the group contains a {@code module-info.class}.
+ */
+public final class JAppModuleInfo {
+
+    public static final String MODULE_INFO = "module-info.class";
+    public static final String SERVICES_PREFIX = "META-INF/services/";
+    public static final String MANIFEST = "META-INF/MANIFEST.MF";
+
+    private static final byte FLAG_EXPLICIT = 0x01;
+
+    /**
+     * Returns the package of the class file with '.' as separator,
+     * or {@code null} if the resource is not a class file in a package of the module.
+     */
+    public static String getPackageName(String resourceName) {
+        if (resourceName.endsWith(".class") && !resourceName.startsWith("META-INF/")) {
+            int index = resourceName.lastIndexOf('/');
+            if (index >= 0) {
+                return resourceName.substring(0, index).replace('/', '.');
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the service name of the provider configuration file, or {@code null} if the resource is not one.
+     */
+    public static String getServiceName(String resourceName) {
+        if (resourceName.startsWith(SERVICES_PREFIX)) {
+            String serviceName = resourceName.substring(SERVICES_PREFIX.length());
+            if (!serviceName.isEmpty() && !serviceName.contains("/")) {
+                return serviceName;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads the non-empty lines of the provider configuration file.
+     */
+    public static List<String> readProviders(InputStream input) throws IOException {
+        List<String> providers = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    providers.add(line);
+                }
+            }
+        }
+        return providers;
+    }
+
+    /**
+     * Reads the {@code Main-Class} of the manifest, returns {@code null} if it is absent or the manifest is malformed.
+     */
+    public static String readMainClass(InputStream input) {
+        try (InputStream in = input) {
+            return new Manifest(in).getMainAttributes().getValue(Attributes.Name.MAIN_CLASS);
+        } catch (IOException | IllegalArgumentException e) {
+            // Same as the automatic modules of the JDK, a jar with a malformed manifest is still a module
+            return null;
+        }
+    }
+
+    /**
+     * Sets the main class of the automatic module, an invalid or foreign main class is ignored, same as the JDK.
+     */
+    public static void setMainClass(ModuleDescriptor.Builder builder, Set<String> packages, String mainClass) {
+        if (mainClass == null) {
+            return;
+        }
+
+        String className = mainClass.replace('/', '.');
+        int index = className.lastIndexOf('.');
+        if (index > 0 && packages.contains(className.substring(0, index))) {
+            try {
+                builder.mainClass(className);
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+    }
+
+    public static JAppModuleInfo readFrom(ByteBuffer buffer) throws IOException {
+        try {
+            byte flags = buffer.get();
+            if ((flags & ~FLAG_EXPLICIT) != 0) {
+                throw new IOException(String.format("Unknown module info flags: 0x%02x", flags));
+            }
+
+            int packageCount = buffer.getInt();
+            Set<String> packages = new HashSet<>();
+            for (int i = 0; i < packageCount; i++) {
+                packages.add(ByteBufferUtils.readString(buffer));
+            }
+
+            int serviceCount = buffer.getInt();
+            Map<String, List<String>> services = new LinkedHashMap<>();
+            for (int i = 0; i < serviceCount; i++) {
+                String serviceName = ByteBufferUtils.readString(buffer);
+                List<String> providers = new ArrayList<>();
+                ByteBufferUtils.readStringList(buffer, providers);
+                services.put(serviceName, providers);
+            }
+
+            String mainClass = ByteBufferUtils.readStringOrNull(buffer);
+
+            return new JAppModuleInfo((flags & FLAG_EXPLICIT) != 0, packages, services, mainClass);
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            throw new IOException("Truncated module info", e);
+        }
+    }
+
+    private final boolean explicit;
+    private final Set<String> packages;
+    private final Map<String, List<String>> services;
+    private final String mainClass;
+
+    /**
+     * @param services  maps the service names of all provider configuration files to the provider classes
+     * @param mainClass the {@code Main-Class} of the manifest, or {@code null} if absent
+     */
+    public JAppModuleInfo(boolean explicit, Set<String> packages, Map<String, List<String>> services, String mainClass) {
+        this.explicit = explicit;
+        this.packages = packages;
+        this.services = services;
+        this.mainClass = mainClass;
+    }
+
+    /**
+     * Returns whether the group contains a {@code module-info.class}.
+     */
+    public boolean isExplicit() {
+        return explicit;
+    }
+
+    public Set<String> getPackages() {
+        return packages;
+    }
+
+    public Map<String, List<String>> getServices() {
+        return services;
+    }
+
+    public String getMainClass() {
+        return mainClass;
+    }
+
+    /**
+     * Returns the module info of this group merged with the group that replaces resources of this group,
+     * such as the group of a newer release in a multi-release jar.
+     */
+    public JAppModuleInfo merge(JAppModuleInfo overlay) {
+        Set<String> packages = new HashSet<>(this.packages);
+        packages.addAll(overlay.packages);
+
+        Map<String, List<String>> services = new LinkedHashMap<>(this.services);
+        services.putAll(overlay.services);
+
+        return new JAppModuleInfo(this.explicit || overlay.explicit, packages, services,
+                overlay.mainClass != null ? overlay.mainClass : this.mainClass);
+    }
+
+    /**
+     * Builds the descriptor of the automatic module.
+     */
+    public ModuleDescriptor toAutomaticModuleDescriptor(String name) {
+        ModuleDescriptor.Builder builder = ModuleDescriptor.newAutomaticModule(name);
+        builder.packages(packages);
+        services.forEach((service, providers) -> {
+            if (!providers.isEmpty()) {
+                builder.provides(service, providers);
+            }
+        });
+
+        setMainClass(builder, packages, mainClass);
+        return builder.build();
+    }
+
+    public void writeTo(LittleEndianDataOutput output) throws IOException {
+        output.writeByte(explicit ? FLAG_EXPLICIT : 0);
+
+        output.writeInt(packages.size());
+        for (String packageName : packages) {
+            output.writeString(packageName);
+        }
+
+        output.writeInt(services.size());
+        for (Map.Entry<String, List<String>> entry : services.entrySet()) {
+            output.writeString(entry.getKey());
+            output.writeInt(entry.getValue().size());
+            for (String provider : entry.getValue()) {
+                output.writeString(provider);
+            }
+        }
+
+        output.writeString(mainClass);
+    }
+}
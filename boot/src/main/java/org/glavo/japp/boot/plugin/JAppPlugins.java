@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.boot.plugin;
+
+import org.glavo.japp.boot.JAppPluginManager;
+
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Access to the plugin modules of the running japp file.
+ * <p>
+ * The modules specified by the {@code --plugin-module} option of the packer are not resolved at startup.
+ * They are loaded on demand into child layers of the application layer, for example:
+ *
+ * <pre>{@code
+ * ModuleLayer layer = JAppPlugins.load("com.example.plugin");
+ * ServiceLoader<Plugin> plugins = ServiceLoader.load(layer, Plugin.class);
+ * }</pre>
+ */
+public final class JAppPlugins {
+    private JAppPlugins() {
+    }
+
+    private static JAppPluginManager getManager() {
+        JAppPluginManager manager = JAppPluginManager.getInstance();
+        if (manager == null) {
+            throw new IllegalStateException("The application is not launched by japp");
+        }
+        return manager;
+    }
+
+    /**
+     * Returns the names of all plugin modules, or an empty set if the application is not launched by japp.
+     */
+    public static Set<String> getPluginModules() {
+        JAppPluginManager manager = JAppPluginManager.getInstance();
+        return manager != null ? manager.getPluginModules() : Collections.emptySet();
+    }
+
+    /**
+     * Returns the layer that contains the plugin module if it has been loaded.
+     */
+    public static Optional<ModuleLayer> findLayer(String moduleName) {
+        JAppPluginManager manager = JAppPluginManager.getInstance();
+        return manager != null ? manager.findLayer(moduleName) : Optional.empty();
+    }
+
+    /**
+     * Loads the plugin module and the plugin modules it requires if they have not been loaded,
+     * and returns the layer that contains the module.
+     *
+     * @throws IllegalArgumentException if the module is not a plugin module
+     * @throws IllegalStateException    if the application is not launched by japp
+     * @throws java.lang.module.ResolutionException if the module cannot be resolved
+     */
+    public static ModuleLayer load(String moduleName) {
+        return getManager().load(moduleName);
+    }
+}
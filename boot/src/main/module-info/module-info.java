@@ -1,4 +1,6 @@
 module org.glavo.japp.boot {
+    exports org.glavo.japp.boot.plugin;
+
     provides java.net.spi.URLStreamHandlerProvider
             with org.glavo.japp.boot.url.JAppURLStreamHandlerProvider;
     provides java.nio.file.spi.FileSystemProvider
@@ -41,7 +41,12 @@ dependencies {
 }
 
 tasks.compileTestJava {
-    options.compilerArgs.add("--add-exports=java.base/jdk.internal.misc=ALL-UNNAMED")
+    options.compilerArgs.addAll(
+        listOf(
+            "--add-exports=java.base/jdk.internal.misc=ALL-UNNAMED",
+            "--add-exports=java.base/jdk.internal.loader=ALL-UNNAMED"
+        )
+    )
 }
 
 tasks.test {
@@ -53,7 +58,8 @@ tasks.test {
 
     useJUnitPlatform()
     jvmArgs(
-        "--add-exports=java.base/jdk.internal.misc=ALL-UNNAMED"
+        "--add-exports=java.base/jdk.internal.misc=ALL-UNNAMED",
+        "--add-exports=java.base/jdk.internal.loader=ALL-UNNAMED"
     )
 
     fun jarPath(projectName: String) =
@@ -41,7 +41,8 @@ public final class JAppConfigGroup {
         ADD_OPENS,
         ENABLE_NATIVE_ACCESS,
         EXTRA_JVM_OPTIONS,
-        SUB_GROUPS;
+        SUB_GROUPS,
+        PLUGIN_MODULES;
 
         private static final Field[] VALUES = values();
 
@@ -97,7 +98,8 @@ public final class JAppConfigGroup {
                 case ADD_EXPORTS:
                 case ADD_OPENS:
                 case ENABLE_NATIVE_ACCESS:
-                case EXTRA_JVM_OPTIONS: {
+                case EXTRA_JVM_OPTIONS:
+                case PLUGIN_MODULES: {
                     List<String> list;
                     if (field == Field.JVM_PROPERTIES) {
                         list = group.jvmProperties;
@@ -111,6 +113,8 @@ public final class JAppConfigGroup {
                         list = group.enableNativeAccess;
                     } else if (field == Field.EXTRA_JVM_OPTIONS) {
                         list = group.extraJvmOptions;
+                    } else if (field == Field.PLUGIN_MODULES) {
+                        list = group.pluginModules;
                     } else {
                         throw new AssertionError("Field: " + field);
                     }
@@ -152,6 +156,11 @@ public final class JAppConfigGroup {
     public final List<String> enableNativeAccess = new ArrayList<>();
     public final List<String> extraJvmOptions = new ArrayList<>();
 
+    /**
+     * The modules that are not resolved at startup, they are loaded on demand by {@code JAppPlugins}.
+     */
+    public final List<String> pluginModules = new ArrayList<>();
+
     public String condition;
 
     public final List<JAppConfigGroup> children = new ArrayList<>();
@@ -183,6 +192,10 @@ public final class JAppConfigGroup {
         return extraJvmOptions;
     }
 
+    public List<String> getPluginModules() {
+        return pluginModules;
+    }
+
     public String getMainClass() {
         return mainClass;
     }
@@ -248,6 +261,7 @@ public final class JAppConfigGroup {
         writeStringListField(out, Field.ADD_OPENS, addOpens);
         writeStringListField(out, Field.ENABLE_NATIVE_ACCESS, enableNativeAccess);
         writeStringListField(out, Field.EXTRA_JVM_OPTIONS, extraJvmOptions);
+        writeStringListField(out, Field.PLUGIN_MODULES, pluginModules);
 
         if (!children.isEmpty()) {
             out.writeByte(Field.SUB_GROUPS.id());
@@ -291,6 +305,7 @@ public final class JAppConfigGroup {
             addOpens.addAll(source.addOpens);
             enableNativeAccess.addAll(source.enableNativeAccess);
             extraJvmOptions.addAll(source.extraJvmOptions);
+            pluginModules.addAll(source.pluginModules);
 
             if (source.mainModule != null) {
                 mainModule = source.mainModule;
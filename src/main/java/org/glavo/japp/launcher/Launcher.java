@@ -148,6 +148,7 @@ public final class Launcher {
             writeStringListField(argsBuilder, JAppBootArgs.Field.ADD_READS, group.getAddReads());
             writeStringListField(argsBuilder, JAppBootArgs.Field.ADD_OPENS, group.getAddOpens());
             writeStringListField(argsBuilder, JAppBootArgs.Field.ADD_EXPORTS, group.getAddExports());
+            writeStringListField(argsBuilder, JAppBootArgs.Field.PLUGIN_MODULES, group.getPluginModules());
 
             if (!group.getEnableNativeAccess().isEmpty()) {
                 if (release == 16) {
@@ -21,7 +21,10 @@ import org.glavo.japp.condition.ConditionParser;
 import org.glavo.japp.io.LittleEndianDataOutput;
 import org.glavo.japp.launcher.JAppConfigGroup;
 import org.glavo.japp.launcher.Launcher;
+import org.glavo.japp.packer.compressor.CompressionCache;
+import org.glavo.japp.packer.compressor.CompressionProfile;
 import org.glavo.japp.packer.processor.ClassPathProcessor;
+import org.glavo.japp.util.SizeUtils;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -81,6 +84,11 @@ public final class JAppPacker {
         JAppPacker packer = new JAppPacker();
         Path outputFile = null;
         boolean appendBootJar = false;
+        int threads = 1;
+        int solidBlockSize = 0;
+        CompressionProfile compressionProfile = CompressionProfile.BALANCED;
+        boolean useCompressionCache = false;
+        long compressionCacheSize = CompressionCache.DEFAULT_MAX_SIZE;
 
         boolean hasMain = false;
 
@@ -140,6 +148,14 @@ public final class JAppPacker {
                     packer.current.group.enableNativeAccess.add(item);
                     break;
                 }
+                case "--plugin-module": {
+                    for (String item : nextArg(args, i++).split(",")) {
+                        if (!item.isEmpty()) {
+                            packer.current.group.pluginModules.add(item);
+                        }
+                    }
+                    break;
+                }
                 case "--condition": {
                     String condition = nextArg(args, i++);
                     ConditionParser.parse(condition);
@@ -165,6 +181,54 @@ public final class JAppPacker {
                     appendBootJar = true;
                     break;
                 }
+                case "--threads": {
+                    String value = nextArg(args, i++);
+                    try {
+                        threads = Integer.parseInt(value);
+                    } catch (NumberFormatException e) {
+                        threads = -1;
+                    }
+
+                    if (threads < 1) {
+                        System.err.println("Error: Invalid number of threads: " + value);
+                        System.exit(1);
+                    }
+                    break;
+                }
+                case "--solid-block-size": {
+                    String value = nextArg(args, i++);
+                    long size = SizeUtils.parseSize(value);
+                    if (size < 0 || size > 64 * 1024 * 1024) {
+                        System.err.println("Error: Invalid solid block size: " + value);
+                        System.exit(1);
+                    }
+                    solidBlockSize = (int) size;
+                    break;
+                }
+                case "--compression": {
+                    String value = nextArg(args, i++);
+                    try {
+                        compressionProfile = CompressionProfile.of(value);
+                    } catch (IllegalArgumentException e) {
+                        System.err.println("Error: Unknown compression profile: " + value);
+                        System.exit(1);
+                    }
+                    break;
+                }
+                case "--compression-cache": {
+                    useCompressionCache = true;
+                    break;
+                }
+                case "--compression-cache-size": {
+                    String value = nextArg(args, i++);
+                    compressionCacheSize = SizeUtils.parseSize(value);
+                    if (compressionCacheSize <= 0) {
+                        System.err.println("Error: Invalid compression cache size: " + value);
+                        System.exit(1);
+                    }
+                    useCompressionCache = true;
+                    break;
+                }
                 default: {
                     if (arg.startsWith("-D")) {
                         String property = arg.substring("-D".length());
@@ -224,8 +288,15 @@ public final class JAppPacker {
                 FileChannel.open(outputFile, EnumSet.of(StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)))) {
             output.writeBytes(header.getBytes(StandardCharsets.UTF_8));
 
-            try (JAppWriter writer = new JAppWriter(output, packer.current.group)) {
+            CompressionCache compressionCache = useCompressionCache
+                    ? new CompressionCache(CompressionCache.getDefaultDirectory(), compressionCacheSize)
+                    : null;
+            try (JAppWriter writer = new JAppWriter(output, packer.current.group, threads, solidBlockSize, compressionCache, compressionProfile)) {
                 packer.current.writeTo(writer);
+            } finally {
+                if (compressionCache != null) {
+                    compressionCache.close();
+                }
             }
 
             if (appendBootJar) {
@@ -31,6 +31,12 @@ public final class JAppResourceInfo {
     long size;
     CompressionMethod method;
     long compressedSize;
+    int solidBlockIndex = -1;
+
+    /**
+     * The resource whose content is shared by this resource, or {@code null} if the content is written for this resource.
+     */
+    JAppResourceInfo duplicateOf;
 
     Long checksum;
 
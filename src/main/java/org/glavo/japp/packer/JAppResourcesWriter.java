@@ -15,28 +15,45 @@
  */
 package org.glavo.japp.packer;
 
+import com.github.luben.zstd.ZstdDictCompress;
+import org.glavo.japp.boot.module.JAppModuleInfo;
 import org.glavo.japp.launcher.JAppResourceGroupReference;
-import org.glavo.japp.packer.compressor.CompressResult;
-import org.glavo.japp.util.XxHash64;
+import org.glavo.japp.packer.compressor.CompressionProfile;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 
 public final class JAppResourcesWriter implements AutoCloseable {
     private final JAppWriter writer;
     private final String name;
+    private final boolean isModulePath;
     private final List<JAppResourceGroupReference> referenceList;
+    private final byte[] dictionary;
+    private final CompressionProfile compressionProfile;
+    private ZstdDictCompress dictCompress;
 
     private final Map<String, JAppResourceInfo> resources = new LinkedHashMap<>();
     private final Map<Integer, Map<String, JAppResourceInfo>> multiReleaseResources = new TreeMap<>();
 
-    JAppResourcesWriter(JAppWriter writer, String name, List<JAppResourceGroupReference> referenceList) {
+    // The service provider configuration files of the group, by release
+    private final Map<Integer, Map<String, byte[]>> services = new TreeMap<>();
+    private String mainClass;
+
+    JAppResourcesWriter(JAppWriter writer, String name, boolean isModulePath, List<JAppResourceGroupReference> referenceList,
+                        byte[] dictionary, CompressionProfile compressionProfile) {
         this.writer = writer;
         this.name = name;
+        this.isModulePath = isModulePath;
         this.referenceList = referenceList;
+        this.dictionary = dictionary;
+        this.compressionProfile = compressionProfile;
     }
 
     public void writeResource(JAppResourceInfo resource, byte[] body) throws IOException {
@@ -58,29 +75,79 @@ public final class JAppResourcesWriter implements AutoCloseable {
         }
 
         resources.put(resource.name, resource);
-        resource.offset = writer.getCurrentOffset();
-        resource.size = body.length;
-        resource.checksum = XxHash64.hash(body);
 
-        CompressResult result = writer.compressor.compress(writer, body, resource.name);
-        resource.method = result.getMethod();
-        resource.compressedSize = result.getLength();
+        String serviceName = JAppModuleInfo.getServiceName(resource.name);
+        if (serviceName != null) {
+            services.computeIfAbsent(release, r -> new LinkedHashMap<>()).put(serviceName, body);
+        } else if (isModulePath && release == -1 && resource.name.equals(JAppModuleInfo.MANIFEST)) {
+            mainClass = JAppModuleInfo.readMainClass(new ByteArrayInputStream(body));
+        }
+
+        writer.writeResource(resource, body, this);
+    }
+
+    /**
+     * Returns the zstd dictionary of this group.
+     * <p>
+     * The dictionary is added to the boot metadata when it is first used,
+     * so groups whose resources are all duplicates do not add unused dictionaries.
+     */
+    ZstdDictCompress getZstdDictionary() {
+        if (dictCompress == null && dictionary != null) {
+            dictCompress = writer.addZstdDictionary(dictionary, compressionProfile.getZstdCompressionLevel());
+        }
+        return dictCompress;
+    }
+
+    CompressionProfile getCompressionProfile() {
+        return compressionProfile;
+    }
+
+    private JAppModuleInfo createModuleInfo(int release, Map<String, JAppResourceInfo> group) throws IOException {
+        Map<String, List<String>> providers = new LinkedHashMap<>();
+        for (Map.Entry<String, byte[]> entry : services.getOrDefault(release, Collections.emptyMap()).entrySet()) {
+            providers.put(entry.getKey(), JAppModuleInfo.readProviders(new ByteArrayInputStream(entry.getValue())));
+        }
+
+        Set<String> packages = new HashSet<>();
+        for (String resourceName : group.keySet()) {
+            String packageName = JAppModuleInfo.getPackageName(resourceName);
+            if (packageName != null) {
+                packages.add(packageName);
+            }
+        }
 
-        writer.getOutput().writeBytes(result.getCompressedData(), result.getOffset(), result.getLength());
+        return new JAppModuleInfo(
+                group.containsKey(JAppModuleInfo.MODULE_INFO),
+                packages,
+                providers,
+                release == -1 ? mainClass : null
+        );
     }
 
-    private int addGroup(Map<String, JAppResourceInfo> group) {
+    private int addGroup(int release, Map<String, JAppResourceInfo> group) throws IOException {
         int index = writer.groups.size();
         writer.groups.add(group);
+        if (isModulePath) {
+            writer.groupModuleInfos.add(createModuleInfo(release, group));
+        } else {
+            writer.groupModuleInfos.add(null);
+            services.getOrDefault(release, Collections.emptyMap())
+                    .forEach((serviceName, content) -> writer.serviceIndex.add(serviceName, index, content));
+        }
         return index;
     }
 
-    public void close() {
-        int baseIndex = addGroup(resources);
+    public void close() throws IOException {
+        writer.closeSolidBlock();
+
+        int baseIndex = addGroup(-1, resources);
         TreeMap<Integer, Integer> multiIndexes;
         if (!multiReleaseResources.isEmpty()) {
             multiIndexes = new TreeMap<>();
-            multiReleaseResources.forEach((i, g) -> multiIndexes.put(i, addGroup(g)));
+            for (Map.Entry<Integer, Map<String, JAppResourceInfo>> entry : multiReleaseResources.entrySet()) {
+                multiIndexes.put(entry.getKey(), addGroup(entry.getKey(), entry.getValue()));
+            }
         } else {
             multiIndexes = null;
         }
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.packer;
+
+import com.github.luben.zstd.Zstd;
+import org.glavo.japp.CompressionMethod;
+import org.glavo.japp.boot.JAppServiceIndex;
+import org.glavo.japp.io.ByteBufferOutputStream;
+import org.glavo.japp.io.LittleEndianDataOutput;
+import org.glavo.japp.util.ZstdUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the {@link JAppServiceIndex} of the boot metadata.
+ * <p>
+ * Many jars ship the same configuration files, so each distinct content is stored once,
+ * and the index is compressed as a whole.
+ */
+public final class JAppServiceIndexBuilder {
+
+    private final Map<String, List<int[]>> services = new LinkedHashMap<>();
+    private final Map<ByteBuffer, Integer> contentIndexes = new HashMap<>();
+    private final List<byte[]> contents = new ArrayList<>();
+
+    public void add(String serviceName, int groupIndex, byte[] content) {
+        Integer contentIndex = contentIndexes.get(ByteBuffer.wrap(content));
+        if (contentIndex == null) {
+            contentIndex = contents.size();
+            contents.add(content);
+            contentIndexes.put(ByteBuffer.wrap(content), contentIndex);
+        }
+
+        services.computeIfAbsent(serviceName, name -> new ArrayList<>(1)).add(new int[]{groupIndex, contentIndex});
+    }
+
+    public void writeTo(LittleEndianDataOutput output) throws IOException {
+        ByteBufferOutputStream bodyBuilder = new ByteBufferOutputStream();
+        bodyBuilder.writeInt(services.size());
+        for (Map.Entry<String, List<int[]>> entry : services.entrySet()) {
+            bodyBuilder.writeString(entry.getKey());
+            bodyBuilder.writeInt(entry.getValue().size());
+            for (int[] provider : entry.getValue()) {
+                bodyBuilder.writeInt(provider[0]);
+                bodyBuilder.writeInt(provider[1]);
+            }
+        }
+        bodyBuilder.writeInt(contents.size());
+        for (byte[] content : contents) {
+            bodyBuilder.writeInt(content.length);
+        }
+        for (byte[] content : contents) {
+            bodyBuilder.writeBytes(content);
+        }
+        byte[] body = bodyBuilder.toByteArray();
+
+        CompressionMethod method = CompressionMethod.NONE;
+        byte[] compressed = body;
+        int compressedLength = body.length;
+        if (body.length >= 16) {
+            byte[] res = new byte[ZstdUtils.maxCompressedLength(body.length)];
+            long n = Zstd.compressByteArray(res, 0, res.length, body, 0, body.length, 8);
+            if (n < body.length - 4) {
+                method = CompressionMethod.ZSTD;
+                compressed = res;
+                compressedLength = (int) n;
+            }
+        }
+
+        output.writeByte(JAppServiceIndex.MAGIC_NUMBER);
+        output.writeByte(method.id());
+        output.writeShort((short) 0);
+        output.writeInt(body.length);
+        output.writeInt(compressedLength);
+        output.writeBytes(compressed, 0, compressedLength);
+    }
+}
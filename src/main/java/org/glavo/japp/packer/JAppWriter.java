@@ -17,28 +17,45 @@ package org.glavo.japp.packer;
 
 import com.github.luben.zstd.Zstd;
 import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDictCompress;
 import org.glavo.japp.CompressionMethod;
 import org.glavo.japp.boot.JAppBootMetadata;
 import org.glavo.japp.boot.JAppResource;
 import org.glavo.japp.boot.JAppResourceField;
 import org.glavo.japp.boot.JAppResourceGroup;
+import org.glavo.japp.boot.JAppSolidBlock;
+import org.glavo.japp.boot.decompressor.zstd.ZstdDictionary;
+import org.glavo.japp.boot.module.JAppModuleInfo;
 import org.glavo.japp.io.ByteBufferOutputStream;
 import org.glavo.japp.io.LittleEndianDataOutput;
 import org.glavo.japp.launcher.JAppConfigGroup;
 import org.glavo.japp.launcher.JAppLauncherMetadata;
 import org.glavo.japp.launcher.JAppResourceGroupReference;
 import org.glavo.japp.packer.compressor.CompressContext;
+import org.glavo.japp.packer.compressor.CompressionCache;
+import org.glavo.japp.packer.compressor.CompressionProfile;
 import org.glavo.japp.packer.compressor.Compressor;
 import org.glavo.japp.packer.compressor.Compressors;
+import org.glavo.japp.packer.compressor.CompressResult;
+import org.glavo.japp.packer.compressor.PendingCompressResult;
 import org.glavo.japp.packer.compressor.classfile.ByteArrayPoolBuilder;
+import org.glavo.japp.util.BloomFilter;
 import org.glavo.japp.util.XxHash64;
 import org.glavo.japp.util.ZstdUtils;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.attribute.FileTime;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public final class JAppWriter implements CompressContext, Closeable {
 
@@ -54,19 +71,114 @@ public final class JAppWriter implements CompressContext, Closeable {
 
     // boot
     final List<Map<String, JAppResourceInfo>> groups = new ArrayList<>();
-    final Compressor compressor = Compressors.DEFAULT;
+    final List<JAppModuleInfo> groupModuleInfos = new ArrayList<>(); // null for the groups on the class path
+    final JAppServiceIndexBuilder serviceIndex = new JAppServiceIndexBuilder();
+    private final CompressionProfile compressionProfile;
     private final ByteArrayPoolBuilder pool = new ByteArrayPoolBuilder();
+    private final List<byte[]> zstdDictionaries = new ArrayList<>();
+    private final List<ZstdDictCompress> zstdDictCompresses = new ArrayList<>();
+
+    // compress
+    private final ExecutorService compressExecutor;
+    private final int maxPendingResources;
+    private final ArrayDeque<PendingResource> pendingResources = new ArrayDeque<>();
+    private final List<WorkerContext> workerContexts = new ArrayList<>();
+    private final ThreadLocal<WorkerContext> workerContext = ThreadLocal.withInitial(() -> {
+        WorkerContext context = new WorkerContext(getCompressionCache());
+        synchronized (workerContexts) {
+            workerContexts.add(context);
+        }
+        return context;
+    });
 
     public JAppWriter(LittleEndianDataOutput output) throws IOException {
         this(output, new JAppConfigGroup());
     }
 
     public JAppWriter(LittleEndianDataOutput output, JAppConfigGroup root) throws IOException {
+        this(output, root, 1);
+    }
+
+    // ingest
+    private final ExecutorService ingestExecutor;
+    private final int maxPendingGroups;
+    private final ArrayDeque<Future<LoadedResourceGroup>> pendingGroups = new ArrayDeque<>();
+
+    // deduplication
+    private static final long MAX_RETAINED_CONTENT_BYTES = 64L * 1024 * 1024;
+
+    private final Map<ContentKey, WrittenContent> writtenContents = new HashMap<>();
+    private final ArrayDeque<WrittenContent> retainedContents = new ArrayDeque<>();
+    private long retainedContentBytes = 0L;
+
+    // solid blocks
+    private static final int MAX_SOLID_BLOCK_SIZE = 64 * 1024 * 1024;
+
+    private final int solidBlockSize;
+    private SolidBlockBuilder solidBlock;
+
+    // cache
+    private final CompressionCache compressionCache;
+
+    public JAppWriter(LittleEndianDataOutput output, JAppConfigGroup root, int threads) throws IOException {
+        this(output, root, threads, 0);
+    }
+
+    public JAppWriter(LittleEndianDataOutput output, JAppConfigGroup root, int threads, int solidBlockSize) throws IOException {
+        this(output, root, threads, solidBlockSize, null);
+    }
+
+    /**
+     * @param solidBlockSize   the size of the solid blocks, or {@code 0} if small resources are compressed on their own
+     * @param compressionCache the cache of the compressed data, or {@code null} if they are not cached.
+     *                         The cache is not closed by the writer
+     */
+    public JAppWriter(LittleEndianDataOutput output, JAppConfigGroup root, int threads, int solidBlockSize,
+                      CompressionCache compressionCache) throws IOException {
+        this(output, root, threads, solidBlockSize, compressionCache, CompressionProfile.BALANCED);
+    }
+
+    /**
+     * @param compressionProfile the compression profile of the resource groups that do not override it
+     */
+    public JAppWriter(LittleEndianDataOutput output, JAppConfigGroup root, int threads, int solidBlockSize,
+                      CompressionCache compressionCache, CompressionProfile compressionProfile) throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads: " + threads);
+        }
+        if (solidBlockSize < 0 || solidBlockSize > MAX_SOLID_BLOCK_SIZE) {
+            throw new IllegalArgumentException("solidBlockSize: " + solidBlockSize);
+        }
+
+        this.solidBlockSize = solidBlockSize;
+        this.compressionCache = compressionCache;
+        this.compressionProfile = compressionProfile;
+
         this.output = output;
         output.writeInt(MAGIC_NUMBER);
 
         this.current = root;
         configStack.push(current);
+
+        if (threads > 1) {
+            this.compressExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "JApp Compress Worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.maxPendingResources = threads * 16;
+            this.ingestExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "JApp Ingest Worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.maxPendingGroups = threads;
+        } else {
+            this.compressExecutor = null;
+            this.maxPendingResources = 0;
+            this.ingestExecutor = null;
+            this.maxPendingGroups = 0;
+        }
     }
 
     public LittleEndianDataOutput getOutput() {
@@ -82,11 +194,29 @@ public final class JAppWriter implements CompressContext, Closeable {
         return pool;
     }
 
-    private final ZstdCompressCtx zstdCompressCtx = new ZstdCompressCtx();
+    public CompressionProfile getCompressionProfile() {
+        return compressionProfile;
+    }
+
+    private static ZstdCompressCtx newZstdCompressCtx() {
+        ZstdCompressCtx ctx = new ZstdCompressCtx();
+        ctx.setLevel(CompressionProfile.DEFAULT_ZSTD_COMPRESSION_LEVEL);
+        ctx.setChecksum(false);
+        return ctx;
+    }
 
-    {
-        zstdCompressCtx.setLevel(8);
-        zstdCompressCtx.setChecksum(false);
+    private final ZstdCompressCtx zstdCompressCtx = newZstdCompressCtx();
+    private final ZstdCompressCtx zstdDictCompressCtx = newZstdCompressCtx();
+    private ZstdDictCompress zstdDictionary;
+    private int zstdCompressionLevel = CompressionProfile.DEFAULT_ZSTD_COMPRESSION_LEVEL;
+    private byte[] scratchBuffer = new byte[0];
+
+    private void setZstdCompressionLevel(int level) {
+        if (zstdCompressionLevel != level) {
+            zstdCompressionLevel = level;
+            zstdCompressCtx.setLevel(level);
+            zstdDictCompressCtx.setLevel(level);
+        }
     }
 
     @Override
@@ -94,12 +224,438 @@ public final class JAppWriter implements CompressContext, Closeable {
         return zstdCompressCtx;
     }
 
-    public void beginConfigGroup(JAppConfigGroup group) {
+    @Override
+    public ZstdDictCompress getZstdDictionary() {
+        return zstdDictionary;
+    }
+
+    @Override
+    public ZstdCompressCtx getZstdDictCompressCtx() {
+        return zstdDictCompressCtx;
+    }
+
+    @Override
+    public int getZstdCompressionLevel() {
+        return zstdCompressionLevel;
+    }
+
+    @Override
+    public CompressionCache getCompressionCache() {
+        return compressionCache;
+    }
+
+    /**
+     * Adds a dictionary to the boot metadata.
+     * <p>
+     * The writer assigns the dictionary ID, so that the reader can find the dictionary referenced by a zstd frame.
+     */
+    ZstdDictCompress addZstdDictionary(byte[] dictionary, int level) {
+        ByteBuffer buffer = ByteBuffer.wrap(dictionary).order(ByteOrder.LITTLE_ENDIAN);
+        if (dictionary.length < 8 || buffer.getInt(0) != ZstdDictionary.MAGIC_NUMBER) {
+            throw new IllegalArgumentException("Not a zstd dictionary");
+        }
+
+        buffer.putInt(4, zstdDictionaries.size() + 1);
+        zstdDictionaries.add(dictionary);
+
+        ZstdDictCompress dictCompress = new ZstdDictCompress(dictionary, level);
+        zstdDictCompresses.add(dictCompress);
+        if (compressionCache != null) {
+            compressionCache.addZstdDictionary(dictCompress, dictionary);
+        }
+        return dictCompress;
+    }
+
+    @Override
+    public byte[] getScratchBuffer(int minLength) {
+        if (scratchBuffer.length < minLength) {
+            scratchBuffer = new byte[Math.max(minLength, scratchBuffer.length * 2)];
+        }
+        return scratchBuffer;
+    }
+
+    private static final class WorkerContext implements CompressContext {
+        private final ZstdCompressCtx zstdCompressCtx = newZstdCompressCtx();
+        private final ZstdCompressCtx zstdDictCompressCtx = newZstdCompressCtx();
+        private final CompressionCache compressionCache;
+        private ZstdDictCompress zstdDictionary;
+        private int zstdCompressionLevel = CompressionProfile.DEFAULT_ZSTD_COMPRESSION_LEVEL;
+        private byte[] scratchBuffer = new byte[0];
+
+        WorkerContext(CompressionCache compressionCache) {
+            this.compressionCache = compressionCache;
+        }
+
+        void setZstdCompressionLevel(int level) {
+            if (zstdCompressionLevel != level) {
+                zstdCompressionLevel = level;
+                zstdCompressCtx.setLevel(level);
+                zstdDictCompressCtx.setLevel(level);
+            }
+        }
+
+        @Override
+        public ByteArrayPoolBuilder getPool() {
+            throw new IllegalStateException("The pool can only be accessed by the writer thread");
+        }
+
+        @Override
+        public ZstdCompressCtx getZstdCompressCtx() {
+            return zstdCompressCtx;
+        }
+
+        @Override
+        public ZstdDictCompress getZstdDictionary() {
+            return zstdDictionary;
+        }
+
+        @Override
+        public ZstdCompressCtx getZstdDictCompressCtx() {
+            return zstdDictCompressCtx;
+        }
+
+        @Override
+        public int getZstdCompressionLevel() {
+            return zstdCompressionLevel;
+        }
+
+        @Override
+        public CompressionCache getCompressionCache() {
+            return compressionCache;
+        }
+
+        @Override
+        public byte[] getScratchBuffer(int minLength) {
+            if (scratchBuffer.length < minLength) {
+                scratchBuffer = new byte[Math.max(minLength, scratchBuffer.length * 2)];
+            }
+            return scratchBuffer;
+        }
+    }
+
+    private static final class PendingResource {
+        final JAppResourceInfo resource;
+        final SolidBlockBuilder solidBlock;
+        final Future<PendingCompressResult> result;
+
+        PendingResource(JAppResourceInfo resource, Future<PendingCompressResult> result) {
+            this.resource = resource;
+            this.solidBlock = null;
+            this.result = result;
+        }
+
+        PendingResource(SolidBlockBuilder solidBlock, Future<PendingCompressResult> result) {
+            this.resource = null;
+            this.solidBlock = solidBlock;
+            this.result = result;
+        }
+    }
+
+    private static final class SolidBlockBuilder {
+        final CompressionProfile profile;
+        final List<JAppResourceInfo> resources = new ArrayList<>();
+        final ByteBufferOutputStream offsets = new ByteBufferOutputStream();
+        final ByteBufferOutputStream methods = new ByteBufferOutputStream();
+        final ByteBufferOutputStream content = new ByteBufferOutputStream();
+
+        SolidBlockBuilder(CompressionProfile profile) {
+            this.profile = profile;
+        }
+
+        int size() {
+            return (int) content.getTotalBytes();
+        }
+
+        void add(JAppResourceInfo resource, CompressResult entry) {
+            resource.compressedSize = entry.getLength();
+
+            resources.add(resource);
+            offsets.writeInt(size());
+            methods.writeByte(entry.getMethod().id());
+            content.writeBytes(entry.getCompressedData(), entry.getOffset(), entry.getLength());
+        }
+    }
+
+    private static final class ContentKey {
+        final long checksum;
+        final long size;
+
+        ContentKey(long checksum, long size) {
+            this.checksum = checksum;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ContentKey)) {
+                return false;
+            }
+            ContentKey other = (ContentKey) obj;
+            return checksum == other.checksum && size == other.size;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(checksum) * 31 + Long.hashCode(size);
+        }
+    }
+
+    private static final class WrittenContent {
+        final JAppResourceInfo resource;
+
+        /**
+         * The content for the byte-for-byte comparison, or {@code null} if it has been dropped.
+         */
+        byte[] body;
+
+        /**
+         * The next content with the same checksum and size.
+         */
+        WrittenContent next;
+
+        WrittenContent(JAppResourceInfo resource, byte[] body) {
+            this.resource = resource;
+            this.body = body;
+        }
+    }
+
+    /**
+     * Keeps the content for later comparisons.
+     * The oldest contents are dropped once the retained contents exceed {@link #MAX_RETAINED_CONTENT_BYTES},
+     * so the memory used does not grow with the total size of the inputs.
+     * A duplicate of a dropped content is written again.
+     */
+    private void retainContent(WrittenContent content) {
+        retainedContents.addLast(content);
+        retainedContentBytes += content.body.length;
+
+        while (retainedContentBytes > MAX_RETAINED_CONTENT_BYTES) {
+            WrittenContent oldest = retainedContents.removeFirst();
+            retainedContentBytes -= oldest.body.length;
+            oldest.body = null;
+        }
+    }
+
+    /**
+     * Finds the resource that has been written with the same content,
+     * or records the content if it has not been written yet.
+     */
+    private JAppResourceInfo findWrittenContent(JAppResourceInfo resource, byte[] body) {
+        ContentKey key = new ContentKey(resource.checksum, body.length);
+
+        WrittenContent last = null;
+        for (WrittenContent content = writtenContents.get(key); content != null; content = content.next) {
+            if (content.body != null && Arrays.equals(content.body, body)) {
+                return content.resource;
+            }
+            last = content;
+        }
+
+        WrittenContent content = new WrittenContent(resource, body);
+        if (last == null) {
+            writtenContents.put(key, content);
+        } else {
+            last.next = content;
+        }
+        retainContent(content);
+        return null;
+    }
+
+    /**
+     * Fails if a resource of the size cannot be read from the japp file, before the resource is read into memory.
+     */
+    public static void checkResourceSize(String name, long size) throws IOException {
+        if (size > JAppResource.MAX_SIZE) {
+            throw new IOException(String.format("Resource %s is too large (size=%d, max=%d)", name, size, JAppResource.MAX_SIZE));
+        }
+    }
+
+    void writeResource(JAppResourceInfo resource, byte[] body, JAppResourcesWriter resourcesWriter) throws IOException {
+        checkResourceSize(resource.name, body.length);
+        resource.size = body.length;
+        if (resource.checksum == null) {
+            resource.checksum = XxHash64.hash(body);
+        }
+
+        JAppResourceInfo duplicate = findWrittenContent(resource, body);
+        if (duplicate != null) {
+            // The offset of the content may not be known yet, so it is resolved when the boot metadata is written
+            resource.duplicateOf = duplicate;
+            return;
+        }
+
+        CompressionProfile profile = resourcesWriter.getCompressionProfile();
+        if (solidBlockSize > 0 && addSolidBlockEntry(resource, body, profile)) {
+            return;
+        }
+
+        Compressor compressor = profile.getCompressor();
+        int level = profile.getZstdCompressionLevel();
+        ZstdDictCompress dictionary = resourcesWriter.getZstdDictionary();
+
+        if (compressExecutor == null) {
+            CompressResult result;
+            setZstdCompressionLevel(level);
+            zstdDictionary = dictionary;
+            try {
+                result = compressor.compress(this, body, resource.name);
+            } finally {
+                zstdDictionary = null;
+            }
+            writeCompressedResource(resource, result);
+            return;
+        }
+
+        if (pendingResources.size() >= maxPendingResources) {
+            writePendingResource();
+        }
+
+        Future<PendingCompressResult> result = compressExecutor.submit(() -> {
+            WorkerContext context = workerContext.get();
+            context.setZstdCompressionLevel(level);
+            context.zstdDictionary = dictionary;
+            try {
+                return compressor.prepare(context, body, resource.name);
+            } finally {
+                context.zstdDictionary = null;
+            }
+        });
+        pendingResources.add(new PendingResource(resource, result));
+    }
+
+    private boolean addSolidBlockEntry(JAppResourceInfo resource, byte[] body, CompressionProfile profile) throws IOException {
+        CompressResult entry = profile.getCompressor().compressSolidBlockEntry(this, body, resource.name);
+
+        // Entries that reference the pool are always stored in solid blocks,
+        // so that the pool is built in the same order regardless of the number of threads
+        if (entry == null || entry.getMethod() == CompressionMethod.NONE && body.length > solidBlockSize) {
+            return false;
+        }
+
+        if (solidBlock != null
+            && (solidBlock.profile != profile || solidBlock.size() > MAX_SOLID_BLOCK_SIZE - entry.getLength())) {
+            closeSolidBlock();
+        }
+        if (solidBlock == null) {
+            solidBlock = new SolidBlockBuilder(profile);
+        }
+
+        solidBlock.add(resource, entry);
+        if (solidBlock.size() >= solidBlockSize) {
+            closeSolidBlock();
+        }
+        return true;
+    }
+
+    private static CompressResult compressSolidBlock(CompressContext context, CompressionProfile profile, byte[] content) throws IOException {
+        CompressResult result = profile.getCompressor().compressSolidBlock(context, content);
+        return result.getLength() < content.length ? result : new CompressResult(content);
+    }
+
+    /**
+     * Writes the solid block that is being filled, so that the following resources start a new block.
+     */
+    void closeSolidBlock() throws IOException {
+        SolidBlockBuilder block = this.solidBlock;
+        if (block == null) {
+            return;
+        }
+
+        this.solidBlock = null;
+        byte[] content = block.content.toByteArray();
+
+        if (compressExecutor == null) {
+            setZstdCompressionLevel(block.profile.getZstdCompressionLevel());
+            writeSolidBlock(block, compressSolidBlock(this, block.profile, content));
+            return;
+        }
+
+        if (pendingResources.size() >= maxPendingResources) {
+            writePendingResource();
+        }
+
+        Future<PendingCompressResult> result = compressExecutor.submit(() -> {
+            WorkerContext context = workerContext.get();
+            context.setZstdCompressionLevel(block.profile.getZstdCompressionLevel());
+            CompressResult compressed = compressSolidBlock(context, block.profile, content);
+            return ctx -> compressed;
+        });
+        pendingResources.add(new PendingResource(block, result));
+    }
+
+    private void writeSolidBlock(SolidBlockBuilder block, CompressResult result) throws IOException {
+        long offset = getCurrentOffset();
+
+        output.writeByte(JAppSolidBlock.MAGIC_NUMBER);
+        output.writeByte(result.getMethod().id());
+        output.writeShort((short) 0); // reserved
+        output.writeInt(block.resources.size());
+        output.writeInt(block.size());
+        output.writeInt(result.getLength());
+        block.offsets.writeTo(output);
+        block.methods.writeTo(output);
+        output.writeBytes(result.getCompressedData(), result.getOffset(), result.getLength());
+
+        for (int i = 0; i < block.resources.size(); i++) {
+            JAppResourceInfo resource = block.resources.get(i);
+            resource.offset = offset;
+            resource.method = CompressionMethod.SOLID;
+            resource.solidBlockIndex = i;
+        }
+    }
+
+    private void writeCompressedResource(JAppResourceInfo resource, CompressResult result) throws IOException {
+        checkResourceSize(resource.name, result.getLength());
+        resource.offset = getCurrentOffset();
+        resource.method = result.getMethod();
+        resource.compressedSize = result.getLength();
+
+        output.writeBytes(result.getCompressedData(), result.getOffset(), result.getLength());
+    }
+
+    private static <T> T getResult(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    private void writePendingResource() throws IOException {
+        PendingResource pending = pendingResources.remove();
+        CompressResult result = getResult(pending.result).finish(this);
+        if (pending.solidBlock != null) {
+            writeSolidBlock(pending.solidBlock, result);
+        } else {
+            writeCompressedResource(pending.resource, result);
+        }
+    }
+
+    private void flushPendingResources() throws IOException {
+        while (!pendingResources.isEmpty()) {
+            writePendingResource();
+        }
+    }
+
+    public void beginConfigGroup(JAppConfigGroup group) throws IOException {
+        flushPendingGroups();
         configStack.push(group);
         current = group;
     }
 
-    public void endConfigGroup() {
+    public void endConfigGroup() throws IOException {
+        flushPendingGroups();
         configStack.pop();
         if (configStack.isEmpty()) {
             throw new IllegalStateException();
@@ -107,11 +663,66 @@ public final class JAppWriter implements CompressContext, Closeable {
     }
 
     public JAppResourcesWriter createResourcesWriter(String name, boolean isModulePath) {
-        return new JAppResourcesWriter(this, name, isModulePath ? current.modulePath : current.classPath);
+        return createResourcesWriter(name, isModulePath, null, null);
     }
 
-    public void addReference(JAppResourceGroupReference reference, boolean isModulePath) {
+    /**
+     * @param profile the compression profile of the group, or {@code null} if the group uses the profile of the writer
+     */
+    JAppResourcesWriter createResourcesWriter(String name, boolean isModulePath, byte[] dictionary, CompressionProfile profile) {
+        return new JAppResourcesWriter(this, name, isModulePath, isModulePath ? current.modulePath : current.classPath,
+                dictionary, profile != null ? profile : compressionProfile);
+    }
+
+    /**
+     * Adds a resource group that is loaded by the {@code loader}.
+     * <p>
+     * When the writer has multiple threads, the loader runs on a worker thread,
+     * but the groups are always written in the order in which they are added.
+     */
+    public void addResourceGroup(Callable<LoadedResourceGroup> loader) throws IOException {
+        Callable<LoadedResourceGroup> task = () -> {
+            LoadedResourceGroup group = loader.call();
+            if (solidBlockSize == 0) {
+                // Small resources are compressed in solid blocks, so that they do not need dictionaries
+                group.trainZstdDictionary(compressionProfile, compressionCache);
+            }
+            return group;
+        };
+
+        if (ingestExecutor == null) {
+            LoadedResourceGroup group;
+            try {
+                group = task.call();
+            } catch (IOException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+            group.writeTo(this);
+            return;
+        }
+
+        if (pendingGroups.size() >= maxPendingGroups) {
+            writePendingGroup();
+        }
+
+        pendingGroups.add(ingestExecutor.submit(task));
+    }
+
+    private void writePendingGroup() throws IOException {
+        getResult(pendingGroups.remove()).writeTo(this);
+    }
+
+    private void flushPendingGroups() throws IOException {
+        while (!pendingGroups.isEmpty()) {
+            writePendingGroup();
+        }
+    }
+
+    public void addReference(JAppResourceGroupReference reference, boolean isModulePath) throws IOException {
         Objects.requireNonNull(reference);
+        flushPendingGroups();
 
         if (isModulePath) {
             current.modulePath.add(reference);
@@ -129,14 +740,15 @@ public final class JAppWriter implements CompressContext, Closeable {
 
     private static void writeResource(JAppResourceInfo resource, ByteBufferOutputStream groupBodyBuilder) throws IOException {
         byte[] nameBytes = resource.name.getBytes(StandardCharsets.UTF_8);
+        JAppResourceInfo content = resource.duplicateOf != null ? resource.duplicateOf : resource;
 
         groupBodyBuilder.writeByte(JAppResource.MAGIC_NUMBER);
-        groupBodyBuilder.writeByte(resource.method.id());
+        groupBodyBuilder.writeByte(content.method.id());
         groupBodyBuilder.writeUnsignedShort(nameBytes.length);
         groupBodyBuilder.writeInt(0);
         groupBodyBuilder.writeLong(resource.size);
-        groupBodyBuilder.writeLong(resource.compressedSize);
-        groupBodyBuilder.writeLong(resource.offset);
+        groupBodyBuilder.writeLong(content.compressedSize);
+        groupBodyBuilder.writeLong(content.offset);
         groupBodyBuilder.writeBytes(nameBytes);
 
         if (resource.checksum != null) {
@@ -148,14 +760,44 @@ public final class JAppWriter implements CompressContext, Closeable {
         writeResourceFileTimeField(groupBodyBuilder, JAppResourceField.FILE_LAST_MODIFIED_TIME, resource.lastModifiedTime);
         writeResourceFileTimeField(groupBodyBuilder, JAppResourceField.FILE_LAST_ACCESS_TIME, resource.lastAccessTime);
 
+        if (content.solidBlockIndex >= 0) {
+            groupBodyBuilder.writeByte(JAppResourceField.SOLID_BLOCK_INDEX.id());
+            groupBodyBuilder.writeInt(content.solidBlockIndex);
+        }
+
         groupBodyBuilder.writeByte(JAppResourceField.END.id());
     }
 
+    private static BloomFilter createBloomFilter(Set<String> resourceNames) {
+        Set<String> packageNames = new HashSet<>();
+        for (String name : resourceNames) {
+            packageNames.add(JAppResourceGroup.getPackageName(name));
+        }
+
+        BloomFilter filter = BloomFilter.create(resourceNames.size() + packageNames.size());
+        for (String name : resourceNames) {
+            filter.add(name, JAppResourceGroup.BLOOM_FILTER_SEED_RESOURCE);
+        }
+        for (String name : packageNames) {
+            filter.add(name, JAppResourceGroup.BLOOM_FILTER_SEED_PACKAGE);
+        }
+        return filter;
+    }
+
     private void writeBootMetadata() throws IOException {
         output.writeInt(JAppBootMetadata.MAGIC_NUMBER);
+        output.writeInt(JAppBootMetadata.FLAG_SERVICE_INDEX);
         output.writeInt(groups.size());
         pool.writeTo(output);
-        for (Map<String, JAppResourceInfo> group : groups) {
+        output.writeInt(zstdDictionaries.size());
+        for (byte[] dictionary : zstdDictionaries) {
+            output.writeInt(dictionary.length);
+            output.writeBytes(dictionary, 0, dictionary.length);
+        }
+        for (int groupIndex = 0; groupIndex < groups.size(); groupIndex++) {
+            Map<String, JAppResourceInfo> group = groups.get(groupIndex);
+            JAppModuleInfo moduleInfo = groupModuleInfos.get(groupIndex);
+
             ByteBufferOutputStream groupBodyBuilder = new ByteBufferOutputStream();
             for (JAppResourceInfo resource : group.values()) {
                 writeResource(resource, groupBodyBuilder);
@@ -184,15 +826,25 @@ public final class JAppWriter implements CompressContext, Closeable {
 
             long checksum = XxHash64.hash(groupBody);
 
+            short flags = JAppResourceGroup.FLAG_BLOOM_FILTER;
+            if (moduleInfo != null) {
+                flags |= JAppResourceGroup.FLAG_MODULE_INFO;
+            }
+
             output.writeByte(JAppResourceGroup.MAGIC_NUMBER);
             output.writeByte(method.id());
-            output.writeShort((short) 0); // reserved
+            output.writeShort(flags);
             output.writeInt(groupBody.length);
             output.writeInt(compressedLength);
             output.writeInt(group.size());
             output.writeLong(checksum);
             output.writeBytes(compressed, 0, compressedLength);
+            createBloomFilter(group.keySet()).writeTo(output);
+            if (moduleInfo != null) {
+                moduleInfo.writeTo(output);
+            }
         }
+        serviceIndex.writeTo(output);
     }
 
     private void writeLauncherMetadata() throws IOException {
@@ -237,6 +889,10 @@ public final class JAppWriter implements CompressContext, Closeable {
     @Override
     public void close() throws IOException {
         try {
+            flushPendingGroups();
+            closeSolidBlock();
+            flushPendingResources();
+
             long bootMetadataOffset = getCurrentOffset();
             writeBootMetadata();
 
@@ -245,7 +901,23 @@ public final class JAppWriter implements CompressContext, Closeable {
 
             writeFileEnd(bootMetadataOffset, launcherMetadataOffset);
         } finally {
+            if (ingestExecutor != null) {
+                ingestExecutor.shutdownNow();
+            }
+            if (compressExecutor != null) {
+                compressExecutor.shutdownNow();
+                synchronized (workerContexts) {
+                    for (WorkerContext context : workerContexts) {
+                        context.zstdCompressCtx.close();
+                        context.zstdDictCompressCtx.close();
+                    }
+                }
+            }
             this.zstdCompressCtx.close();
+            this.zstdDictCompressCtx.close();
+            for (ZstdDictCompress dictionary : zstdDictCompresses) {
+                dictionary.close();
+            }
         }
     }
 }
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.packer;
+
+import org.glavo.japp.packer.compressor.CompressionCache;
+import org.glavo.japp.packer.compressor.CompressionProfile;
+import org.glavo.japp.packer.compressor.Compressor;
+import org.glavo.japp.packer.compressor.ZstdDictionaryTrainer;
+import org.glavo.japp.util.XxHash64;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The resources of a jar or directory that have been read into memory, but not yet written.
+ *
+ * @see JAppWriter#addResourceGroup
+ */
+public final class LoadedResourceGroup {
+    private static final class Entry {
+        final int release;
+        final JAppResourceInfo resource;
+        final byte[] body;
+
+        Entry(int release, JAppResourceInfo resource, byte[] body) {
+            this.release = release;
+            this.resource = resource;
+            this.body = body;
+        }
+    }
+
+    private final String name;
+    private final boolean isModulePath;
+    private final CompressionProfile compressionProfile;
+    private final List<Entry> entries = new ArrayList<>();
+    private byte[] zstdDictionary;
+
+    public LoadedResourceGroup(String name, boolean isModulePath) {
+        this(name, isModulePath, null);
+    }
+
+    /**
+     * @param compressionProfile the compression profile of the group, or {@code null} if the group uses the profile of the writer
+     */
+    public LoadedResourceGroup(String name, boolean isModulePath, CompressionProfile compressionProfile) {
+        this.name = name;
+        this.isModulePath = isModulePath;
+        this.compressionProfile = compressionProfile;
+    }
+
+    public void addResource(JAppResourceInfo resource, byte[] body) {
+        addResource(-1, resource, body);
+    }
+
+    public void addResource(int release, JAppResourceInfo resource, byte[] body) {
+        resource.checksum = XxHash64.hash(body);
+        entries.add(new Entry(release, resource, body));
+    }
+
+    void trainZstdDictionary(CompressionProfile defaultProfile, CompressionCache cache) throws IOException {
+        CompressionProfile profile = compressionProfile != null ? compressionProfile : defaultProfile;
+        Compressor compressor = profile.getCompressor();
+
+        ZstdDictionaryTrainer trainer = new ZstdDictionaryTrainer(profile.getZstdCompressionLevel());
+        for (Entry entry : entries) {
+            byte[] sample = compressor.getZstdDictionarySample(entry.body, entry.resource.name);
+            if (sample != null) {
+                trainer.addSample(sample);
+            }
+        }
+        zstdDictionary = trainer.train(cache);
+    }
+
+    void writeTo(JAppWriter writer) throws IOException {
+        try (JAppResourcesWriter resourcesWriter = writer.createResourcesWriter(name, isModulePath, zstdDictionary, compressionProfile)) {
+            for (Entry entry : entries) {
+                resourcesWriter.writeResource(entry.release, entry.resource, entry.body);
+            }
+        }
+    }
+}
@@ -16,6 +16,7 @@
 package org.glavo.japp.packer.compressor;
 
 import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDictCompress;
 import org.glavo.japp.packer.compressor.classfile.ByteArrayPoolBuilder;
 
 public interface CompressContext {
@@ -24,4 +25,37 @@ public interface CompressContext {
     default ZstdCompressCtx getZstdCompressCtx() {
         return new ZstdCompressCtx();
     }
+
+    /**
+     * Returns the dictionary that the zstd frames of the resource being compressed should reference,
+     * or {@code null} if they should not reference a dictionary.
+     */
+    default ZstdDictCompress getZstdDictionary() {
+        return null;
+    }
+
+    /**
+     * Returns the context used to compress the zstd frames that reference {@link #getZstdDictionary()}.
+     */
+    default ZstdCompressCtx getZstdDictCompressCtx() {
+        return new ZstdCompressCtx();
+    }
+
+    /**
+     * Returns the compression level of the zstd contexts, {@code 0} means the default level of zstd.
+     */
+    default int getZstdCompressionLevel() {
+        return 0;
+    }
+
+    /**
+     * Returns the cache of the compressed zstd frames, or {@code null} if they are not cached.
+     */
+    default CompressionCache getCompressionCache() {
+        return null;
+    }
+
+    default byte[] getScratchBuffer(int minLength) {
+        return new byte[minLength];
+    }
 }
@@ -0,0 +1,388 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.packer.compressor;
+
+import com.github.luben.zstd.ZstdDictCompress;
+import org.glavo.japp.CompressionMethod;
+import org.glavo.japp.JAppProperties;
+import org.glavo.japp.util.XxHash64;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An on-disk cache of zstd frames and trained zstd dictionaries, shared by the packer processes of the user.
+ * <p>
+ * Each entry is stored in its own file, named after the hash of the key.
+ * The key of a zstd frame consists of the hashes and the length of the uncompressed bytes, the compression method,
+ * the compression level and the hash of the dictionary, so the entries are never stale.
+ * The key of a dictionary consists of the hashes of the samples and the compression level.
+ * Entries are written to temporary files and then moved into place, so they can be read without locking.
+ * <p>
+ * The total size of the entries is recorded in the {@code size} file.
+ * When it exceeds the maximum size, the least recently used entries are deleted.
+ * The {@code size} file and the eviction are guarded by the {@code .lock} file.
+ * <p>
+ * The cache is an optimization only, so I/O errors are treated as cache misses.
+ */
+public final class CompressionCache implements Closeable {
+
+    public static final long DEFAULT_MAX_SIZE = 512L * 1024 * 1024;
+
+    private static final int MAGIC_NUMBER = 0x435a504a; // "JPZC"
+    private static final int VERSION = 0;
+    private static final int HEADER_SIZE = 48;
+
+    /**
+     * Smaller inputs are compressed faster than their cache entries can be read.
+     */
+    private static final int MIN_CACHED_SIZE = 1024;
+
+    private static final int KIND_ZSTD_DICTIONARY = -1;
+
+    private static final long SECOND_HASH_SEED = 0x9e3779b97f4a7c15L;
+    private static final long TEMP_FILE_EXPIRATION = 60L * 60 * 1000;
+
+    public static Path getDefaultDirectory() {
+        return JAppProperties.getHomeDirectory().resolve("cache").resolve("compress");
+    }
+
+    public static final class Key {
+        private final byte[] header;
+        private final String name;
+
+        private Key(byte[] header, String name) {
+            this.header = header;
+            this.name = name;
+        }
+    }
+
+    private final Path directory;
+    private final long maxSize;
+
+    private final Map<ZstdDictCompress, Long> dictionaryHashes = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    private final AtomicLong addedBytes = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    public CompressionCache(Path directory, long maxSize) throws IOException {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize: " + maxSize);
+        }
+
+        this.directory = directory;
+        this.maxSize = maxSize;
+
+        Files.createDirectories(directory);
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Registers a dictionary that is referenced by the zstd frames,
+     * the dictionary must already contain the ID assigned by the writer.
+     */
+    public void addZstdDictionary(ZstdDictCompress dictCompress, byte[] dictionary) {
+        dictionaryHashes.put(dictCompress, XxHash64.hash(dictionary));
+    }
+
+    /**
+     * Returns the key of the zstd frame of the bytes, or {@code null} if the frame should not be cached.
+     */
+    public Key getKey(CompressionMethod method, int level, ZstdDictCompress dictionary, byte[] source, int offset, int length) {
+        if (length < MIN_CACHED_SIZE) {
+            return null;
+        }
+
+        long dictionaryHash = 0L;
+        if (dictionary != null) {
+            Long hash = dictionaryHashes.get(dictionary);
+            if (hash == null) {
+                return null;
+            }
+            dictionaryHash = hash;
+        }
+
+        return newKey(method.id(), level, dictionaryHash,
+                XxHash64.hash(0L, source, offset, length),
+                XxHash64.hash(SECOND_HASH_SEED, source, offset, length),
+                length);
+    }
+
+    /**
+     * Returns the key of the dictionary trained from the samples.
+     */
+    public Key getZstdDictionaryKey(int level, List<byte[]> samples) {
+        ByteBuffer buffer = ByteBuffer.allocate(samples.size() * 20).order(ByteOrder.LITTLE_ENDIAN);
+        long samplesSize = 0L;
+        for (byte[] sample : samples) {
+            buffer.putInt(sample.length);
+            buffer.putLong(XxHash64.hash(0L, sample));
+            buffer.putLong(XxHash64.hash(SECOND_HASH_SEED, sample));
+            samplesSize += sample.length;
+        }
+
+        if (samplesSize > Integer.MAX_VALUE) {
+            return null;
+        }
+
+        byte[] array = buffer.array();
+        return newKey(KIND_ZSTD_DICTIONARY, level, 0L,
+                XxHash64.hash(0L, array), XxHash64.hash(SECOND_HASH_SEED, array),
+                (int) samplesSize);
+    }
+
+    private static Key newKey(int kind, int level, long dictionaryHash, long hash0, long hash1, int length) {
+        byte[] header = new byte[HEADER_SIZE];
+        ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(MAGIC_NUMBER)
+                .putInt(VERSION)
+                .putInt(kind)
+                .putInt(level)
+                .putLong(dictionaryHash)
+                .putLong(hash0)
+                .putLong(hash1)
+                .putInt(length);
+        // The last 4 bytes of the header is the length of the cached data
+
+        String name = String.format("%016x", XxHash64.hash(0L, header, 0, HEADER_SIZE - 4));
+        return new Key(header, name);
+    }
+
+    private Path getEntryFile(Key key) {
+        return directory.resolve(key.name.substring(0, 2)).resolve(key.name);
+    }
+
+    public byte[] get(Key key) {
+        Path file = getEntryFile(key);
+
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (IOException e) {
+            missCount.incrementAndGet();
+            return null;
+        }
+
+        int compressedLength = bytes.length >= HEADER_SIZE
+                ? ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).getInt(HEADER_SIZE - 4)
+                : -1;
+        if (compressedLength != bytes.length - HEADER_SIZE
+            || !Arrays.equals(bytes, 0, HEADER_SIZE - 4, key.header, 0, HEADER_SIZE - 4)) {
+            missCount.incrementAndGet();
+            return null;
+        }
+
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {
+        }
+
+        hitCount.incrementAndGet();
+        return Arrays.copyOfRange(bytes, HEADER_SIZE, bytes.length);
+    }
+
+    public void put(Key key, byte[] compressed, int offset, int length) {
+        if (HEADER_SIZE + (long) length > maxSize / 16) {
+            return;
+        }
+
+        Path file = getEntryFile(key);
+        Path temp = null;
+        try {
+            Files.createDirectories(file.getParent());
+            temp = Files.createTempFile(file.getParent(), key.name, ".tmp");
+
+            ByteBuffer header = ByteBuffer.wrap(key.header.clone()).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(HEADER_SIZE - 4, length);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer content = ByteBuffer.wrap(compressed, offset, length);
+                while (header.hasRemaining() || content.hasRemaining()) {
+                    channel.write(new ByteBuffer[]{header, content});
+                }
+            }
+
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            temp = null;
+
+            addedBytes.addAndGet(HEADER_SIZE + (long) length);
+        } catch (IOException ignored) {
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private long readSize(Path sizeFile) {
+        try {
+            return Long.parseLong(new String(Files.readAllBytes(sizeFile), StandardCharsets.UTF_8).trim());
+        } catch (IOException | NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    private void writeSize(Path sizeFile, long size) throws IOException {
+        Path temp = Files.createTempFile(directory, "size", ".tmp");
+        Files.write(temp, Long.toString(size).getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, sizeFile, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static final class EntryFile {
+        final Path file;
+        final long size;
+        final long lastModifiedTime;
+
+        EntryFile(Path file, long size, long lastModifiedTime) {
+            this.file = file;
+            this.size = size;
+            this.lastModifiedTime = lastModifiedTime;
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries until the total size is below the threshold.
+     *
+     * @return the total size of the remaining entries
+     */
+    private long evict(long threshold) throws IOException {
+        long now = System.currentTimeMillis();
+        long totalSize = 0L;
+        List<EntryFile> entries = new ArrayList<>();
+
+        try (DirectoryStream<Path> subdirectories = Files.newDirectoryStream(directory, Files::isDirectory)) {
+            for (Path subdirectory : subdirectories) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(subdirectory)) {
+                    for (Path file : files) {
+                        BasicFileAttributes attributes;
+                        try {
+                            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                        } catch (IOException e) {
+                            continue;
+                        }
+
+                        long lastModifiedTime = attributes.lastModifiedTime().toMillis();
+                        if (file.getFileName().toString().endsWith(".tmp")) {
+                            // Left by a packer process that has crashed
+                            if (now - lastModifiedTime > TEMP_FILE_EXPIRATION) {
+                                Files.deleteIfExists(file);
+                            }
+                            continue;
+                        }
+
+                        entries.add(new EntryFile(file, attributes.size(), lastModifiedTime));
+                        totalSize += attributes.size();
+                    }
+                }
+            }
+        }
+
+        if (totalSize > threshold) {
+            entries.sort((e1, e2) -> Long.compare(e1.lastModifiedTime, e2.lastModifiedTime));
+            for (EntryFile entry : entries) {
+                if (totalSize <= threshold) {
+                    break;
+                }
+
+                try {
+                    Files.deleteIfExists(entry.file);
+                    totalSize -= entry.size;
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        return totalSize;
+    }
+
+    /**
+     * Adds the size of the entries written by this instance to the {@code size} file,
+     * and evicts the least recently used entries if the cache is too large.
+     */
+    @Override
+    public void close() throws IOException {
+        long added = addedBytes.getAndSet(0L);
+        if (added == 0L) {
+            return;
+        }
+
+        // FileLock is held on behalf of the whole JVM, so the instances in the same JVM are serialized by the class lock
+        synchronized (CompressionCache.class) {
+            Path lockFile = directory.resolve(".lock");
+            try (FileChannel channel = FileChannel.open(lockFile, EnumSet.of(StandardOpenOption.WRITE, StandardOpenOption.CREATE))) {
+                FileLock lock = channel.tryLock();
+                for (int i = 0; lock == null && i < 100; i++) {
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    lock = channel.tryLock();
+                }
+
+                if (lock == null) {
+                    // Another process is evicting entries, it will count the entries written by this instance
+                    return;
+                }
+
+                Path sizeFile = directory.resolve("size");
+                long size = readSize(sizeFile);
+                if (size < 0 || size + added > maxSize) {
+                    size = evict(size < 0 ? maxSize : maxSize / 10 * 8);
+                } else {
+                    size += added;
+                }
+                writeSize(sizeFile, size);
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.packer.compressor;
+
+import java.util.Map;
+
+/**
+ * The compressor and the zstd compression level used for a resource group.
+ */
+public final class CompressionProfile {
+
+    public static final int DEFAULT_ZSTD_COMPRESSION_LEVEL = 8;
+
+    /**
+     * Compresses resources with LZ4, which decodes faster than zstd.
+     */
+    public static final CompressionProfile FAST_START = new CompressionProfile("lz4", Compressors.FAST_START, DEFAULT_ZSTD_COMPRESSION_LEVEL);
+
+    public static final CompressionProfile BALANCED = new CompressionProfile("zstd", Compressors.DEFAULT, DEFAULT_ZSTD_COMPRESSION_LEVEL);
+
+    /**
+     * Selects the method of each resource by trial, and compresses zstd frames with a high level.
+     */
+    public static final CompressionProfile MAX = new CompressionProfile("auto", Compressors.AUTO, 19);
+
+    private static final int MIN_ZSTD_COMPRESSION_LEVEL = 1;
+    private static final int MAX_ZSTD_COMPRESSION_LEVEL = 22;
+
+    public static CompressionProfile of(String name) {
+        switch (name) {
+            case "fast-start":
+                return FAST_START;
+            case "balanced":
+                return BALANCED;
+            case "max":
+                return MAX;
+            default:
+                throw new IllegalArgumentException("Unknown compression profile: " + name);
+        }
+    }
+
+    private static Compressor getCompressor(String method) {
+        switch (method) {
+            case "none":
+                return Compressors.NONE;
+            case "lz4":
+                return Compressors.FAST_START;
+            case "zstd":
+                return Compressors.DEFAULT;
+            case "auto":
+                return Compressors.AUTO;
+            default:
+                throw new IllegalArgumentException("Unknown compression method: " + method);
+        }
+    }
+
+    private final String method;
+    private final Compressor compressor;
+    private final int zstdCompressionLevel;
+
+    private CompressionProfile(String method, Compressor compressor, int zstdCompressionLevel) {
+        this.method = method;
+        this.compressor = compressor;
+        this.zstdCompressionLevel = zstdCompressionLevel;
+    }
+
+    /**
+     * Returns the profile overridden by the {@code compress} and {@code level} options,
+     * the recognized options are removed from the map.
+     */
+    public CompressionProfile withOptions(Map<String, String> options) {
+        String method = options.remove("compress");
+        String level = options.remove("level");
+        if (method == null && level == null) {
+            return this;
+        }
+
+        int zstdCompressionLevel = this.zstdCompressionLevel;
+        if (level != null) {
+            try {
+                zstdCompressionLevel = Integer.parseInt(level);
+            } catch (NumberFormatException e) {
+                zstdCompressionLevel = -1;
+            }
+
+            if (zstdCompressionLevel < MIN_ZSTD_COMPRESSION_LEVEL || zstdCompressionLevel > MAX_ZSTD_COMPRESSION_LEVEL) {
+                throw new IllegalArgumentException("Invalid compression level: " + level);
+            }
+        }
+
+        if (method == null) {
+            return new CompressionProfile(this.method, this.compressor, zstdCompressionLevel);
+        } else {
+            return new CompressionProfile(method, getCompressor(method), zstdCompressionLevel);
+        }
+    }
+
+    public Compressor getCompressor() {
+        return compressor;
+    }
+
+    /**
+     * Returns the level of the zstd frames and dictionaries.
+     */
+    public int getZstdCompressionLevel() {
+        return zstdCompressionLevel;
+    }
+
+    @Override
+    public String toString() {
+        return "CompressionProfile[compress=" + method + ", level=" + zstdCompressionLevel + "]";
+    }
+}
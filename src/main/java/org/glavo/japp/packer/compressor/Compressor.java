@@ -25,4 +25,42 @@ public interface Compressor {
     default CompressResult compress(CompressContext context, byte[] source, String filePath) throws IOException {
         return compress(context, source);
     }
+
+    /**
+     * Performs the part of the compression that can run on a worker thread.
+     * <p>
+     * The returned result is finished on the output thread in the order in which resources are written,
+     * so the work that touches shared state (such as the byte array pool) must be deferred to it.
+     */
+    default PendingCompressResult prepare(CompressContext context, byte[] source, String filePath) throws IOException {
+        return ctx -> compress(ctx, source, filePath);
+    }
+
+    /**
+     * Returns the form in which the source is stored in a solid block,
+     * or {@code null} if the source should be compressed on its own.
+     * <p>
+     * The solid block is compressed as a whole, so the entry itself should not be compressed with zstd.
+     * This method is called on the output thread in the order in which resources are written.
+     */
+    default CompressResult compressSolidBlockEntry(CompressContext context, byte[] source, String filePath) throws IOException {
+        return null;
+    }
+
+    /**
+     * Compresses the content of a solid block as a whole.
+     */
+    default CompressResult compressSolidBlock(CompressContext context, byte[] content) throws IOException {
+        return Compressors.ZSTD.compress(context, content);
+    }
+
+    /**
+     * Returns the part of the source that this compressor compresses into a zstd frame,
+     * or {@code null} if the source is not compressed with zstd.
+     * <p>
+     * The samples are used to train the zstd dictionaries.
+     */
+    default byte[] getZstdDictionarySample(byte[] source, String filePath) throws IOException {
+        return null;
+    }
 }
@@ -15,22 +15,85 @@
  */
 package org.glavo.japp.packer.compressor;
 
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDictCompress;
 import org.glavo.japp.CompressionMethod;
 import org.glavo.japp.util.ZstdUtils;
 import org.glavo.japp.packer.compressor.classfile.ClassFileCompressor;
 
+import java.util.Arrays;
+
 public final class Compressors {
 
-    public static final Compressor DEFAULT = new DefaultCompressor();
+    public static final Lz4Compressor LZ4 = new Lz4Compressor();
 
-    public static final Compressor CLASSFILE = new ClassFileCompressor();
+    public static final Compressor ZSTD = new Compressor() {
+        @Override
+        public CompressResult compress(CompressContext context, byte[] source) {
+            return compressZstd(context, source, 0, source.length);
+        }
 
-    public static final Compressor ZSTD = (context, source) -> {
-        byte[] res = new byte[ZstdUtils.maxCompressedLength(source.length)];
-        long n = context.getZstdCompressCtx().compressByteArray(res, 0, res.length, source, 0, source.length);
-        return new CompressResult(CompressionMethod.ZSTD, res, 0, (int) n);
+        @Override
+        public byte[] getZstdDictionarySample(byte[] source, String filePath) {
+            return source;
+        }
     };
 
+    public static final Compressor NONE = (context, source) -> new CompressResult(source);
+
+    public static final Compressor DEFAULT = new DefaultCompressor(ZSTD);
+
+    /**
+     * Compresses resources with LZ4 instead of zstd, which produces larger files that are faster to read.
+     * <p>
+     * LZ4 has no entropy coding, so the class file tails are not split into streams,
+     * which would only add work to the decompressor.
+     */
+    public static final Compressor FAST_START = new DefaultCompressor(LZ4, false);
+
+    /**
+     * Compresses each resource with both zstd and LZ4, and keeps the result that is the best trade-off
+     * between the size and the decoding time.
+     */
+    public static final Compressor AUTO = new DefaultCompressor(new TrialCompressor());
+
+    public static final Compressor CLASSFILE = new ClassFileCompressor();
+
+    /**
+     * Compresses the bytes into a zstd frame, which references the dictionary of the context if there is one.
+     */
+    public static CompressResult compressZstd(CompressContext context, byte[] source, int offset, int length) {
+        ZstdDictCompress dictionary = context.getZstdDictionary();
+
+        CompressionMethod method;
+        ZstdCompressCtx ctx;
+        if (dictionary != null) {
+            method = CompressionMethod.ZSTD_DICT;
+            ctx = context.getZstdDictCompressCtx().loadDict(dictionary);
+        } else {
+            method = CompressionMethod.ZSTD;
+            ctx = context.getZstdCompressCtx();
+        }
+
+        CompressionCache cache = context.getCompressionCache();
+        CompressionCache.Key key = cache != null
+                ? cache.getKey(method, context.getZstdCompressionLevel(), dictionary, source, offset, length)
+                : null;
+        if (key != null) {
+            byte[] cached = cache.get(key);
+            if (cached != null) {
+                return new CompressResult(method, cached);
+            }
+        }
+
+        byte[] buffer = context.getScratchBuffer(ZstdUtils.maxCompressedLength(length));
+        long n = ctx.compressByteArray(buffer, 0, buffer.length, source, offset, length);
+        if (key != null) {
+            cache.put(key, buffer, 0, (int) n);
+        }
+        return new CompressResult(method, Arrays.copyOf(buffer, (int) n));
+    }
+
     private Compressors() {
     }
 }
@@ -16,6 +16,7 @@
 package org.glavo.japp.packer.compressor;
 
 import org.glavo.japp.CompressionMethod;
+import org.glavo.japp.packer.compressor.classfile.ClassFileCompressor;
 
 import java.io.IOException;
 import java.util.HashMap;
@@ -25,8 +26,24 @@ final class DefaultCompressor implements Compressor {
 
     private final Map<String, CompressionMethod> map = new HashMap<>();
     private final CompressionMethod defaultMethod = CompressionMethod.ZSTD;
+    private final Compressor classFileCompressor;
+    private final Compressor defaultCompressor;
+
+    /**
+     * @param defaultCompressor the compressor of the class file tails and the resources that are not class files
+     *                          or already compressed, it is also used to compress the solid blocks
+     */
+    public DefaultCompressor(Compressor defaultCompressor) {
+        this(defaultCompressor, true);
+    }
+
+    /**
+     * @param columnarClassFiles whether the class file tails are split into streams before they are compressed
+     */
+    public DefaultCompressor(Compressor defaultCompressor, boolean columnarClassFiles) {
+        this.classFileCompressor = new ClassFileCompressor(defaultCompressor, columnarClassFiles);
+        this.defaultCompressor = defaultCompressor;
 
-    public DefaultCompressor() {
         map.put("class", CompressionMethod.CLASSFILE);
 
         for (String ext : new String[]{
@@ -46,10 +63,10 @@ final class DefaultCompressor implements Compressor {
 
     @Override
     public CompressResult compress(CompressContext context, byte[] source, String filePath) throws IOException {
-        if (source.length <= 16) {
-            return new CompressResult(source);
-        }
+        return prepare(context, source, filePath).finish(context);
+    }
 
+    private CompressionMethod getMethod(String filePath) {
         String ext;
         if (filePath != null) {
             int sep = Math.max(filePath.lastIndexOf('/'), filePath.lastIndexOf('\\'));
@@ -59,27 +76,103 @@ final class DefaultCompressor implements Compressor {
             ext = null;
         }
 
-        CompressionMethod method = map.getOrDefault(ext, defaultMethod);
-        CompressResult result;
+        return map.getOrDefault(ext, defaultMethod);
+    }
+
+    @Override
+    public PendingCompressResult prepare(CompressContext context, byte[] source, String filePath) throws IOException {
+        if (source.length <= 16) {
+            CompressResult result = new CompressResult(source);
+            return ctx -> result;
+        }
+
+        CompressionMethod method = getMethod(filePath);
         switch (method) {
-            case NONE:
-                result = new CompressResult(source);
-                break;
+            case NONE: {
+                CompressResult result = new CompressResult(source);
+                return ctx -> result;
+            }
+            case CLASSFILE: {
+                PendingCompressResult pending;
+                try {
+                    pending = classFileCompressor.prepare(context, source, filePath);
+                } catch (Throwable e) {
+                    // Malformed class file
+                    CompressResult result = defaultCompressor.compress(context, source);
+                    return ctx -> selectResult(result, source);
+                }
+
+                return ctx -> {
+                    CompressResult result;
+                    try {
+                        result = pending.finish(ctx);
+                    } catch (Throwable e) {
+                        // Malformed class file
+                        result = defaultCompressor.compress(ctx, source);
+                    }
+                    return selectResult(result, source);
+                };
+            }
+            case ZSTD: {
+                CompressResult result = defaultCompressor.compress(context, source);
+                return ctx -> selectResult(result, source);
+            }
+            default:
+                throw new AssertionError("Unimplemented compression method: " + method);
+        }
+    }
+
+    @Override
+    public CompressResult compressSolidBlockEntry(CompressContext context, byte[] source, String filePath) throws IOException {
+        if (source.length <= 16) {
+            return new CompressResult(source);
+        }
+
+        switch (getMethod(filePath)) {
+            case CLASSFILE: {
+                CompressResult result;
+                try {
+                    result = classFileCompressor.compressSolidBlockEntry(context, source, filePath);
+                } catch (Throwable e) {
+                    // Malformed class file
+                    return new CompressResult(source);
+                }
+                return selectResult(result, source);
+            }
+            case ZSTD:
+                return new CompressResult(source);
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public byte[] getZstdDictionarySample(byte[] source, String filePath) throws IOException {
+        if (source.length <= 16) {
+            return null;
+        }
+
+        switch (getMethod(filePath)) {
             case CLASSFILE:
                 try {
-                    result = Compressors.CLASSFILE.compress(context, source);
+                    return classFileCompressor.getZstdDictionarySample(source, filePath);
                 } catch (Throwable e) {
                     // Malformed class file
-                    result = Compressors.ZSTD.compress(context, source);
+                    return defaultCompressor.getZstdDictionarySample(source, filePath);
                 }
-                break;
             case ZSTD:
-                result = Compressors.ZSTD.compress(context, source);
-                break;
+                return defaultCompressor.getZstdDictionarySample(source, filePath);
             default:
-                throw new AssertionError("Unimplemented compression method: " + method);
+                return null;
         }
+    }
+
+    @Override
+    public CompressResult compressSolidBlock(CompressContext context, byte[] content) throws IOException {
+        return defaultCompressor.compress(context, content);
+    }
 
+    private static CompressResult selectResult(CompressResult result, byte[] source) {
         return result.getLength() < source.length ? result : new CompressResult(source);
     }
 }
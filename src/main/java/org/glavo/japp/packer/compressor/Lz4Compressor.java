@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.packer.compressor;
+
+import org.glavo.japp.CompressionMethod;
+
+import java.util.Arrays;
+
+/**
+ * Compressor of the LZ4 block format.
+ * <p>
+ * The matches are searched in hash chains, so the compression is slower than LZ4 fast mode,
+ * but the output is smaller and decompresses just as fast.
+ */
+public final class Lz4Compressor implements Compressor {
+
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MF_LIMIT = 12;
+    private static final int MAX_DISTANCE = 65535;
+
+    private static final int HASH_LOG = 16;
+    private static final int DEFAULT_SEARCH_DEPTH = 64;
+
+    public static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    private final int searchDepth;
+
+    public Lz4Compressor() {
+        this(DEFAULT_SEARCH_DEPTH);
+    }
+
+    public Lz4Compressor(int searchDepth) {
+        if (searchDepth < 1) {
+            throw new IllegalArgumentException("searchDepth: " + searchDepth);
+        }
+        this.searchDepth = searchDepth;
+    }
+
+    @Override
+    public CompressResult compress(CompressContext context, byte[] source) {
+        return compress(context, source, 0, source.length);
+    }
+
+    public CompressResult compress(CompressContext context, byte[] source, int offset, int length) {
+        byte[] buffer = context.getScratchBuffer(maxCompressedLength(length));
+        int n = compress(source, offset, length, buffer, 0);
+        return new CompressResult(CompressionMethod.LZ4, Arrays.copyOf(buffer, n));
+    }
+
+    private static int readInt(byte[] array, int index) {
+        return (array[index] & 0xff)
+               | (array[index + 1] & 0xff) << 8
+               | (array[index + 2] & 0xff) << 16
+               | (array[index + 3] & 0xff) << 24;
+    }
+
+    private static int hash(int sequence, int shift) {
+        return (sequence * -1640531535) >>> shift;
+    }
+
+    private static int writeLength(byte[] output, int outputIndex, int length) {
+        while (length >= 255) {
+            output[outputIndex++] = (byte) 255;
+            length -= 255;
+        }
+        output[outputIndex++] = (byte) length;
+        return outputIndex;
+    }
+
+    private static int writeLiterals(byte[] output, int outputIndex, int tokenIndex, byte[] source, int offset, int length) {
+        if (length >= 15) {
+            output[tokenIndex] = (byte) (15 << 4);
+            outputIndex = writeLength(output, outputIndex, length - 15);
+        } else {
+            output[tokenIndex] = (byte) (length << 4);
+        }
+
+        System.arraycopy(source, offset, output, outputIndex, length);
+        return outputIndex + length;
+    }
+
+    /**
+     * Compresses the source into an LZ4 block.
+     *
+     * @return the length of the block
+     */
+    public int compress(byte[] source, int offset, int length, byte[] output, int outputOffset) {
+        final int sourceLimit = offset + length;
+        final int matchLimit = sourceLimit - LAST_LITERALS;
+        final int matchStartLimit = sourceLimit - MF_LIMIT;
+
+        int outputIndex = outputOffset;
+        int anchor = offset;
+
+        if (length > MF_LIMIT) {
+            // Small inputs don't need the full tables
+            int log = Math.min(HASH_LOG, 32 - Integer.numberOfLeadingZeros(length - 1));
+            int hashShift = 32 - log;
+            int chainMask = (1 << log) - 1;
+
+            int[] heads = new int[1 << log];
+            Arrays.fill(heads, -1);
+            int[] chain = new int[1 << log];
+
+            int index = offset;
+            while (index <= matchStartLimit) {
+                int sequence = readInt(source, index);
+                int hash = hash(sequence, hashShift);
+
+                int matchIndex = -1;
+                int matchLength = 0;
+
+                int candidate = heads[hash];
+                for (int depth = 0; candidate >= 0 && index - candidate <= MAX_DISTANCE && depth < searchDepth; depth++) {
+                    if (readInt(source, candidate) == sequence) {
+                        int len = MIN_MATCH;
+                        while (index + len < matchLimit && source[candidate + len] == source[index + len]) {
+                            len++;
+                        }
+
+                        if (len > matchLength) {
+                            matchIndex = candidate;
+                            matchLength = len;
+                        }
+                    }
+                    candidate = chain[candidate & chainMask];
+                }
+
+                chain[index & chainMask] = heads[hash];
+                heads[hash] = index;
+
+                if (matchLength < MIN_MATCH || index + matchLength > matchLimit) {
+                    index++;
+                    continue;
+                }
+
+                // sequence
+                int tokenIndex = outputIndex++;
+                outputIndex = writeLiterals(output, outputIndex, tokenIndex, source, anchor, index - anchor);
+
+                int distance = index - matchIndex;
+                output[outputIndex++] = (byte) distance;
+                output[outputIndex++] = (byte) (distance >>> 8);
+
+                int extraMatchLength = matchLength - MIN_MATCH;
+                if (extraMatchLength >= 15) {
+                    output[tokenIndex] |= 15;
+                    outputIndex = writeLength(output, outputIndex, extraMatchLength - 15);
+                } else {
+                    output[tokenIndex] |= (byte) extraMatchLength;
+                }
+
+                // The positions in the match are added to the hash chains, so that later matches can reference them
+                int matchEnd = index + matchLength;
+                for (index++; index < matchEnd && index <= matchStartLimit; index++) {
+                    int h = hash(readInt(source, index), hashShift);
+                    chain[index & chainMask] = heads[h];
+                    heads[h] = index;
+                }
+
+                index = matchEnd;
+                anchor = index;
+            }
+        }
+
+        // The last sequence only contains literals
+        int tokenIndex = outputIndex++;
+        outputIndex = writeLiterals(output, outputIndex, tokenIndex, source, anchor, sourceLimit - anchor);
+        return outputIndex - outputOffset;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.packer.compressor;
+
+import org.glavo.japp.CompressionMethod;
+
+import java.io.IOException;
+
+/**
+ * Compresses each resource with every candidate method, and keeps the result with the lowest cost.
+ * <p>
+ * The cost weighs the compressed size against the estimated time to decode the resource,
+ * so a method that decodes faster is preferred unless another method saves enough bytes.
+ */
+final class TrialCompressor implements Compressor {
+
+    /**
+     * The estimated cost of decoding an uncompressed byte with each method,
+     * in units of the cost of reading a compressed byte from the file.
+     */
+    private static double getDecodeCost(CompressionMethod method) {
+        switch (method) {
+            case NONE:
+                return 0;
+            case LZ4:
+                return 1.0 / 32;
+            case CLASSFILE:
+                return 1.0 / 16;
+            case ZSTD:
+            case ZSTD_DICT:
+                return 1.0 / 8;
+            default:
+                throw new AssertionError("Unexpected compression method: " + method);
+        }
+    }
+
+    static double getCost(CompressResult result, int uncompressedSize) {
+        return result.getLength() + uncompressedSize * getDecodeCost(result.getMethod());
+    }
+
+    private static CompressResult select(CompressResult a, CompressResult b, int uncompressedSize) {
+        return getCost(b, uncompressedSize) < getCost(a, uncompressedSize) ? b : a;
+    }
+
+    @Override
+    public CompressResult compress(CompressContext context, byte[] source) throws IOException {
+        CompressResult result = new CompressResult(source);
+        result = select(result, Compressors.LZ4.compress(context, source), source.length);
+        result = select(result, Compressors.ZSTD.compress(context, source), source.length);
+        return result;
+    }
+
+    @Override
+    public byte[] getZstdDictionarySample(byte[] source, String filePath) {
+        return source;
+    }
+}
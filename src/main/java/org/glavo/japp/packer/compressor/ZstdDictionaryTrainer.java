@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.packer.compressor;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+import org.glavo.japp.util.ZstdUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Trains a zstd dictionary from the small frames of a resource group.
+ */
+public final class ZstdDictionaryTrainer {
+    private static final int MIN_SAMPLE_COUNT = 16;
+    private static final int MIN_SAMPLES_SIZE = 64 * 1024;
+    private static final int MAX_SAMPLES_SIZE = 16 * 1024 * 1024;
+
+    // Large resources gain little from a dictionary
+    private static final int MAX_SAMPLE_SIZE = 128 * 1024;
+
+    private static final int MIN_DICTIONARY_SIZE = 4 * 1024;
+    private static final int MAX_DICTIONARY_SIZE = 64 * 1024;
+
+    private static final int MAX_EVALUATED_SAMPLES = 256;
+
+    private final int level;
+    private final List<byte[]> samples = new ArrayList<>();
+    private long samplesSize = 0L;
+
+    public ZstdDictionaryTrainer(int level) {
+        this.level = level;
+    }
+
+    public void addSample(byte[] sample) {
+        if (sample.length > 0 && sample.length <= MAX_SAMPLE_SIZE && samplesSize + sample.length <= MAX_SAMPLES_SIZE) {
+            samples.add(sample);
+            samplesSize += sample.length;
+        }
+    }
+
+    /**
+     * Returns the trained dictionary like {@link #train()}, but reuses the result of the previous runs in the cache.
+     */
+    public byte[] train(CompressionCache cache) {
+        CompressionCache.Key key = cache != null ? cache.getZstdDictionaryKey(level, samples) : null;
+        if (key == null) {
+            return train();
+        }
+
+        byte[] cached = cache.get(key);
+        if (cached != null) {
+            // An empty entry means that no dictionary is used
+            return cached.length > 0 ? cached : null;
+        }
+
+        byte[] dictionary = train();
+        if (dictionary != null) {
+            cache.put(key, dictionary, 0, dictionary.length);
+        } else {
+            cache.put(key, new byte[0], 0, 0);
+        }
+        return dictionary;
+    }
+
+    /**
+     * Returns the trained dictionary, or {@code null} if the dictionary is not expected to save more bytes than its own size.
+     */
+    public byte[] train() {
+        if (samples.size() < MIN_SAMPLE_COUNT || samplesSize < MIN_SAMPLES_SIZE) {
+            return null;
+        }
+
+        byte[] buffer = new byte[(int) Math.max(MIN_DICTIONARY_SIZE, Math.min(MAX_DICTIONARY_SIZE, samplesSize / 32))];
+        long dictionarySize = Zstd.trainFromBuffer(samples.toArray(new byte[0][]), buffer);
+        if (Zstd.isError(dictionarySize)) {
+            return null;
+        }
+
+        byte[] dictionary = Arrays.copyOf(buffer, (int) dictionarySize);
+
+        long saved = 0L;
+        int evaluated = 0;
+        try (ZstdCompressCtx ctx = new ZstdCompressCtx();
+             ZstdCompressCtx dictCtx = new ZstdCompressCtx()) {
+            ctx.setLevel(level);
+            ctx.setChecksum(false);
+            dictCtx.setLevel(level);
+            dictCtx.setChecksum(false);
+            dictCtx.loadDict(dictionary);
+
+            byte[] output = new byte[ZstdUtils.maxCompressedLength(MAX_SAMPLE_SIZE)];
+            int step = Math.max(1, samples.size() / MAX_EVALUATED_SAMPLES);
+            for (int i = 0; i < samples.size(); i += step) {
+                byte[] sample = samples.get(i);
+                long n = ctx.compressByteArray(output, 0, output.length, sample, 0, sample.length);
+                long dictN = dictCtx.compressByteArray(output, 0, output.length, sample, 0, sample.length);
+                saved += n - dictN;
+                evaluated++;
+            }
+        }
+
+        return saved * samples.size() / evaluated > dictionary.length ? dictionary : null;
+    }
+}
@@ -27,38 +27,35 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.Arrays;
-import java.util.HashMap;
 
 public final class ByteArrayPoolBuilder {
-    private static final class ByteArrayWrapper {
-        final byte[] bytes;
-        final int hash;
+    private static final int INITIAL_TABLE_SIZE = 1024;
 
-        private ByteArrayWrapper(byte[] bytes) {
-            this.bytes = bytes;
-            this.hash = Arrays.hashCode(bytes);
-        }
+    private ByteBuffer bytes = ByteBuffer.allocate(8192).order(ByteOrder.LITTLE_ENDIAN);
+    private ByteBuffer sizes = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
 
-        @Override
-        public int hashCode() {
-            return hash;
-        }
+    private int count = 0;
 
-        @Override
-        public boolean equals(Object obj) {
-            if (!(obj instanceof ByteArrayWrapper)) {
-                return false;
-            }
+    /**
+     * The offsets of the byte arrays in {@link #bytes}, indexed by the index of the byte arrays.
+     */
+    private int[] offsets = new int[INITIAL_TABLE_SIZE / 2];
+
+    /**
+     * An open-addressing hash table with linear probing,
+     * each slot holds the index of a byte array plus one, or {@code 0} if the slot is empty.
+     * The table is at most half full.
+     */
+    private int[] table = new int[INITIAL_TABLE_SIZE];
 
-            ByteArrayWrapper other = (ByteArrayWrapper) obj;
-            return Arrays.equals(this.bytes, other.bytes);
+    private static int hash(byte[] array, int offset, int length) {
+        int h = 1;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + array[offset + i];
         }
+        return h ^ (h >>> 16);
     }
 
-    private final HashMap<ByteArrayWrapper, Integer> map = new HashMap<>();
-    private ByteBuffer bytes = ByteBuffer.allocate(8192).order(ByteOrder.LITTLE_ENDIAN);
-    private ByteBuffer sizes = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
-
     private void growIfNeed(int s) {
         if (bytes.remaining() < s) {
             int position = bytes.position();
@@ -72,30 +69,73 @@ public final class ByteArrayPoolBuilder {
                     .position(position)
                     .order(ByteOrder.LITTLE_ENDIAN);
         }
+
+        if (count == offsets.length) {
+            offsets = Arrays.copyOf(offsets, count * 2);
+        }
     }
 
-    public int add(byte[] bytes) {
-        assert bytes.length <= 0xffff;
+    private int getSize(int index) {
+        return Short.toUnsignedInt(sizes.getShort(index * 2));
+    }
 
-        ByteArrayWrapper wrapper = new ByteArrayWrapper(bytes);
+    private void rehash() {
+        int[] newTable = new int[table.length * 2];
+        int mask = newTable.length - 1;
 
-        Integer index = map.get(wrapper);
-        if (index != null) {
-            return index;
+        byte[] array = bytes.array();
+        for (int index = 0; index < count; index++) {
+            int slot = hash(array, offsets[index], getSize(index)) & mask;
+            while (newTable[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            newTable[slot] = index + 1;
         }
 
-        index = map.size();
-        map.put(wrapper, index);
+        table = newTable;
+    }
+
+    public int add(byte[] bytes) {
+        return add(bytes, 0, bytes.length);
+    }
 
-        growIfNeed(bytes.length);
-        this.sizes.putShort((short) bytes.length);
-        this.bytes.put(bytes);
+    /**
+     * Adds the byte array {@code bytes[offset, offset + length)} to the pool if it is not in the pool,
+     * and returns its index.
+     */
+    public int add(byte[] bytes, int offset, int length) {
+        assert length <= 0xffff;
+
+        int mask = table.length - 1;
+        int slot = hash(bytes, offset, length) & mask;
+
+        byte[] array = this.bytes.array();
+        int entry;
+        while ((entry = table[slot]) != 0) {
+            int index = entry - 1;
+            int entryOffset = offsets[index];
+            if (getSize(index) == length
+                && Arrays.equals(array, entryOffset, entryOffset + length, bytes, offset, offset + length)) {
+                return index;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        growIfNeed(length);
+        int index = count++;
+        offsets[index] = this.bytes.position();
+        this.sizes.putShort((short) length);
+        this.bytes.put(bytes, offset, length);
+
+        table[slot] = index + 1;
+        if (count * 2 > table.length) {
+            rehash();
+        }
 
         return index;
     }
 
     public void writeTo(LittleEndianDataOutput output) throws IOException {
-        int count = map.size();
         int uncompressedBytesSize = bytes.position();
 
         CompressionMethod compressionMethod;
@@ -16,10 +16,13 @@
 package org.glavo.japp.packer.compressor.classfile;
 
 import org.glavo.japp.CompressionMethod;
+import org.glavo.japp.classfile.ColumnarTailCodec;
 import org.glavo.japp.packer.compressor.CompressContext;
 import org.glavo.japp.util.CompressedNumber;
 import org.glavo.japp.packer.compressor.CompressResult;
 import org.glavo.japp.packer.compressor.Compressor;
+import org.glavo.japp.packer.compressor.Compressors;
+import org.glavo.japp.packer.compressor.PendingCompressResult;
 import org.glavo.japp.util.MUTF8;
 
 import java.io.IOException;
@@ -34,61 +37,141 @@ public final class ClassFileCompressor implements Compressor {
         return input + input / 128 + 16;
     }
 
+    private final Compressor tailCompressor;
+    private final boolean columnar;
+
+    public ClassFileCompressor() {
+        this(Compressors.ZSTD);
+    }
+
+    /**
+     * @param tailCompressor the compressor of the tails of class files
+     */
+    public ClassFileCompressor(Compressor tailCompressor) {
+        this(tailCompressor, true);
+    }
+
+    /**
+     * @param tailCompressor the compressor of the tails of class files
+     * @param columnar       whether the tails are split into streams before they are compressed,
+     *                       see {@link ColumnarTailCodec}
+     */
+    public ClassFileCompressor(Compressor tailCompressor, boolean columnar) {
+        this.tailCompressor = tailCompressor;
+        this.columnar = columnar;
+    }
+
+    /**
+     * Returns the columnar form of the tail, or {@code null} if the tail is stored as is.
+     */
+    private byte[] getColumnarTail(ClassFileReader reader, byte[] source) {
+        return columnar ? ColumnarTailEncoder.encode(reader, source) : null;
+    }
+
     @Override
     public CompressResult compress(CompressContext context, byte[] source) throws IOException {
-        ByteBuffer buffer = ByteBuffer.wrap(source);
-
-        ClassFileReader reader = new ClassFileReader(buffer);
-
-        int arrayOffset = buffer.arrayOffset();
-        byte[] output = new byte[maxCompressedSize(source.length)];
-        ByteBuffer outputBuffer = ByteBuffer.wrap(output);
-
-        outputBuffer.putInt(MAGIC_NUMBER);
-        outputBuffer.putShort((short) reader.minorVersion);
-        outputBuffer.putShort((short) reader.majorVersion);
-        outputBuffer.putShort((short) reader.cpCount);
-
-        for (int i = 1; i < reader.cpCount; i++) {
-            byte tag = reader.tags[i];
-            if (tag == 0) {
-                continue;
-            } else if (tag == CONSTANT_Utf8 || tag < 0) {
-                buffer.position(reader.positions[i]);
-                int len = Short.toUnsignedInt(buffer.getShort());
-
-                byte[] mutf8 = new byte[len];
-                buffer.get(mutf8);
-
-                if (tag == CONSTANT_EXTERNAL_STRING_Class) {
-                    putConstantClassName(context, mutf8, outputBuffer);
-                } else if (tag == CONSTANT_EXTERNAL_STRING_Descriptor) {
-                    putConstantDescriptor(context, mutf8, outputBuffer);
-                } else if (tag == CONSTANT_EXTERNAL_STRING_Signature) {
-                    putConstantSignature(context, mutf8, outputBuffer);
+        return prepare(context, source, null).finish(context);
+    }
+
+    @Override
+    public PendingCompressResult prepare(CompressContext context, byte[] source, String filePath) throws IOException {
+        return prepare(context, source, true);
+    }
+
+    @Override
+    public CompressResult compressSolidBlockEntry(CompressContext context, byte[] source, String filePath) throws IOException {
+        return prepare(context, source, false).finish(context);
+    }
+
+    private PendingCompressResult prepare(CompressContext context, byte[] source, boolean compressTail) throws IOException {
+        ClassFileReader reader = new ClassFileReader(ByteBuffer.wrap(source));
+
+        // The tail is compressed here, while the constant pool is written by finish,
+        // so that the strings are added to the pool in the order in which the resources are written
+
+        byte[] columnarTail = getColumnarTail(reader, source);
+        byte tailFormat = columnarTail != null ? TAIL_COLUMNAR : TAIL_RAW;
+        int tailLen = columnarTail != null ? columnarTail.length : reader.tailLen;
+
+        CompressionMethod tailMethod;
+        CompressResult tail;
+
+        CompressResult compressedTail = compressTail
+                ? tailCompressor.compress(context, columnarTail != null
+                        ? columnarTail
+                        : Arrays.copyOfRange(source, reader.tailPosition, reader.tailPosition + reader.tailLen))
+                : null;
+        if (compressedTail != null && compressedTail.getMethod() != CompressionMethod.NONE
+            && compressedTail.getLength() < tailLen) {
+            tailMethod = compressedTail.getMethod();
+            tail = compressedTail;
+        } else {
+            tailMethod = CompressionMethod.NONE;
+            tail = null;
+        }
+
+        return ctx -> {
+            ByteBuffer sourceBuffer = ByteBuffer.wrap(source);
+
+            byte[] output = new byte[maxCompressedSize(source.length) + Math.max(0, tailLen - reader.tailLen) + 8];
+            ByteBuffer outputBuffer = ByteBuffer.wrap(output);
+
+            outputBuffer.putInt(MAGIC_NUMBER);
+            outputBuffer.putShort((short) reader.minorVersion);
+            outputBuffer.putShort((short) reader.majorVersion);
+            outputBuffer.putShort((short) reader.cpCount);
+
+            for (int i = 1; i < reader.cpCount; i++) {
+                byte tag = reader.tags[i];
+                if (tag == 0) {
+                    continue;
+                } else if (tag == CONSTANT_Utf8 || tag < 0) {
+                    sourceBuffer.position(reader.positions[i]);
+                    int len = Short.toUnsignedInt(sourceBuffer.getShort());
+
+                    byte[] mutf8 = new byte[len];
+                    sourceBuffer.get(mutf8);
+
+                    if (tag == CONSTANT_EXTERNAL_STRING_Class) {
+                        putConstantClassName(ctx, mutf8, outputBuffer);
+                    } else if (tag == CONSTANT_EXTERNAL_STRING_Descriptor) {
+                        putConstantDescriptor(ctx, mutf8, outputBuffer);
+                    } else if (tag == CONSTANT_EXTERNAL_STRING_Signature) {
+                        putConstantSignature(ctx, mutf8, outputBuffer);
+                    } else {
+                        putConstantUTF8(ctx, mutf8, outputBuffer);
+                    }
                 } else {
-                    putConstantUTF8(context, mutf8, outputBuffer);
+                    outputBuffer.put(tag);
+                    outputBuffer.put(source, reader.positions[i], CONSTANT_SIZE[tag]);
                 }
-            } else {
-                outputBuffer.put(tag);
-                outputBuffer.put(buffer.array(), arrayOffset + reader.positions[i], CONSTANT_SIZE[tag]);
             }
-        }
 
+            outputBuffer.put(tailFormat);
+            outputBuffer.put(tailMethod.id());
+            if (columnarTail != null) {
+                CompressedNumber.putInt(outputBuffer, columnarTail.length);
+            }
 
-        outputBuffer.put(CompressionMethod.ZSTD.id());
-        int outputPosition = outputBuffer.position();
-        long compressedTailLen = context.getZstdCompressCtx().compressByteArray(
-                output, outputPosition, output.length - outputPosition,
-                source, reader.tailPosition, reader.tailLen);
-        if (compressedTailLen < reader.tailLen) {
-            outputBuffer.position(outputPosition + (int) compressedTailLen);
-        } else {
-            outputBuffer.position(outputPosition - 1);
-            outputBuffer.put(CompressionMethod.NONE.id());
-            outputBuffer.put(source, reader.tailPosition, reader.tailLen);
+            if (tailMethod != CompressionMethod.NONE) {
+                outputBuffer.put(tail.getCompressedData(), tail.getOffset(), tail.getLength());
+            } else if (columnarTail != null) {
+                outputBuffer.put(columnarTail);
+            } else {
+                outputBuffer.put(source, reader.tailPosition, reader.tailLen);
+            }
+            return new CompressResult(CompressionMethod.CLASSFILE, output, 0, outputBuffer.position());
+        };
+    }
+
+    @Override
+    public byte[] getZstdDictionarySample(byte[] source, String filePath) throws IOException {
+        ClassFileReader reader = new ClassFileReader(ByteBuffer.wrap(source));
+        byte[] tail = getColumnarTail(reader, source);
+        if (tail == null) {
+            tail = Arrays.copyOfRange(source, reader.tailPosition, reader.tailPosition + reader.tailLen);
         }
-        return new CompressResult(CompressionMethod.CLASSFILE, output, 0, outputBuffer.position());
+        return tailCompressor.getZstdDictionarySample(tail, filePath);
     }
 
     private static void putConstantUTF8(CompressContext context, byte[] mutf8, ByteBuffer outputBuffer) throws IOException {
@@ -97,19 +180,19 @@ public final class ClassFileCompressor implements Compressor {
     }
 
     private static void writeClassName(CompressContext context, byte[] mutf8, int offset, int end, int lastSlash, ByteBuffer outputBuffer) {
-        byte[] packageBytes;
-        byte[] classNameBytes;
+        int packageIndex;
+        int classNameIndex;
 
         if (lastSlash >= 0) {
-            packageBytes = Arrays.copyOfRange(mutf8, offset, lastSlash);
-            classNameBytes = Arrays.copyOfRange(mutf8, lastSlash + 1, end);
+            packageIndex = context.getPool().add(mutf8, offset, lastSlash - offset);
+            classNameIndex = context.getPool().add(mutf8, lastSlash + 1, end - lastSlash - 1);
         } else {
-            packageBytes = new byte[0];
-            classNameBytes = Arrays.copyOfRange(mutf8, offset, end);
+            packageIndex = context.getPool().add(mutf8, 0, 0);
+            classNameIndex = context.getPool().add(mutf8, offset, end - offset);
         }
 
-        CompressedNumber.putInt(outputBuffer, context.getPool().add(packageBytes));
-        CompressedNumber.putInt(outputBuffer, context.getPool().add(classNameBytes));
+        CompressedNumber.putInt(outputBuffer, packageIndex);
+        CompressedNumber.putInt(outputBuffer, classNameIndex);
     }
 
     private static void putConstantDescriptor(CompressContext context, byte[] mutf8, ByteBuffer outputBuffer) throws IOException {
@@ -157,7 +240,7 @@ public final class ClassFileCompressor implements Compressor {
             }
         }
 
-        int index = context.getPool().add(Arrays.copyOf(descriptorBuffer.array(), descriptorBuffer.position()));
+        int index = context.getPool().add(descriptorBuffer.array(), 0, descriptorBuffer.position());
         outputBuffer.put(CONSTANT_EXTERNAL_STRING_Descriptor);
         CompressedNumber.putInt(outputBuffer, index);
     }
@@ -197,7 +280,7 @@ public final class ClassFileCompressor implements Compressor {
             }
         }
 
-        int index = packer.getPool().add(Arrays.copyOf(signatureBuffer.array(), signatureBuffer.position()));
+        int index = packer.getPool().add(signatureBuffer.array(), 0, signatureBuffer.position());
         outputBuffer.put(CONSTANT_EXTERNAL_STRING_Signature);
         CompressedNumber.putInt(outputBuffer, index);
     }
@@ -372,6 +372,18 @@ public final class ClassFileReader {
         }
     }
 
+    /**
+     * Returns the index of the first {@code CONSTANT_Utf8} entry with the given value, or {@code 0} if there is none.
+     */
+    int findUtf8(String value) {
+        for (int i = 1; i < cpCount; i++) {
+            if (value.equals(strings[i])) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
     public String getModuleName() {
         return moduleName;
     }
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.packer.compressor.classfile;
+
+import org.glavo.japp.classfile.ColumnarTailCodec;
+import org.glavo.japp.io.ByteBufferOutputStream;
+import org.glavo.japp.util.CompressedNumber;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Splits the tail of a class file into the streams of {@link ColumnarTailCodec}.
+ * <p>
+ * The encoded tail consists of the index of the {@code "Code"} string, the sizes of the streams and the streams.
+ */
+final class ColumnarTailEncoder extends ColumnarTailCodec {
+
+    /**
+     * Returns the encoded tail, or {@code null} if the tail cannot be split.
+     */
+    static byte[] encode(ClassFileReader reader, byte[] source) {
+        int codeNameIndex = reader.findUtf8("Code");
+
+        ByteBuffer tail = ByteBuffer.wrap(source, reader.tailPosition, reader.tailLen).slice();
+        ColumnarTailEncoder encoder = new ColumnarTailEncoder(codeNameIndex, tail);
+        try {
+            encoder.walk();
+        } catch (IOException | RuntimeException e) {
+            // Malformed or unsupported tail
+            return null;
+        }
+
+        if (tail.hasRemaining()) {
+            return null;
+        }
+
+        int size = 5 + STREAM_COUNT * 5;
+        for (ByteBufferOutputStream stream : encoder.streams) {
+            size += (int) stream.getTotalBytes();
+        }
+
+        ByteBuffer output = ByteBuffer.allocate(size);
+        CompressedNumber.putInt(output, codeNameIndex);
+        for (ByteBufferOutputStream stream : encoder.streams) {
+            CompressedNumber.putInt(output, (int) stream.getTotalBytes());
+        }
+        for (ByteBufferOutputStream stream : encoder.streams) {
+            output.put(stream.getByteBuffer().array(), 0, (int) stream.getTotalBytes());
+        }
+        return Arrays.copyOf(output.array(), output.position());
+    }
+
+    private final ByteBuffer tail;
+    private final ByteBufferOutputStream[] streams = new ByteBufferOutputStream[STREAM_COUNT];
+
+    private ColumnarTailEncoder(int codeNameIndex, ByteBuffer tail) {
+        super(codeNameIndex);
+        this.tail = tail;
+
+        int initialCapacity = Math.max(64, tail.remaining() / STREAM_COUNT);
+        for (int i = 0; i < STREAM_COUNT; i++) {
+            streams[i] = new ByteBufferOutputStream(ByteOrder.BIG_ENDIAN, initialCapacity);
+        }
+    }
+
+    @Override
+    protected int u1(int stream) {
+        byte v = tail.get();
+        streams[stream].writeByte(v);
+        return Byte.toUnsignedInt(v);
+    }
+
+    @Override
+    protected int u2(int stream) {
+        short v = tail.getShort();
+        streams[stream].writeShort(v);
+        return Short.toUnsignedInt(v);
+    }
+
+    @Override
+    protected int u4(int stream) {
+        int v = tail.getInt();
+        streams[stream].writeInt(v);
+        return v;
+    }
+
+    @Override
+    protected void copy(int stream, int length) throws IOException {
+        if (length > tail.remaining()) {
+            throw new IOException("attribute length is too large");
+        }
+
+        streams[stream].writeBytes(tail.array(), tail.arrayOffset() + tail.position(), length);
+        tail.position(tail.position() + length);
+    }
+}
@@ -16,6 +16,7 @@
 package org.glavo.japp.packer.processor;
 
 import org.glavo.japp.packer.JAppWriter;
+import org.glavo.japp.packer.compressor.CompressionProfile;
 
 import java.util.Map;
 
@@ -45,9 +46,11 @@ public abstract class ClassPathProcessor {
             String path = parser.path;
 
             ClassPathProcessor processor = getProcessor(options.remove("type"));
-            processor.process(writer, path, isModulePath, options);
+            CompressionProfile compressionProfile = writer.getCompressionProfile().withOptions(options);
+            processor.process(writer, path, isModulePath, compressionProfile, options);
         }
     }
 
-    public abstract void process(JAppWriter packer, String path, boolean isModulePath, Map<String, String> options) throws Throwable;
+    public abstract void process(JAppWriter packer, String path, boolean isModulePath, CompressionProfile compressionProfile,
+                                 Map<String, String> options) throws Throwable;
 }
@@ -17,8 +17,9 @@ package org.glavo.japp.packer.processor;
 
 import org.glavo.japp.packer.JAppWriter;
 import org.glavo.japp.packer.JAppResourceInfo;
-import org.glavo.japp.packer.JAppResourcesWriter;
+import org.glavo.japp.packer.LoadedResourceGroup;
 import org.glavo.japp.packer.ModuleInfoReader;
+import org.glavo.japp.packer.compressor.CompressionProfile;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -38,6 +39,26 @@ public final class LocalClassPathProcessor extends ClassPathProcessor {
     private static final String MULTI_RELEASE_PREFIX = "META-INF/versions/";
 
     public static void addJar(JAppWriter writer, Path jar, boolean isModulePath) throws IOException {
+        addJar(writer, jar, isModulePath, null);
+    }
+
+    public static void addJar(JAppWriter writer, Path jar, boolean isModulePath, CompressionProfile compressionProfile) throws IOException {
+        writer.addResourceGroup(() -> loadJar(jar, isModulePath, compressionProfile));
+    }
+
+    public static void addDir(JAppWriter writer, Path dir, boolean isModulePath) throws IOException {
+        addDir(writer, dir, isModulePath, null);
+    }
+
+    public static void addDir(JAppWriter writer, Path dir, boolean isModulePath, CompressionProfile compressionProfile) throws IOException {
+        writer.addResourceGroup(() -> loadDir(dir, isModulePath, compressionProfile));
+    }
+
+    public static LoadedResourceGroup loadJar(Path jar, boolean isModulePath) throws IOException {
+        return loadJar(jar, isModulePath, null);
+    }
+
+    public static LoadedResourceGroup loadJar(Path jar, boolean isModulePath, CompressionProfile compressionProfile) throws IOException {
         try (ZipFile zipFile = new ZipFile(jar.toFile())) {
             Attributes attributes = null;
 
@@ -99,60 +120,67 @@ public final class LocalClassPathProcessor extends ClassPathProcessor {
                 moduleName = ModuleInfoReader.deriveAutomaticModuleName(jar.getFileName().toString());
             }
 
-            try (JAppResourcesWriter resourcesWriter = writer.createResourcesWriter(
+            LoadedResourceGroup group = new LoadedResourceGroup(
                     isModulePath ? moduleName : jar.getFileName().toString(),
-                    isModulePath
-            )) {
-                Enumeration<? extends ZipEntry> entries = zipFile.entries();
-                while (entries.hasMoreElements()) {
-                    ZipEntry entry = entries.nextElement();
-                    String name = entry.getName();
+                    isModulePath,
+                    compressionProfile
+            );
 
-                    if (name.endsWith("/")) {
-                        continue;
-                    }
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String name = entry.getName();
 
-                    int release = -1;
+                if (name.endsWith("/")) {
+                    continue;
+                }
 
-                    if (multiRelease && name.startsWith(MULTI_RELEASE_PREFIX)) {
-                        int idx = name.indexOf('/', MULTI_RELEASE_PREFIX.length());
+                int release = -1;
 
-                        if (idx > MULTI_RELEASE_PREFIX.length() && idx < name.length() - 1) {
-                            String ver = name.substring(MULTI_RELEASE_PREFIX.length(), idx);
-                            try {
-                                int v = Integer.parseInt(ver);
-                                if (v >= 9) {
-                                    release = v;
-                                    name = name.substring(idx + 1);
-                                }
+                if (multiRelease && name.startsWith(MULTI_RELEASE_PREFIX)) {
+                    int idx = name.indexOf('/', MULTI_RELEASE_PREFIX.length());
 
-                            } catch (NumberFormatException ignored) {
+                    if (idx > MULTI_RELEASE_PREFIX.length() && idx < name.length() - 1) {
+                        String ver = name.substring(MULTI_RELEASE_PREFIX.length(), idx);
+                        try {
+                            int v = Integer.parseInt(ver);
+                            if (v >= 9) {
+                                release = v;
+                                name = name.substring(idx + 1);
                             }
-                        }
-                    }
 
-                    byte[] buffer = new byte[Math.toIntExact(entry.getSize())];
-                    try (InputStream in = zipFile.getInputStream(entry)) {
-                        int count = 0;
-                        int n;
-                        while ((n = in.read(buffer, count, buffer.length - count)) > 0) {
-                            count += n;
+                        } catch (NumberFormatException ignored) {
                         }
+                    }
+                }
 
-                        assert count == buffer.length;
+                JAppWriter.checkResourceSize(entry.getName(), entry.getSize());
+                byte[] buffer = new byte[Math.toIntExact(entry.getSize())];
+                try (InputStream in = zipFile.getInputStream(entry)) {
+                    int count = 0;
+                    int n;
+                    while ((n = in.read(buffer, count, buffer.length - count)) > 0) {
+                        count += n;
                     }
 
-                    JAppResourceInfo resource = new JAppResourceInfo(name);
-                    resource.setCreationTime(entry.getCreationTime());
-                    resource.setLastModifiedTime(entry.getLastModifiedTime());
-                    resourcesWriter.writeResource(release, resource, buffer);
+                    assert count == buffer.length;
                 }
+
+                JAppResourceInfo resource = new JAppResourceInfo(name);
+                resource.setCreationTime(entry.getCreationTime());
+                resource.setLastModifiedTime(entry.getLastModifiedTime());
+                group.addResource(release, resource, buffer);
             }
 
+            return group;
         }
     }
 
-    public static void addDir(JAppWriter packer, Path dir, boolean isModulePath) throws IOException {
+    public static LoadedResourceGroup loadDir(Path dir, boolean isModulePath) throws IOException {
+        return loadDir(dir, isModulePath, null);
+    }
+
+    public static LoadedResourceGroup loadDir(Path dir, boolean isModulePath, CompressionProfile compressionProfile) throws IOException {
         String name;
         if (isModulePath) {
             try (InputStream input = Files.newInputStream(dir.resolve("module-info.class"))) {
@@ -162,26 +190,28 @@ public final class LocalClassPathProcessor extends ClassPathProcessor {
             name = null;
         }
 
-        try (JAppResourcesWriter resourcesWriter = packer.createResourcesWriter(name, isModulePath)) {
-            Path absoluteDir = dir.toAbsolutePath().normalize();
-            Files.walkFileTree(absoluteDir, new SimpleFileVisitor<>() {
-                @Override
-                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                    String path = absoluteDir.relativize(file).toString().replace('\\', '/');
-                    byte[] data = Files.readAllBytes(file);
-                    JAppResourceInfo resource = new JAppResourceInfo(path);
-                    resource.setCreationTime(attrs.creationTime());
-                    resource.setLastModifiedTime(attrs.lastModifiedTime());
-                    resource.setLastAccessTime(attrs.lastAccessTime());
-                    resourcesWriter.writeResource(resource, data);
-                    return FileVisitResult.CONTINUE;
-                }
-            });
-        }
+        LoadedResourceGroup group = new LoadedResourceGroup(name, isModulePath, compressionProfile);
+        Path absoluteDir = dir.toAbsolutePath().normalize();
+        Files.walkFileTree(absoluteDir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                String path = absoluteDir.relativize(file).toString().replace('\\', '/');
+                JAppWriter.checkResourceSize(path, attrs.size());
+                byte[] data = Files.readAllBytes(file);
+                JAppResourceInfo resource = new JAppResourceInfo(path);
+                resource.setCreationTime(attrs.creationTime());
+                resource.setLastModifiedTime(attrs.lastModifiedTime());
+                resource.setLastAccessTime(attrs.lastAccessTime());
+                group.addResource(resource, data);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return group;
     }
 
     @Override
-    public void process(JAppWriter writer, String path, boolean isModulePath, Map<String, String> options) throws IOException {
+    public void process(JAppWriter writer, String path, boolean isModulePath, CompressionProfile compressionProfile,
+                        Map<String, String> options) throws IOException {
         String name = options.remove("name");
 
         if (!options.isEmpty()) {
@@ -219,15 +249,15 @@ public final class LocalClassPathProcessor extends ClassPathProcessor {
                         String fileName = file.getFileName().toString();
 
                         if (Files.isRegularFile(file) && fileName.endsWith(".jar")) {
-                            addJar(writer, file, isModulePath);
+                            addJar(writer, file, isModulePath, compressionProfile);
                         }
                     }
                 }
             } else {
-                addDir(writer, p, isModulePath);
+                addDir(writer, p, isModulePath, compressionProfile);
             }
         } else if (p.getFileName().toString().endsWith(".jar")) {
-            addJar(writer, p, isModulePath);
+            addJar(writer, p, isModulePath, compressionProfile);
         } else {
             throw new IllegalArgumentException("Unsupported file format: " + p);
         }
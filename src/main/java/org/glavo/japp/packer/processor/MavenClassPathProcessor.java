@@ -19,6 +19,7 @@ import org.glavo.japp.launcher.JAppResourceGroupReference;
 import org.glavo.japp.maven.MavenResolver;
 import org.glavo.japp.packer.JAppWriter;
 import org.glavo.japp.packer.ModuleInfoReader;
+import org.glavo.japp.packer.compressor.CompressionProfile;
 
 import java.lang.module.ModuleFinder;
 import java.lang.module.ModuleReference;
@@ -33,7 +34,8 @@ public final class MavenClassPathProcessor extends ClassPathProcessor {
     private final Pattern pattern = Pattern.compile("(?<group>[^/]+)/(?<artifact>[^/]+)/(?<version>[^/]+)(/(?<classifier>[^/]+))?");
 
     @Override
-    public void process(JAppWriter packer, String path, boolean isModulePath, Map<String, String> options) throws Throwable {
+    public void process(JAppWriter packer, String path, boolean isModulePath, CompressionProfile compressionProfile,
+                        Map<String, String> options) throws Throwable {
         boolean bundle = !"false".equals(options.remove("bundle"));
         String repo = options.remove("repository");
         boolean verify = !"false".equals(options.remove("verify")); // TODO
@@ -55,7 +57,7 @@ public final class MavenClassPathProcessor extends ClassPathProcessor {
         Path file = MavenResolver.resolve(repo, group, artifact, version, classifier);
 
         if (bundle) {
-            LocalClassPathProcessor.addJar(packer, file, isModulePath);
+            LocalClassPathProcessor.addJar(packer, file, isModulePath, compressionProfile);
         } else {
             String name;
             if (isModulePath) {
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.boot;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JAppBufferPoolTest {
+
+    @Test
+    public void testReuse() {
+        JAppBufferPool pool = new JAppBufferPool(4, JAppBufferPool.DEFAULT_MAX_RETAINED_BYTES);
+
+        ByteBuffer buffer = pool.acquire(5000);
+        assertEquals(0, buffer.position());
+        assertEquals(5000, buffer.limit());
+        assertEquals(8192, buffer.capacity());
+
+        pool.release(buffer);
+        assertEquals(8192, pool.getRetainedBytes());
+        assertSame(buffer, pool.acquire(8000));
+        assertEquals(8000, buffer.limit());
+        assertEquals(0, pool.getRetainedBytes());
+    }
+
+    @Test
+    public void testRetainedBytesLimit() {
+        JAppBufferPool pool = new JAppBufferPool(16, 64 * 1024);
+
+        List<ByteBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            buffers.add(pool.acquire(32 * 1024));
+        }
+        for (ByteBuffer buffer : buffers) {
+            pool.release(buffer);
+            assertTrue(pool.getRetainedBytes() <= 64 * 1024);
+        }
+        assertEquals(64 * 1024, pool.getRetainedBytes());
+
+        // Buffers larger than the largest pooled capacity are not retained
+        ByteBuffer large = pool.acquire((16 << 20) + 1);
+        assertEquals((16 << 20) + 1, large.capacity());
+        pool.release(large);
+        assertEquals(64 * 1024, pool.getRetainedBytes());
+    }
+
+    @Test
+    public void testForeignBuffers() {
+        JAppBufferPool pool = new JAppBufferPool(4, JAppBufferPool.DEFAULT_MAX_RETAINED_BYTES);
+
+        assertThrows(IllegalArgumentException.class, () -> pool.release(ByteBuffer.allocate(4096)));
+        assertThrows(IllegalArgumentException.class, () -> pool.release(ByteBuffer.allocateDirect(4096)));
+        assertThrows(IllegalArgumentException.class, () -> pool.release(pool.acquire(4096).asReadOnlyBuffer()));
+        assertEquals(0, pool.getRetainedBytes());
+
+        ByteBuffer buffer = pool.acquire(4096);
+        pool.release(buffer);
+        assertThrows(IllegalStateException.class, () -> pool.release(buffer));
+        assertEquals(4096, pool.getRetainedBytes());
+    }
+}
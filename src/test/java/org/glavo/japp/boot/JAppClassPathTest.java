@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.boot;
+
+import jdk.internal.loader.Resource;
+import jdk.internal.loader.URLClassPath;
+import org.glavo.japp.packer.JAppTestFile;
+import org.junit.jupiter.api.Test;
+
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JAppClassPathTest {
+
+    @Test
+    public void testClassPath() throws Throwable {
+        Map<String, byte[]> entries = JAppTestFile.readTestJarEntries();
+
+        try (JAppTestFile japp = JAppTestFile.of(entries)) {
+            JAppReader reader = japp.getReader();
+            JAppResourceGroup group = japp.getGroup(0);
+            group.initName("test.jar");
+
+            JAppClassPath classPath = new JAppClassPath(new URLClassPath(new URL[0], null), reader);
+            classPath.addGroup(group);
+
+            assertEquals("japp:/classpath/test.jar/", classPath.getURLs()[0].toString());
+
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                String name = entry.getKey();
+
+                Resource resource = classPath.getResource(name, false);
+                assertNotNull(resource, name);
+                assertEquals(name, resource.getName());
+                assertEquals("japp:/classpath/test.jar/", resource.getCodeSourceURL().toString());
+                assertEquals(entry.getValue().length, resource.getContentLength());
+                assertArrayEquals(entry.getValue(), resource.getBytes(), name);
+
+                ByteBuffer buffer = resource.getByteBuffer();
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                assertArrayEquals(entry.getValue(), bytes, name);
+
+                assertEquals(resource.getURL(), classPath.findResource(name, false));
+                assertEquals(JAppResourceRoot.CLASSPATH.toURI(group, group.get(name)).toString(), resource.getURL().toString());
+            }
+
+            assertNull(classPath.getResource("org/junit/jupiter/api/Missing.class", false));
+            assertNull(classPath.findResource("missing/Missing.class", false));
+            assertFalse(classPath.findResources("missing/Missing.class", false).hasMoreElements());
+        }
+    }
+}
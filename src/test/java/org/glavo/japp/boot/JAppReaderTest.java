@@ -0,0 +1,368 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.boot;
+
+import org.glavo.japp.CompressionMethod;
+import org.glavo.japp.boot.decompressor.ZstdDecompressorPool;
+import org.glavo.japp.boot.decompressor.zstd.ZstdFrameDecompressor;
+import org.glavo.japp.io.ByteBufferOutputStream;
+import org.glavo.japp.packer.JAppServiceIndexBuilder;
+import org.glavo.japp.packer.JAppTestFile;
+import org.glavo.japp.packer.compressor.CompressionProfile;
+import org.glavo.japp.util.XxHash64;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JAppReaderTest {
+
+    /**
+     * Splits the content into overlapping segments in the same way as a file larger than 2 GiB is mapped.
+     */
+    private static ByteBuffer[] segments(byte[] content, int stride, int length) {
+        List<ByteBuffer> segments = new ArrayList<>();
+        int position = 0;
+        while (true) {
+            int segmentLength = Math.min(content.length - position, length);
+            segments.add(ByteBuffer.wrap(content, position, segmentLength).slice().asReadOnlyBuffer());
+            if (position + segmentLength >= content.length) {
+                break;
+            }
+            position += stride;
+        }
+        return segments.toArray(new ByteBuffer[0]);
+    }
+
+    private static byte[] read(JAppReader reader, long offset, int size) throws IOException {
+        ByteBuffer buffer = reader.readResource(new JAppResource("test", offset, size, CompressionMethod.NONE, size));
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void testMappedSegments() throws Throwable {
+        byte[] content = new byte[1000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 31);
+        }
+
+        int stride = 64;
+        int length = 100;
+        ByteBuffer[] segments = segments(content, stride, length);
+        assertEquals(16, segments.length);
+
+        try (JAppReader reader = new JAppReader(null, 0, segments, stride, null, null, null, new HashMap<>(), new HashMap<>(), null, JAppVerifyMode.LAZY)) {
+            for (int offset = 0; offset < content.length; offset += 7) {
+                for (int size : new int[]{1, 36, 37, 64, 200, 999}) {
+                    if (offset + size <= content.length) {
+                        assertArrayEquals(Arrays.copyOfRange(content, offset, offset + size), read(reader, offset, size),
+                                "offset=" + offset + ", size=" + size);
+                    } else {
+                        int o = offset;
+                        assertThrows(IOException.class, () -> read(reader, o, size));
+                    }
+                }
+            }
+
+            assertThrows(IOException.class, () -> read(reader, content.length, 1));
+            assertThrows(IOException.class, () -> read(reader, Long.MAX_VALUE, 1));
+        }
+    }
+
+    @Test
+    public void testVerifyMode() throws Throwable {
+        byte[] content = "Hello World".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer[] segments = {ByteBuffer.wrap(content).asReadOnlyBuffer()};
+
+        for (JAppVerifyMode mode : JAppVerifyMode.values()) {
+            try (JAppReader reader = new JAppReader(null, 0, segments, Integer.MAX_VALUE, null, null, null,
+                    new HashMap<>(), new HashMap<>(), null, mode)) {
+                JAppResource valid = new JAppResource("valid", 0, content.length, CompressionMethod.NONE, content.length);
+                valid.needCheck = true;
+                valid.checksum = XxHash64.hash(content);
+
+                JAppResource corrupted = new JAppResource("corrupted", 0, content.length, CompressionMethod.NONE, content.length);
+                corrupted.needCheck = true;
+                corrupted.checksum = valid.checksum + 1;
+
+                assertEquals(content.length, reader.readResource(valid).remaining());
+                if (mode.verifiesOnAccess()) {
+                    assertFalse(valid.needCheck);
+                    assertThrows(IOException.class, () -> reader.readResource(corrupted));
+                } else {
+                    assertTrue(valid.needCheck);
+                    assertEquals(content.length, reader.readResource(corrupted).remaining());
+                }
+
+                // The verifier checks resources regardless of the mode
+                reader.verifyResource(valid);
+                assertFalse(valid.needCheck);
+                assertThrows(IOException.class, () -> reader.verifyResource(corrupted));
+                assertTrue(corrupted.needCheck);
+            }
+        }
+
+        assertEquals(JAppVerifyMode.BACKGROUND, JAppVerifyMode.of("background"));
+        assertThrows(IllegalArgumentException.class, () -> JAppVerifyMode.of("unknown"));
+    }
+
+    @Test
+    public void testStartupProfile() throws Throwable {
+        byte[] content = "Hello World".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer[] segments = {ByteBuffer.wrap(content).asReadOnlyBuffer()};
+
+        JAppResource foo = new JAppResource("foo", 0, content.length, CompressionMethod.NONE, content.length);
+        foo.groupIndex = 1;
+        JAppResource bar = new JAppResource("bar", 0, content.length, CompressionMethod.NONE, content.length);
+        bar.groupIndex = 0;
+        JAppResource external = new JAppResource("external", 0, content.length, CompressionMethod.NONE, content.length);
+
+        JAppStartupProfile profile = new JAppStartupProfile(0x1234L);
+        try (JAppReader reader = new JAppReader(null, 0, segments, Integer.MAX_VALUE, null, null, null,
+                new HashMap<>(), new HashMap<>(), null, JAppVerifyMode.LAZY)) {
+            reader.profile = profile;
+            reader.readResource(foo);
+            reader.readResource(external);
+            reader.readResource(bar, ByteBuffer.allocate(content.length));
+            reader.readResource(foo);
+        }
+
+        Path file = Files.createTempFile("japp-", ".profile");
+        try {
+            profile.writeTo(file);
+
+            List<JAppStartupProfile.Entry> entries = JAppStartupProfile.readFrom(file, 0x1234L);
+            assertNotNull(entries);
+            assertEquals(2, entries.size());
+            assertEquals(1, entries.get(0).groupIndex);
+            assertEquals("foo", entries.get(0).name);
+            assertEquals(0, entries.get(1).groupIndex);
+            assertEquals("bar", entries.get(1).name);
+
+            // The profile is ignored if it was recorded for another file
+            assertNull(JAppStartupProfile.readFrom(file, 0x5678L));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testStartupProfileLimit() throws Throwable {
+        JAppResource[] resources = new JAppResource[3];
+        for (int i = 0; i < resources.length; i++) {
+            resources[i] = new JAppResource("resource" + i, 0, 0, CompressionMethod.NONE, 0);
+            resources[i].groupIndex = 0;
+        }
+
+        Path file = Files.createTempFile("japp-", ".profile");
+        try {
+            // Recording stops when the profile is full
+            JAppStartupProfile profile = new JAppStartupProfile(0x1234L, JAppStartupProfile.RECORD_WINDOW_NANOS, 2);
+            for (JAppResource resource : resources) {
+                profile.record(resource);
+            }
+            profile.record(resources[0]);
+            profile.writeTo(file);
+
+            List<JAppStartupProfile.Entry> entries = JAppStartupProfile.readFrom(file, 0x1234L);
+            assertNotNull(entries);
+            assertEquals(2, entries.size());
+            assertEquals("resource0", entries.get(0).name);
+            assertEquals("resource1", entries.get(1).name);
+
+            // Nothing is recorded after the startup window
+            profile = new JAppStartupProfile(0x1234L, 0L, JAppStartupProfile.MAX_ENTRIES);
+            profile.record(resources[0]);
+            profile.writeTo(file);
+
+            entries = JAppStartupProfile.readFrom(file, 0x1234L);
+            assertNotNull(entries);
+            assertEquals(0, entries.size());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testOpenResource() throws Throwable {
+        byte[] content = new byte[64 * 1024];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i % 7);
+        }
+
+        byte[] file = JAppTestFile.write(Collections.singletonMap("a.txt", content), 1, 0, CompressionProfile.FAST_START);
+        try (JAppTestFile japp = JAppTestFile.open(file)) {
+            JAppReader reader = japp.getReader();
+            JAppResource resource = japp.getGroup(0).get("a.txt");
+            assertNotEquals(CompressionMethod.NONE, resource.getMethod());
+
+            for (int i = 0; i < 2; i++) {
+                InputStream input = reader.openResource(resource);
+                assertArrayEquals(content, input.readAllBytes());
+                input.close();
+
+                // The stream no longer reads the buffer after it is returned to the pool
+                assertEquals(-1, input.read());
+            }
+        }
+    }
+
+    private static void assertReadIntoBuffer(JAppReader reader, JAppResourceGroup group, Map<String, byte[]> entries) throws Throwable {
+        JAppBufferPool pool = reader.getBufferPool();
+        for (JAppResource resource : group.values()) {
+            byte[] expected = entries.get(resource.getName());
+
+            ByteBuffer buffer = pool.acquire(expected.length + 3);
+            try {
+                buffer.position(3);
+                reader.readResource(resource, buffer);
+                assertEquals(expected.length + 3, buffer.position());
+
+                byte[] actual = new byte[expected.length];
+                buffer.position(3);
+                buffer.get(actual);
+                assertArrayEquals(expected, actual, resource.getName());
+
+                if (expected.length > 0) {
+                    buffer.clear().limit(expected.length - 1);
+                    assertThrows(BufferOverflowException.class, () -> reader.readResource(resource, buffer));
+                }
+            } finally {
+                pool.release(buffer);
+            }
+        }
+    }
+
+    @Test
+    public void testReadIntoBuffer() throws Throwable {
+        Map<String, byte[]> entries = JAppTestFile.readTestJarEntries();
+
+        for (int solidBlockSize : new int[]{0, 64 * 1024}) {
+            byte[] file = JAppTestFile.write(entries, 1, solidBlockSize, CompressionProfile.BALANCED);
+
+            try (JAppTestFile japp = JAppTestFile.open(file)) {
+                assertReadIntoBuffer(japp.getReader(), japp.getGroup(0), entries);
+            }
+
+            // Read resources from the file channel instead of the mapped buffer
+            Path tempFile = Files.createTempFile("japp", ".japp");
+            try {
+                Files.write(tempFile, file);
+
+                ZstdFrameDecompressor decompressor = new ZstdFrameDecompressor();
+                JAppBootMetadata metadata = JAppTestFile.readBootMetadata(file, decompressor);
+
+                try (JAppReader reader = new JAppReader(FileChannel.open(tempFile), 0, null, metadata.getPool(), metadata.getDictionaries(),
+                        decompressor, new HashMap<>(), new HashMap<>())) {
+                    assertReadIntoBuffer(reader, metadata.getGroups().get(0), entries);
+                    for (JAppResource resource : metadata.getGroups().get(0).values()) {
+                        assertArrayEquals(entries.get(resource.getName()), JAppTestFile.readResource(reader, resource), resource.getName());
+                    }
+                }
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentRead() throws Throwable {
+        Map<String, byte[]> entries = JAppTestFile.readTestJarEntries();
+
+        for (int solidBlockSize : new int[]{0, 64 * 1024}) {
+            try (JAppTestFile japp = JAppTestFile.of(entries, solidBlockSize)) {
+                JAppReader reader = japp.getReader();
+                List<JAppResource> resources = new ArrayList<>(japp.getGroup(0).values());
+
+                ExecutorService executor = Executors.newFixedThreadPool(16);
+                try {
+                    List<Future<?>> futures = new ArrayList<>();
+                    for (int i = 0; i < 16; i++) {
+                        int start = i;
+                        futures.add(executor.submit(() -> {
+                            for (int j = 0; j < resources.size(); j++) {
+                                JAppResource resource = resources.get((start * 31 + j) % resources.size());
+                                ByteBuffer content = reader.readResource(resource);
+                                byte[] bytes = new byte[content.remaining()];
+                                content.get(bytes);
+                                assertArrayEquals(entries.get(resource.getName()), bytes, resource.getName());
+                            }
+                            return null;
+                        }));
+                    }
+                    for (Future<?> future : futures) {
+                        future.get();
+                    }
+                } finally {
+                    executor.shutdownNow();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testServiceIndex() throws Throwable {
+        byte[] providers = "demo.Provider\n".getBytes(StandardCharsets.UTF_8);
+        byte[] content = new byte[providers.length];
+        ByteBuffer[] segments = {ByteBuffer.wrap(content).asReadOnlyBuffer()};
+
+        JAppServiceIndexBuilder builder = new JAppServiceIndexBuilder();
+        builder.add("demo.Service", 1, providers);
+
+        ByteBufferOutputStream output = new ByteBufferOutputStream();
+        builder.writeTo(output);
+        JAppServiceIndex index = JAppServiceIndex.readFrom(ByteBuffer.wrap(output.toByteArray()).order(ByteOrder.LITTLE_ENDIAN),
+                new ZstdDecompressorPool());
+
+        try (JAppReader reader = new JAppReader(null, 0, segments, Integer.MAX_VALUE, null, null, null,
+                new HashMap<>(), new HashMap<>(), null, JAppVerifyMode.LAZY)) {
+            reader.serviceIndex = index;
+
+            JAppResource indexed = new JAppResource("META-INF/services/demo.Service", 0, providers.length, CompressionMethod.NONE, providers.length);
+            indexed.groupIndex = 1;
+            JAppResource other = new JAppResource("META-INF/services/demo.Service", 0, providers.length, CompressionMethod.NONE, providers.length);
+            other.groupIndex = 0;
+
+            // The indexed file is served from the index instead of the file
+            assertEquals(ByteBuffer.wrap(providers), reader.readResource(indexed));
+            ByteBuffer buffer = ByteBuffer.allocate(providers.length);
+            reader.readResource(indexed, buffer);
+            assertArrayEquals(providers, buffer.array());
+
+            assertEquals(ByteBuffer.wrap(content), reader.readResource(other));
+        }
+    }
+}
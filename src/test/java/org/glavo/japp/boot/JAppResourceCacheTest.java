@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.boot;
+
+import org.glavo.japp.CompressionMethod;
+import org.glavo.japp.packer.JAppTestFile;
+import org.glavo.japp.packer.compressor.CompressionProfile;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JAppResourceCacheTest {
+
+    @Test
+    public void testResourceCache() throws Throwable {
+        Map<String, byte[]> entries = JAppTestFile.readTestJarEntries();
+        byte[] file = JAppTestFile.write(entries, 1, 0, CompressionProfile.BALANCED);
+
+        JAppResourceCache cache = new JAppResourceCache(1024 * 1024);
+        try (JAppTestFile japp = JAppTestFile.open(file, cache)) {
+            JAppReader reader = japp.getReader();
+            assertSame(cache, reader.getResourceCache());
+            JAppResourceGroup group = japp.getGroup(0);
+
+            // Stored resources are views of the mapped file, they are not looked up in the cache
+            long cacheable = 0;
+            for (JAppResource resource : group.values()) {
+                assertArrayEquals(entries.get(resource.getName()), japp.readResource(resource), resource.getName());
+                if (resource.getSize() > 0 && resource.getMethod() != CompressionMethod.NONE) {
+                    cacheable++;
+                }
+            }
+            assertTrue(cacheable > 0);
+            assertEquals(0, cache.getHitCount());
+            assertEquals(cacheable, cache.getMissCount());
+            assertTrue(cache.getSize() > 0);
+            assertTrue(cache.getSize() <= cache.getMaxSize());
+
+            for (JAppResource resource : group.values()) {
+                if (resource.getSize() > 0) {
+                    assertTrue(reader.readResource(resource).isReadOnly());
+                    assertArrayEquals(entries.get(resource.getName()), japp.readResource(resource), resource.getName());
+                }
+            }
+            assertTrue(cache.getHitCount() > 0);
+            assertEquals(cacheable * 3, cache.getHitCount() + cache.getMissCount());
+        }
+    }
+}
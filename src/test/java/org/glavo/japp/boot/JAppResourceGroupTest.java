@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.boot;
+
+import org.glavo.japp.packer.JAppResourceInfo;
+import org.glavo.japp.packer.JAppResourcesWriter;
+import org.glavo.japp.packer.JAppTestFile;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JAppResourceGroupTest {
+
+    @Test
+    public void testMergeGroups() throws Throwable {
+        Map<String, byte[]> entries = JAppTestFile.readTestJarEntries();
+
+        byte[] file = JAppTestFile.write(writer -> {
+            for (String name : new String[]{"a.jar", "b.jar"}) {
+                try (JAppResourcesWriter resourcesWriter = writer.createResourcesWriter(name, false)) {
+                    for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                        resourcesWriter.writeResource(new JAppResourceInfo(entry.getKey()), entry.getValue());
+                    }
+                }
+            }
+        });
+
+        try (JAppTestFile japp = JAppTestFile.open(file)) {
+            JAppResourceGroup base = japp.getGroup(0);
+            JAppResourceGroup merged = japp.getGroup(1);
+
+            // The groups are merged when the base group is decoded
+            base.addAll(merged);
+            assertEquals(entries.keySet(), base.keySet());
+            assertEquals(entries.size(), base.size());
+            assertEquals(entries.size(), base.values().size());
+            for (JAppResource resource : base.values()) {
+                assertSame(merged.get(resource.getName()), resource);
+            }
+        }
+    }
+
+    @Test
+    public void testNestedMerge() throws Throwable {
+        byte[] file = JAppTestFile.write(writer -> {
+            for (String name : new String[]{"a.txt", "b.txt", "c.txt"}) {
+                try (JAppResourcesWriter resourcesWriter = writer.createResourcesWriter(name, false)) {
+                    resourcesWriter.writeResource(new JAppResourceInfo(name), name.getBytes(StandardCharsets.UTF_8));
+                    resourcesWriter.writeResource(new JAppResourceInfo("shared.txt"), name.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        });
+
+        try (JAppTestFile japp = JAppTestFile.open(file)) {
+            JAppResourceGroup a = japp.getGroup(0);
+            JAppResourceGroup b = japp.getGroup(1);
+            JAppResourceGroup c = japp.getGroup(2);
+
+            a.addAll(b);
+            assertEquals(new HashSet<>(Arrays.asList("a.txt", "b.txt", "shared.txt")), new HashSet<>(a.keySet()));
+            assertTrue(a.values().contains(b.get("shared.txt")));
+
+            // The view of a is rebuilt when a group is added to a merged group
+            b.addAll(c);
+            assertEquals(new HashSet<>(Arrays.asList("a.txt", "b.txt", "c.txt", "shared.txt")), new HashSet<>(a.keySet()));
+            assertEquals(4, a.size());
+            assertTrue(a.values().contains(c.get("shared.txt")));
+            assertSame(c.get("shared.txt"), a.get("shared.txt"));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.boot;
+
+import org.glavo.japp.packer.JAppTestFile;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JAppResourceIndexTest {
+
+    @Test
+    public void testResourceIndex() throws Throwable {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            entries.put("org/example/resource" + i + ".txt", ("class " + i).getBytes(StandardCharsets.UTF_8));
+        }
+        entries.put("META-INF/é.properties", "e".getBytes(StandardCharsets.UTF_8));
+        entries.put("资源/文件.txt", "resource".getBytes(StandardCharsets.UTF_8));
+
+        try (JAppTestFile japp = JAppTestFile.of(entries)) {
+            JAppResourceGroup group = japp.getGroup(0);
+            assertEquals(entries.size(), group.size());
+            assertEquals(new ArrayList<>(entries.keySet()), new ArrayList<>(group.keySet()));
+
+            for (String name : entries.keySet()) {
+                JAppResource resource = group.get(name);
+                assertEquals(name, resource.getName());
+                assertSame(resource, group.get(name));
+                assertTrue(group.keySet().contains(name));
+
+                byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+                byte[] padded = new byte[nameBytes.length + 2];
+                System.arraycopy(nameBytes, 0, padded, 1, nameBytes.length);
+                assertSame(resource, group.get(padded, 1, nameBytes.length));
+
+                assertArrayEquals(entries.get(name), japp.readResource(resource), name);
+            }
+
+            assertNull(group.get("org/example/resource1000.txt"));
+            assertNull(group.get("资源/文件"));
+            assertNull(group.get(""));
+            assertFalse(group.keySet().contains("META-INF/e.properties"));
+
+            assertTrue(group.mightContainPackage("org/example"));
+            assertTrue(group.mightContainPackage("资源"));
+            assertFalse(group.mightContainPackage("org/example/resource0.txt"));
+        }
+    }
+}
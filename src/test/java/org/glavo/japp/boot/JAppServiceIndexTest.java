@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.boot;
+
+import org.glavo.japp.CompressionMethod;
+import org.glavo.japp.boot.decompressor.ZstdDecompressorPool;
+import org.glavo.japp.io.ByteBufferOutputStream;
+import org.glavo.japp.packer.JAppServiceIndexBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JAppServiceIndexTest {
+
+    private static byte[] write(JAppServiceIndexBuilder builder) throws IOException {
+        ByteBufferOutputStream output = new ByteBufferOutputStream();
+        builder.writeTo(output);
+        return output.toByteArray();
+    }
+
+    private static JAppServiceIndex read(byte[] bytes) throws IOException {
+        return JAppServiceIndex.readFrom(ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN), new ZstdDecompressorPool());
+    }
+
+    private static JAppResource serviceFile(String serviceName, int groupIndex, byte[] content) {
+        JAppResource resource = new JAppResource("META-INF/services/" + serviceName, 0, content.length, CompressionMethod.NONE, content.length);
+        resource.groupIndex = groupIndex;
+        return resource;
+    }
+
+    @Test
+    public void testSharedContent() throws Throwable {
+        byte[] content = "demo.impl.FirstProvider\ndemo.impl.SecondProvider\n".getBytes(StandardCharsets.UTF_8);
+
+        JAppServiceIndexBuilder single = new JAppServiceIndexBuilder();
+        single.add("demo.Service", 0, content);
+
+        JAppServiceIndexBuilder shared = new JAppServiceIndexBuilder();
+        for (int i = 0; i < 8; i++) {
+            shared.add("demo.Service", i, content.clone());
+        }
+
+        // Each distinct content is stored once
+        byte[] bytes = write(shared);
+        assertTrue(bytes.length < write(single).length + 8 * 8);
+
+        JAppServiceIndex index = read(bytes);
+        for (int i = 0; i < 8; i++) {
+            assertEquals(ByteBuffer.wrap(content), index.getContent(serviceFile("demo.Service", i, content)));
+        }
+        assertNull(index.getContent(serviceFile("demo.Service", 8, content)));
+        assertNull(index.getContent(serviceFile("demo.Other", 0, content)));
+    }
+
+    @Test
+    public void testLazyDecoding() throws Throwable {
+        JAppServiceIndexBuilder builder = new JAppServiceIndexBuilder();
+        builder.add("demo.Service", 0, "demo.Provider\n".getBytes(StandardCharsets.UTF_8));
+        byte[] bytes = write(builder);
+
+        // Corrupt the service count, which is only read on the first lookup
+        assertEquals(CompressionMethod.NONE.id(), bytes[1]);
+        bytes[12] = (byte) 0xff;
+        bytes[13] = (byte) 0xff;
+        bytes[14] = (byte) 0xff;
+        bytes[15] = (byte) 0x7f;
+
+        JAppServiceIndex index = read(bytes);
+        JAppResource resource = serviceFile("demo.Service", 0, new byte[14]);
+        assertThrows(IOException.class, () -> index.getContent(resource));
+        assertThrows(UncheckedIOException.class, () -> index.contains("demo.Service", null));
+    }
+}
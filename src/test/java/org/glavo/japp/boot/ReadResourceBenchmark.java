@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.boot;
+
+import org.glavo.japp.CompressionMethod;
+import org.glavo.japp.packer.JAppTestFile;
+import org.glavo.japp.packer.compressor.CompressionProfile;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Measures how {@link JAppReader#readResource(JAppResource)} scales when many threads read class files at the same time,
+ * as class loaders do during warm-up.
+ * <p>
+ * The class files of {@code java.base} are packed with the compression profile given by the system property
+ * {@code profile} (default: {@code balanced}), then each thread count given as an argument (default: 1 8 64)
+ * reads all of them in every thread for a number of rounds given by the system property {@code rounds} (default: 5).
+ * This is not a unit test, run it with the test class path:
+ *
+ * <pre>{@code
+ * java -cp <test class path> -Dprofile=balanced org.glavo.japp.boot.ReadResourceBenchmark 1 8 64
+ * }</pre>
+ */
+public final class ReadResourceBenchmark {
+    private static final int MAX_CLASSES = 4000;
+    private static final int WARM_UP_ITERATIONS = 30;
+
+    private static Map<String, byte[]> readClasses() throws Exception {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        FileSystem jrt = FileSystems.getFileSystem(URI.create("jrt:/"));
+        Path base = jrt.getPath("/modules/java.base");
+        try (Stream<Path> stream = Files.walk(base)) {
+            Iterator<Path> iterator = stream.filter(path -> path.toString().endsWith(".class")).sorted().iterator();
+            while (iterator.hasNext() && entries.size() < MAX_CLASSES) {
+                Path path = iterator.next();
+                entries.put(base.relativize(path).toString(), Files.readAllBytes(path));
+            }
+        }
+        return entries;
+    }
+
+    private static long readAll(JAppReader reader, List<JAppResource> resources, int start) throws Exception {
+        long bytes = 0;
+        for (int i = 0; i < resources.size(); i++) {
+            ByteBuffer content = reader.readResource(resources.get((start + i) % resources.size()));
+            bytes += content.remaining();
+        }
+        return bytes;
+    }
+
+    private static void run(JAppReader reader, List<JAppResource> resources, int threads, int rounds) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CyclicBarrier barrier = new CyclicBarrier(threads + 1);
+            List<Future<Long>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                // Threads start at different resources, so they do not read the same resource at the same time
+                int start = (int) ((long) t * resources.size() / threads);
+                futures.add(executor.submit(() -> {
+                    barrier.await();
+                    long bytes = 0;
+                    for (int r = 0; r < rounds; r++) {
+                        bytes += readAll(reader, resources, start);
+                    }
+                    return bytes;
+                }));
+            }
+
+            barrier.await();
+            long startTime = System.nanoTime();
+            long bytes = 0;
+            for (Future<Long> future : futures) {
+                bytes += future.get();
+            }
+            double seconds = (System.nanoTime() - startTime) / 1e9;
+
+            long reads = (long) threads * rounds * resources.size();
+            System.out.printf("threads=%-3d reads=%-9d time=%8.3fs  %10.0f reads/s  %8.1f MiB/s%n",
+                    threads, reads, seconds, reads / seconds, bytes / seconds / (1024 * 1024));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        CompressionProfile profile = CompressionProfile.of(System.getProperty("profile", "balanced"));
+        int rounds = Integer.getInteger("rounds", 5);
+
+        List<Integer> threadCounts = new ArrayList<>();
+        for (String arg : args) {
+            threadCounts.add(Integer.parseInt(arg));
+        }
+        if (threadCounts.isEmpty()) {
+            Collections.addAll(threadCounts, 1, 8, 64);
+        }
+
+        byte[] file = JAppTestFile.write(readClasses(), Runtime.getRuntime().availableProcessors(), 0, profile);
+        try (JAppTestFile japp = JAppTestFile.open(file)) {
+            JAppReader reader = japp.getReader();
+            List<JAppResource> resources = new ArrayList<>(japp.getGroup(0).values());
+
+            Map<CompressionMethod, Integer> methods = new EnumMap<>(CompressionMethod.class);
+            for (JAppResource resource : resources) {
+                methods.merge(resource.getMethod(), 1, Integer::sum);
+            }
+            System.out.printf("processors=%d resources=%d methods=%s%n",
+                    Runtime.getRuntime().availableProcessors(), resources.size(), methods);
+
+            // Warm up the reader and the JIT before measuring
+            for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+                readAll(reader, resources, 0);
+            }
+            for (int threads : threadCounts) {
+                run(reader, resources, threads, rounds);
+            }
+        }
+    }
+}
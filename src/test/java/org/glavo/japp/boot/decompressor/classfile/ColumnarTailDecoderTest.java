@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.boot.decompressor.classfile;
+
+import org.glavo.japp.classfile.ColumnarTailCodec;
+import org.glavo.japp.util.CompressedNumber;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ColumnarTailDecoderTest {
+
+    private static ByteBuffer columns(int... sizes) {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        CompressedNumber.putInt(buffer, 1);
+        for (int size : sizes) {
+            CompressedNumber.putInt(buffer, size);
+        }
+        buffer.put(new byte[8]);
+        return buffer.flip();
+    }
+
+    @Test
+    public void testOversizedStream() {
+        int[] sizes = new int[ColumnarTailCodec.STREAM_COUNT];
+        sizes[ColumnarTailCodec.STREAM_OTHERS] = Integer.MAX_VALUE;
+        assertThrows(IOException.class, () -> ColumnarTailDecoder.decode(columns(sizes), ByteBuffer.allocate(64)));
+
+        sizes[ColumnarTailCodec.STREAM_OTHERS] = 9;
+        assertThrows(IOException.class, () -> ColumnarTailDecoder.decode(columns(sizes), ByteBuffer.allocate(64)));
+    }
+
+    @Test
+    public void testTruncated() {
+        assertThrows(IOException.class, () -> ColumnarTailDecoder.decode(columns(0, 0), ByteBuffer.allocate(64)));
+        assertThrows(IOException.class, () -> ColumnarTailDecoder.decode(ByteBuffer.allocate(0), ByteBuffer.allocate(64)));
+    }
+
+    @Test
+    public void testOutputOverflow() {
+        int[] sizes = new int[ColumnarTailCodec.STREAM_COUNT];
+        sizes[ColumnarTailCodec.STREAM_FLAGS] = 8;
+        assertThrows(IOException.class, () -> ColumnarTailDecoder.decode(columns(sizes), ByteBuffer.allocate(1)));
+    }
+}
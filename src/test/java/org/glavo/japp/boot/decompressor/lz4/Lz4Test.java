@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.boot.decompressor.lz4;
+
+import com.github.luben.zstd.Zstd;
+import org.glavo.japp.packer.compressor.Lz4Compressor;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class Lz4Test {
+
+    private static byte[] compress(byte[] bytes) {
+        byte[] buffer = new byte[Lz4Compressor.maxCompressedLength(bytes.length)];
+        int n = new Lz4Compressor().compress(bytes, 0, bytes.length, buffer, 0);
+        return Arrays.copyOf(buffer, n);
+    }
+
+    private static void testDecompress(byte[] bytes) throws Throwable {
+        byte[] compressed = compress(bytes);
+
+        byte[] decompressed = new byte[bytes.length];
+        Lz4Decompressor.decompress(compressed, 0, compressed.length, decompressed, 0, decompressed.length);
+        assertArrayEquals(bytes, decompressed);
+
+        Arrays.fill(decompressed, (byte) 0);
+        ByteBuffer compressedBuffer = ByteBuffer.wrap(compressed);
+        ByteBuffer decompressedBuffer = ByteBuffer.wrap(decompressed);
+
+        Lz4Decompressor.decompress(compressedBuffer, decompressedBuffer);
+        assertFalse(compressedBuffer.hasRemaining());
+        assertFalse(decompressedBuffer.hasRemaining());
+        assertArrayEquals(bytes, decompressed);
+
+        compressedBuffer = ByteBuffer.allocateDirect(compressed.length);
+        compressedBuffer.put(compressed);
+        compressedBuffer.flip();
+        decompressedBuffer = ByteBuffer.allocateDirect(bytes.length);
+
+        Lz4Decompressor.decompress(compressedBuffer, decompressedBuffer);
+        assertFalse(compressedBuffer.hasRemaining());
+        assertFalse(decompressedBuffer.hasRemaining());
+
+        decompressedBuffer.flip();
+        decompressedBuffer.get(decompressed);
+        assertArrayEquals(bytes, decompressed);
+    }
+
+    @Test
+    void testDecompressor() throws Throwable {
+        for (int len = 0; len <= 128; len++) {
+            for (int seed = 0; seed < 100; seed++) {
+                Random random = new Random(seed);
+                byte[] bytes = new byte[len];
+                random.nextBytes(bytes);
+
+                // Small alphabets produce short matches with small offsets, which overlap their output
+                byte[] repetitive = new byte[len * 8];
+                int alphabet = random.nextInt(4) + 1;
+                for (int i = 0; i < repetitive.length; i++) {
+                    repetitive[i] = (byte) random.nextInt(alphabet);
+                }
+
+                try {
+                    testDecompress(bytes);
+                    testDecompress(repetitive);
+                } catch (Throwable e) {
+                    throw new AssertionError(String.format("seed=%s, len=%s", seed, len), e);
+                }
+            }
+        }
+
+        testDecompress(new byte[1024 * 1024]);
+
+        try (ZipFile zf = new ZipFile(Paths.get(Zstd.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toFile())) {
+            for (ZipEntry entry : Collections.list(zf.entries())) {
+                if (!entry.isDirectory()) {
+                    byte[] bytes = zf.getInputStream(entry).readAllBytes();
+                    try {
+                        testDecompress(bytes);
+                    } catch (Throwable e) {
+                        throw new AssertionError("entry=" + entry.getName(), e);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void testMalformedInput() throws Throwable {
+        byte[] bytes = new byte[4096];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (i % 100);
+        }
+        byte[] compressed = compress(bytes);
+        assertTrue(compressed.length < bytes.length);
+
+        byte[] output = new byte[bytes.length];
+        assertThrows(IOException.class, () -> Lz4Decompressor.decompress(compressed, 0, compressed.length - 1, output, 0, output.length));
+        assertThrows(IOException.class, () -> Lz4Decompressor.decompress(compressed, 0, compressed.length, output, 0, output.length - 1));
+        assertThrows(IOException.class, () -> Lz4Decompressor.decompress(compressed, 0, compressed.length, new byte[output.length + 1], 0, output.length + 1));
+
+        // The offset of the first match points before the start of the output
+        byte[] invalidOffset = {0x10, 'a', 0x02, 0x00, 0x00};
+        assertThrows(IOException.class, () -> Lz4Decompressor.decompress(invalidOffset, 0, invalidOffset.length, new byte[64], 0, 64));
+
+        Random random = new Random(0);
+        for (int i = 0; i < 1000; i++) {
+            byte[] corrupted = compressed.clone();
+            corrupted[random.nextInt(corrupted.length)] = (byte) random.nextInt();
+            try {
+                Lz4Decompressor.decompress(corrupted, 0, corrupted.length, output, 0, output.length);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
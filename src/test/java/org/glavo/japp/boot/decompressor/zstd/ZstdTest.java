@@ -16,12 +16,15 @@
 package org.glavo.japp.boot.decompressor.zstd;
 
 import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
 import org.junit.jupiter.api.Test;
 
 import java.nio.ByteBuffer;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Random;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
@@ -102,4 +105,46 @@ public class ZstdTest {
             }
         }
     }
+
+    @Test
+    void testDictionary() throws Throwable {
+        List<byte[]> samples = new ArrayList<>();
+        for (Class<?> cls : new Class<?>[]{Zstd.class, Test.class}) {
+            try (ZipFile zf = new ZipFile(Paths.get(cls.getProtectionDomain().getCodeSource().getLocation().toURI()).toFile())) {
+                for (ZipEntry entry : Collections.list(zf.entries())) {
+                    if (entry.getName().endsWith(".class")) {
+                        samples.add(zf.getInputStream(entry).readAllBytes());
+                    }
+                }
+            }
+        }
+
+        byte[] buffer = new byte[16 * 1024];
+        long dictionarySize = Zstd.trainFromBuffer(samples.toArray(new byte[0][]), buffer);
+        assertFalse(Zstd.isError(dictionarySize));
+        byte[] dictionaryBytes = Arrays.copyOf(buffer, (int) dictionarySize);
+
+        ZstdDictionary dictionary = new ZstdDictionary(dictionaryBytes);
+        ZstdFrameDecompressor decompressor = new ZstdFrameDecompressor();
+
+        for (int level : new int[]{1, 8, 19}) {
+            try (ZstdCompressCtx ctx = new ZstdCompressCtx()) {
+                ctx.setLevel(level);
+                ctx.loadDict(dictionaryBytes);
+
+                for (byte[] sample : samples) {
+                    byte[] compressed = ctx.compress(sample);
+                    assertEquals(dictionary.getId(), ZstdFrameDecompressor.getDictionaryId(ByteBuffer.wrap(compressed)));
+
+                    byte[] decompressed = new byte[sample.length];
+                    int decompressedLen = decompressor.decompress(compressed, 0, compressed.length, decompressed, 0, decompressed.length, dictionary);
+                    assertEquals(sample.length, decompressedLen);
+                    assertArrayEquals(sample, decompressed);
+
+                    assertThrows(MalformedInputException.class,
+                            () -> decompressor.decompress(compressed, 0, compressed.length, decompressed, 0, decompressed.length));
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.boot.jappfs;
+
+import org.glavo.japp.boot.JAppResourceGroup;
+import org.glavo.japp.boot.JAppResourceRoot;
+import org.glavo.japp.packer.JAppTestFile;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JAppFileSystemTest {
+
+    private static JAppTestFile open(String... names) throws Throwable {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        for (String name : names) {
+            entries.put(name, name.getBytes(StandardCharsets.UTF_8));
+        }
+
+        JAppTestFile japp = JAppTestFile.of(entries);
+        JAppResourceGroup group = japp.getGroup(0);
+        group.initName("test.jar");
+        japp.getReader().getRoot(JAppResourceRoot.CLASSPATH).put("test.jar", group);
+        return japp;
+    }
+
+    private static JAppFileSystem.Node resolve(JAppFileSystem fileSystem, String path) throws Throwable {
+        return fileSystem.resolve((JAppPath) fileSystem.getPath(path));
+    }
+
+    private static List<String> getChildNames(JAppFileSystem.Node node) {
+        List<String> names = new ArrayList<>();
+        for (JAppFileSystem.Node child : ((JAppFileSystem.DirectoryNode<?>) node).getChildren()) {
+            names.add(child.getName());
+        }
+        return names;
+    }
+
+    @Test
+    public void testTree() throws Throwable {
+        List<String> names = new ArrayList<>(Arrays.asList(
+                "dir/sub2/e.txt", "a.txt", "dir/b.txt", "dir-x/d.txt", "dir/sub/c.txt", "dir/sub/f.txt"));
+        for (int i = 0; i < 20; i++) {
+            names.add("many/file" + i + ".txt");
+        }
+
+        try (JAppTestFile japp = open(names.toArray(new String[0]))) {
+            JAppFileSystem fileSystem = new JAppFileSystem(null, japp.getReader());
+
+            // Every resource is a file at the end of its path
+            for (String name : names) {
+                JAppFileSystem.Node node = resolve(fileSystem, "/classpath/test.jar/" + name);
+                assertTrue(node instanceof JAppFileSystem.ResourceNode, name);
+                assertEquals(name, ((JAppFileSystem.ResourceNode) node).getResource().getName());
+            }
+
+            assertEquals(Arrays.asList("a.txt", "dir", "dir-x", "many"), getChildNames(resolve(fileSystem, "/classpath/test.jar")));
+            assertEquals(Arrays.asList("b.txt", "sub", "sub2"), getChildNames(resolve(fileSystem, "/classpath/test.jar/dir")));
+            assertEquals(Arrays.asList("c.txt", "f.txt"), getChildNames(resolve(fileSystem, "/classpath/test.jar/dir/sub")));
+            assertEquals(20, getChildNames(resolve(fileSystem, "/classpath/test.jar/many")).size());
+
+            // Directories with more children than the threshold are searched through the index
+            assertThrows(NoSuchFileException.class, () -> resolve(fileSystem, "/classpath/test.jar/many/file20.txt"));
+            assertThrows(NoSuchFileException.class, () -> resolve(fileSystem, "/classpath/test.jar/dir/missing"));
+            assertThrows(NoSuchFileException.class, () -> resolve(fileSystem, "/classpath/test.jar/a.txt/child"));
+        }
+    }
+
+    @Test
+    public void testNameConflict() throws Throwable {
+        // "a-b" sorts between "a" and "a/c" by character, but not element by element
+        try (JAppTestFile japp = open("a/c", "a-b", "a")) {
+            JAppFileSystem fileSystem = new JAppFileSystem(null, japp.getReader());
+            assertThrows(AssertionError.class, () -> resolve(fileSystem, "/classpath/test.jar/a"));
+        }
+    }
+
+    @Test
+    public void testPaths() throws Throwable {
+        try (JAppTestFile japp = open("a.txt")) {
+            JAppFileSystem fileSystem = new JAppFileSystem(null, japp.getReader());
+
+            Path root = fileSystem.getRootPath();
+            assertEquals("/classpath", root.resolve("classpath").toString());
+
+            // Resolving against a path whose elements have been parsed reuses them
+            Path classpath = fileSystem.getPath("/classpath");
+            assertEquals(1, classpath.getNameCount());
+            Path group = classpath.resolve("test.jar");
+            assertEquals("/classpath/test.jar", group.toString());
+            assertEquals(2, group.getNameCount());
+            assertEquals("test.jar", group.getName(1).toString());
+            assertTrue(fileSystem.resolve((JAppPath) group.resolve("a.txt")) instanceof JAppFileSystem.ResourceNode);
+
+            Path path = fileSystem.getPath("/a/b/c/d");
+            assertEquals("b/c", path.subpath(1, 3).toString());
+            assertEquals("a", path.subpath(0, 1).toString());
+            assertEquals("a/b/c/d", path.subpath(0, 4).toString());
+        }
+    }
+}
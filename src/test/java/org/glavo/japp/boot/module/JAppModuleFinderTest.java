@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.boot.module;
+
+import org.glavo.japp.boot.JAppReader;
+import org.glavo.japp.boot.JAppResourceGroup;
+import org.glavo.japp.packer.JAppResourceInfo;
+import org.glavo.japp.packer.JAppResourcesWriter;
+import org.glavo.japp.packer.JAppTestFile;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.module.ModuleDescriptor;
+import java.lang.module.ModuleReference;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JAppModuleFinderTest {
+
+    /**
+     * Returns a class file used as the content of every class in the modules, the finder never parses it.
+     */
+    private static byte[] readClassFile() throws IOException {
+        try (InputStream input = JAppModuleFinderTest.class.getResourceAsStream("JAppModuleFinderTest.class")) {
+            return input.readAllBytes();
+        }
+    }
+
+    /**
+     * Writes automatic modules named {@code prefix0} to {@code prefix<count - 1>}, each containing the class {@code Main}
+     * in the package of its name and, if {@code withServices} is true, providing it as a {@link Runnable}.
+     */
+    private static JAppTestFile openModules(String prefix, int count, boolean withServices) throws IOException {
+        byte[] classFile = readClassFile();
+        return JAppTestFile.open(JAppTestFile.write(writer -> {
+            for (int i = 0; i < count; i++) {
+                try (JAppResourcesWriter resourcesWriter = writer.createResourcesWriter(prefix + i, true)) {
+                    resourcesWriter.writeResource(new JAppResourceInfo(prefix + i + "/Main.class"), classFile);
+                    if (withServices) {
+                        resourcesWriter.writeResource(new JAppResourceInfo("META-INF/services/java.lang.Runnable"),
+                                (prefix + i + ".Main\n").getBytes(StandardCharsets.UTF_8));
+                    }
+                }
+            }
+        }));
+    }
+
+    private static Map<String, JAppResourceGroup> getModules(JAppTestFile japp, String prefix) {
+        List<JAppResourceGroup> groups = japp.getGroups();
+        Map<String, JAppResourceGroup> modules = new LinkedHashMap<>();
+        for (int i = 0; i < groups.size(); i++) {
+            groups.get(i).initName(prefix + i);
+            modules.put(prefix + i, groups.get(i));
+        }
+        return modules;
+    }
+
+    @Test
+    public void testModuleInfo() throws Throwable {
+        byte[] classFile = readClassFile();
+
+        byte[] file = JAppTestFile.write(writer -> {
+            try (JAppResourcesWriter resourcesWriter = writer.createResourcesWriter("demo", true)) {
+                resourcesWriter.writeResource(new JAppResourceInfo("META-INF/MANIFEST.MF"),
+                        "Manifest-Version: 1.0\r\nMain-Class: demo.Main\r\n\r\n".getBytes(StandardCharsets.UTF_8));
+                resourcesWriter.writeResource(new JAppResourceInfo("demo/Main.class"), classFile);
+                resourcesWriter.writeResource(new JAppResourceInfo("demo/impl/Impl.class"), classFile);
+                resourcesWriter.writeResource(new JAppResourceInfo("META-INF/services/java.lang.Runnable"),
+                        "demo.impl.Impl\n".getBytes(StandardCharsets.UTF_8));
+                resourcesWriter.writeResource(11, new JAppResourceInfo("demo/v11/Impl.class"), classFile);
+                resourcesWriter.writeResource(11, new JAppResourceInfo("META-INF/services/java.lang.Runnable"), new byte[0]);
+            }
+            try (JAppResourcesWriter resourcesWriter = writer.createResourcesWriter("test.jar", false)) {
+                resourcesWriter.writeResource(new JAppResourceInfo("META-INF/MANIFEST.MF"),
+                        "Manifest-Version: 1.0\r\nMain-Class: test.Test\r\n\r\n".getBytes(StandardCharsets.UTF_8));
+                resourcesWriter.writeResource(new JAppResourceInfo("test/Test.class"), classFile);
+            }
+            try (JAppResourcesWriter resourcesWriter = writer.createResourcesWriter("malformed", true)) {
+                resourcesWriter.writeResource(new JAppResourceInfo("META-INF/MANIFEST.MF"),
+                        "Manifest-Version: 1.0\r\n: no name\r\n\r\n".getBytes(StandardCharsets.UTF_8));
+                resourcesWriter.writeResource(new JAppResourceInfo("malformed/Main.class"), classFile);
+            }
+        });
+
+        try (JAppTestFile japp = JAppTestFile.open(file)) {
+            JAppReader reader = japp.getReader();
+            List<JAppResourceGroup> groups = japp.getGroups();
+            assertEquals(4, groups.size());
+            assertNull(groups.get(2).getModuleInfo());
+
+            // A malformed manifest is ignored
+            assertNull(groups.get(3).getModuleInfo().getMainClass());
+
+            // Without the stored module info, the descriptor is derived from the resources in the same way
+            JAppResourceGroup classPathGroup = groups.get(2);
+            classPathGroup.initName("test");
+            ModuleDescriptor derived = new JAppModuleFinder(reader, Map.of("test", classPathGroup), null)
+                    .find("test").orElseThrow().descriptor();
+            assertEquals(Optional.of("test.Test"), derived.mainClass());
+
+            JAppResourceGroup base = groups.get(0);
+            base.initName("demo");
+
+            JAppModuleInfo info = base.getModuleInfo();
+            assertNotNull(info);
+            assertFalse(info.isExplicit());
+            assertEquals(Set.of("demo", "demo.impl"), info.getPackages());
+            assertEquals(Map.of("java.lang.Runnable", List.of("demo.impl.Impl")), info.getServices());
+            assertEquals("demo.Main", info.getMainClass());
+
+            ModuleDescriptor descriptor = info.toAutomaticModuleDescriptor("demo");
+            assertEquals(Optional.of("demo.Main"), descriptor.mainClass());
+            assertEquals(1, descriptor.provides().size());
+
+            // The service file of the newer release replaces the service file of the base group
+            base.addAll(groups.get(1));
+            Map<String, JAppResourceGroup> modules = new HashMap<>();
+            modules.put("demo", base);
+            descriptor = new JAppModuleFinder(reader, modules, null).find("demo").orElseThrow().descriptor();
+            assertTrue(descriptor.isAutomatic());
+            assertEquals(Set.of("demo", "demo.impl", "demo.v11"), descriptor.packages());
+            assertTrue(descriptor.provides().isEmpty());
+            assertEquals(Optional.of("demo.Main"), descriptor.mainClass());
+        }
+    }
+
+    @Test
+    public void testParallelModuleFinder() throws Throwable {
+        try (JAppTestFile japp = openModules("demo", 32, true)) {
+            JAppReader reader = japp.getReader();
+            Map<String, JAppResourceGroup> modules = getModules(japp, "demo");
+
+            Map<String, ModuleDescriptor> expected = new HashMap<>();
+            for (ModuleReference reference : new JAppModuleFinder(reader, modules, null, false).findAll()) {
+                expected.put(reference.descriptor().name(), reference.descriptor());
+            }
+            assertEquals(modules.keySet(), expected.keySet());
+
+            Map<String, ModuleDescriptor> actual = new HashMap<>();
+            for (ModuleReference reference : new JAppModuleFinder(reader, modules, null, true).findAll()) {
+                actual.put(reference.descriptor().name(), reference.descriptor());
+            }
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void testFindModuleByName() throws Throwable {
+        try (JAppTestFile japp = openModules("plugin", 4, false)) {
+            JAppReader reader = japp.getReader();
+            Map<String, JAppResourceGroup> modules = getModules(japp, "plugin");
+
+            JAppModuleFinder finder = new JAppModuleFinder(reader, modules, null, false);
+            ModuleReference reference = finder.find("plugin2").orElseThrow(AssertionError::new);
+            assertEquals("plugin2", reference.descriptor().name());
+            assertEquals(Collections.singleton("plugin2"), reference.descriptor().packages());
+            assertSame(reference, finder.find("plugin2").orElse(null));
+            assertFalse(finder.find("plugin4").isPresent());
+
+            Set<ModuleReference> all = finder.findAll();
+            assertEquals(4, all.size());
+            assertTrue(all.contains(reference));
+        }
+    }
+}
@@ -39,6 +39,9 @@ public class ByteArrayPoolTest {
         for (int i = 0; i < n; i++) {
             assertEquals(i, builder.add(testString(i)));
             assertEquals(i, builder.add(testString(i)));
+
+            byte[] padded = ("_" + new String(testString(i), US_ASCII) + "_").getBytes(US_ASCII);
+            assertEquals(i, builder.add(padded, 1, padded.length - 2));
         }
 
         ByteArrayPool pool = builder.toPool();
@@ -65,5 +68,6 @@ public class ByteArrayPoolTest {
         test(0);
         test(10);
         test(100);
+        test(100000);
     }
 }
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.packer;
+
+import org.glavo.japp.boot.JAppBootMetadata;
+import org.glavo.japp.boot.JAppReader;
+import org.glavo.japp.boot.JAppResource;
+import org.glavo.japp.boot.JAppResourceCache;
+import org.glavo.japp.boot.JAppResourceGroup;
+import org.glavo.japp.boot.decompressor.zstd.ZstdFrameDecompressor;
+import org.glavo.japp.io.ByteBufferOutputStream;
+import org.glavo.japp.launcher.JAppConfigGroup;
+import org.glavo.japp.packer.compressor.CompressionProfile;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * A japp file written in memory and opened by a {@link JAppReader} that reads from a copy of its bytes.
+ * <p>
+ * The module and class path maps of the reader are empty and mutable, tests put the groups they need into them.
+ */
+public final class JAppTestFile implements AutoCloseable {
+
+    @FunctionalInterface
+    public interface WriterAction {
+        void write(JAppWriter writer) throws IOException;
+    }
+
+    /**
+     * Returns the entries of the jar except directories, in the order of the jar.
+     */
+    public static Map<String, byte[]> readEntries(Path jar) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipFile zipFile = new ZipFile(jar.toFile())) {
+            Enumeration<? extends ZipEntry> enumeration = zipFile.entries();
+            while (enumeration.hasMoreElements()) {
+                ZipEntry entry = enumeration.nextElement();
+                if (!entry.isDirectory()) {
+                    entries.put(entry.getName(), zipFile.getInputStream(entry).readAllBytes());
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Returns the jar of JUnit, which is used as a real-world sample of class files and resources.
+     */
+    public static Path getTestJar() {
+        try {
+            return Paths.get(Test.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        } catch (URISyntaxException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    public static Map<String, byte[]> readTestJarEntries() throws IOException {
+        return readEntries(getTestJar());
+    }
+
+    /**
+     * Writes a japp file whose resources are written by the action.
+     */
+    public static byte[] write(WriterAction action) throws IOException {
+        ByteBufferOutputStream output = new ByteBufferOutputStream();
+        try (JAppWriter writer = new JAppWriter(output, new JAppConfigGroup())) {
+            action.write(writer);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Writes the entries as the resources of a single group named {@code test.jar}.
+     */
+    public static byte[] write(Map<String, byte[]> entries, int threads, int solidBlockSize, CompressionProfile profile) throws IOException {
+        ByteBufferOutputStream output = new ByteBufferOutputStream();
+        try (JAppWriter writer = new JAppWriter(output, new JAppConfigGroup(), threads, solidBlockSize, null, profile)) {
+            try (JAppResourcesWriter resourcesWriter = writer.createResourcesWriter("test.jar", false)) {
+                for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                    resourcesWriter.writeResource(new JAppResourceInfo(entry.getKey()), entry.getValue());
+                }
+            }
+        }
+        return output.toByteArray();
+    }
+
+    public static JAppTestFile of(Map<String, byte[]> entries) throws IOException {
+        return of(entries, 0);
+    }
+
+    public static JAppTestFile of(Map<String, byte[]> entries, int solidBlockSize) throws IOException {
+        return open(write(entries, 1, solidBlockSize, CompressionProfile.BALANCED));
+    }
+
+    public static JAppTestFile open(byte[] file) throws IOException {
+        return open(file, null);
+    }
+
+    public static JAppTestFile open(byte[] file, JAppResourceCache resourceCache) throws IOException {
+        ZstdFrameDecompressor decompressor = new ZstdFrameDecompressor();
+        JAppBootMetadata metadata = readBootMetadata(file, decompressor);
+
+        int bootMetadataOffset = (int) ByteBuffer.wrap(file).order(ByteOrder.LITTLE_ENDIAN).getLong(file.length - 40);
+        ByteBuffer mappedBuffer = ByteBuffer.allocateDirect(bootMetadataOffset);
+        mappedBuffer.put(file, 0, bootMetadataOffset).flip();
+
+        JAppReader reader = new JAppReader(null, 0, mappedBuffer.asReadOnlyBuffer(), metadata.getPool(), metadata.getDictionaries(),
+                decompressor, new HashMap<>(), new HashMap<>(), resourceCache);
+        return new JAppTestFile(reader, metadata.getGroups());
+    }
+
+    public static JAppBootMetadata readBootMetadata(byte[] file, ZstdFrameDecompressor decompressor) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(file).order(ByteOrder.LITTLE_ENDIAN);
+        int bootMetadataOffset = (int) buffer.getLong(file.length - 40);
+        int launcherMetadataOffset = (int) buffer.getLong(file.length - 32);
+
+        ByteBuffer metadataBuffer = ByteBuffer.allocateDirect(launcherMetadataOffset - bootMetadataOffset).order(ByteOrder.LITTLE_ENDIAN);
+        metadataBuffer.put(file, bootMetadataOffset, metadataBuffer.capacity()).flip();
+        return JAppBootMetadata.readFrom(metadataBuffer, decompressor);
+    }
+
+    public static byte[] readResource(JAppReader reader, JAppResource resource) throws IOException {
+        ByteBuffer content = reader.readResource(resource);
+        byte[] bytes = new byte[content.remaining()];
+        content.get(bytes);
+        return bytes;
+    }
+
+    private final JAppReader reader;
+    private final List<JAppResourceGroup> groups;
+
+    private JAppTestFile(JAppReader reader, List<JAppResourceGroup> groups) {
+        this.reader = reader;
+        this.groups = groups;
+    }
+
+    public JAppReader getReader() {
+        return reader;
+    }
+
+    /**
+     * Returns the groups in the order they were written.
+     */
+    public List<JAppResourceGroup> getGroups() {
+        return groups;
+    }
+
+    public JAppResourceGroup getGroup(int index) {
+        return groups.get(index);
+    }
+
+    public byte[] readResource(JAppResource resource) throws IOException {
+        return readResource(reader, resource);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
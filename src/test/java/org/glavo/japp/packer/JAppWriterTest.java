@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.packer;
+
+import com.github.luben.zstd.ZstdCompressCtx;
+import org.glavo.japp.CompressionMethod;
+import org.glavo.japp.boot.JAppResource;
+import org.glavo.japp.boot.JAppResourceGroup;
+import org.glavo.japp.io.ByteBufferOutputStream;
+import org.glavo.japp.launcher.JAppConfigGroup;
+import org.glavo.japp.packer.compressor.CompressionCache;
+import org.glavo.japp.packer.compressor.CompressionProfile;
+import org.glavo.japp.packer.processor.LocalClassPathProcessor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JAppWriterTest {
+
+    private static byte[] write(Map<String, byte[]> entries, int threads) throws Throwable {
+        return write(entries, threads, 0);
+    }
+
+    private static byte[] write(Map<String, byte[]> entries, int threads, int solidBlockSize) throws Throwable {
+        return write(entries, threads, solidBlockSize, CompressionProfile.BALANCED);
+    }
+
+    private static byte[] write(Map<String, byte[]> entries, int threads, int solidBlockSize, CompressionProfile profile) throws Throwable {
+        return JAppTestFile.write(entries, threads, solidBlockSize, profile);
+    }
+
+    @Test
+    public void testParallelOutput() throws Throwable {
+        Map<String, byte[]> entries = JAppTestFile.readTestJarEntries();
+
+        byte[] expected = write(entries, 1);
+        assertArrayEquals(expected, write(entries, 2));
+        assertArrayEquals(expected, write(entries, 8));
+    }
+
+    private static byte[] writeJars(List<Path> jars, int threads) throws Throwable {
+        return writeJars(jars, threads, null);
+    }
+
+    private static byte[] writeJars(List<Path> jars, int threads, CompressionCache cache) throws Throwable {
+        ByteBufferOutputStream output = new ByteBufferOutputStream();
+        try (JAppWriter writer = new JAppWriter(output, new JAppConfigGroup(), threads, 0, cache)) {
+            for (Path jar : jars) {
+                LocalClassPathProcessor.addJar(writer, jar, false);
+            }
+        }
+        return output.toByteArray();
+    }
+
+    @Test
+    public void testParallelIngestion() throws Throwable {
+        List<Path> jars = Arrays.asList(
+                JAppTestFile.getTestJar(),
+                Paths.get(ZstdCompressCtx.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+        );
+
+        byte[] expected = writeJars(jars, 1);
+        assertArrayEquals(expected, writeJars(jars, 2));
+        assertArrayEquals(expected, writeJars(jars, 8));
+    }
+
+    @Test
+    public void testSolidBlocks() throws Throwable {
+        Map<String, byte[]> entries = JAppTestFile.readTestJarEntries();
+
+        byte[] file = write(entries, 1, 64 * 1024);
+        assertArrayEquals(file, write(entries, 4, 64 * 1024));
+
+        try (JAppTestFile japp = JAppTestFile.open(file)) {
+            JAppResourceGroup group = japp.getGroup(0);
+            assertEquals(entries.keySet(), group.keySet());
+
+            int solidCount = 0;
+            for (JAppResource resource : group.values()) {
+                if (resource.getMethod() == CompressionMethod.SOLID) {
+                    solidCount++;
+                }
+
+                assertArrayEquals(entries.get(resource.getName()), japp.readResource(resource), resource.getName());
+            }
+            assertTrue(solidCount > 0);
+        }
+    }
+
+    @Test
+    public void testLz4() throws Throwable {
+        Map<String, byte[]> entries = JAppTestFile.readTestJarEntries();
+
+        for (int solidBlockSize : new int[]{0, 64 * 1024}) {
+            byte[] file = write(entries, 1, solidBlockSize, CompressionProfile.FAST_START);
+            assertArrayEquals(file, write(entries, 4, solidBlockSize, CompressionProfile.FAST_START));
+
+            try (JAppTestFile japp = JAppTestFile.open(file)) {
+                JAppResourceGroup group = japp.getGroup(0);
+                assertEquals(entries.keySet(), group.keySet());
+
+                for (JAppResource resource : group.values()) {
+                    assertNotEquals(CompressionMethod.ZSTD, resource.getMethod());
+                    assertNotEquals(CompressionMethod.ZSTD_DICT, resource.getMethod());
+                    assertArrayEquals(entries.get(resource.getName()), japp.readResource(resource), resource.getName());
+                }
+            }
+            assertTrue(file.length < write(entries, 1, solidBlockSize, CompressionProfile.BALANCED).length * 2);
+        }
+    }
+
+    private static byte[] writeJar(Path jar, int threads, CompressionProfile profile) throws Throwable {
+        ByteBufferOutputStream output = new ByteBufferOutputStream();
+        try (JAppWriter writer = new JAppWriter(output, new JAppConfigGroup(), threads, 0, null, CompressionProfile.FAST_START)) {
+            LocalClassPathProcessor.addJar(writer, jar, false, profile);
+        }
+        return output.toByteArray();
+    }
+
+    @Test
+    public void testCompressionProfiles() throws Throwable {
+        Path jar = JAppTestFile.getTestJar();
+        Map<String, byte[]> entries = JAppTestFile.readEntries(jar);
+
+        Map<String, String> noneOptions = new HashMap<>();
+        noneOptions.put("compress", "none");
+        Map<String, String> autoOptions = new HashMap<>();
+        autoOptions.put("compress", "auto");
+        autoOptions.put("level", "3");
+
+        CompressionProfile[] profiles = {
+                null,
+                CompressionProfile.BALANCED.withOptions(noneOptions),
+                CompressionProfile.BALANCED.withOptions(autoOptions),
+                CompressionProfile.MAX,
+        };
+
+        for (CompressionProfile profile : profiles) {
+            byte[] file = writeJar(jar, 1, profile);
+            assertArrayEquals(file, writeJar(jar, 4, profile));
+
+            try (JAppTestFile japp = JAppTestFile.open(file)) {
+                JAppResourceGroup group = japp.getGroup(0);
+                assertEquals(entries.keySet(), group.keySet());
+
+                for (JAppResource resource : group.values()) {
+                    if (profile == profiles[1]) {
+                        assertEquals(CompressionMethod.NONE, resource.getMethod());
+                    }
+                    assertArrayEquals(entries.get(resource.getName()), japp.readResource(resource), resource.getName());
+                }
+            }
+        }
+    }
+
+    private static byte[] writeDuplicates(Map<String, byte[]> entries, int threads, int solidBlockSize) throws Throwable {
+        ByteBufferOutputStream output = new ByteBufferOutputStream();
+        try (JAppWriter writer = new JAppWriter(output, new JAppConfigGroup(), threads, solidBlockSize)) {
+            for (String name : new String[]{"a.jar", "b.jar"}) {
+                try (JAppResourcesWriter resourcesWriter = writer.createResourcesWriter(name, false)) {
+                    for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                        resourcesWriter.writeResource(new JAppResourceInfo(entry.getKey()), entry.getValue());
+                    }
+                }
+            }
+        }
+        return output.toByteArray();
+    }
+
+    @Test
+    public void testDeduplication() throws Throwable {
+        Map<String, byte[]> entries = JAppTestFile.readTestJarEntries();
+
+        for (int solidBlockSize : new int[]{0, 64 * 1024}) {
+            byte[] file = writeDuplicates(entries, 1, solidBlockSize);
+            assertArrayEquals(file, writeDuplicates(entries, 4, solidBlockSize));
+            assertTrue(file.length < write(entries, 1, solidBlockSize).length * 1.1);
+
+            try (JAppTestFile japp = JAppTestFile.open(file)) {
+                List<JAppResourceGroup> groups = japp.getGroups();
+                assertEquals(2, groups.size());
+
+                for (JAppResource resource : groups.get(1).values()) {
+                    JAppResource original = groups.get(0).get(resource.getName());
+                    assertEquals(original.getOffset(), resource.getOffset());
+                    assertEquals(original.getMethod(), resource.getMethod());
+                    assertArrayEquals(entries.get(resource.getName()), japp.readResource(resource), resource.getName());
+                    assertArrayEquals(entries.get(resource.getName()), japp.readResource(original), resource.getName());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testResourceSizeLimit() throws Throwable {
+        JAppWriter.checkResourceSize("max.bin", JAppResource.MAX_SIZE);
+        IOException exception = assertThrows(IOException.class, () -> JAppWriter.checkResourceSize("large.bin", JAppResource.MAX_SIZE + 1L));
+        assertTrue(exception.getMessage().contains("large.bin"));
+
+        // The file is rejected before it is read, so a sparse file is enough
+        Path dir = Files.createTempDirectory("japp");
+        Path file = dir.resolve("large.bin");
+        try {
+            try (RandomAccessFile output = new RandomAccessFile(file.toFile(), "rw")) {
+                output.setLength(3L << 30);
+            }
+            assertThrows(IOException.class, () -> LocalClassPathProcessor.loadDir(dir, false));
+        } finally {
+            Files.deleteIfExists(file);
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void testCompressionCache(@TempDir Path cacheDir) throws Throwable {
+        List<Path> jars = Collections.singletonList(JAppTestFile.getTestJar());
+        byte[] expected = writeJars(jars, 1, null);
+
+        for (int i = 0; i < 2; i++) {
+            try (CompressionCache cache = new CompressionCache(cacheDir, CompressionCache.DEFAULT_MAX_SIZE)) {
+                assertArrayEquals(expected, writeJars(jars, 2, cache));
+                if (i == 0) {
+                    assertEquals(0, cache.getHitCount());
+                } else {
+                    assertTrue(cache.getHitCount() > 0);
+                    assertEquals(0, cache.getMissCount());
+                }
+            }
+        }
+    }
+}
@@ -20,6 +20,7 @@ import org.glavo.japp.boot.decompressor.classfile.ByteArrayPool;
 import org.glavo.japp.boot.decompressor.classfile.ClassFileDecompressor;
 import org.glavo.japp.boot.decompressor.zstd.ZstdFrameDecompressor;
 import org.glavo.japp.packer.compressor.classfile.ByteArrayPoolBuilder;
+import org.glavo.japp.packer.compressor.classfile.ClassFileCompressor;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.DynamicTest;
 import org.junit.jupiter.api.Test;
@@ -34,11 +35,13 @@ import java.util.zip.ZipFile;
 
 public class ClassFileCompressorTest {
 
-    private static DynamicTest createTest(String name, byte[] bytes) {
+    private static final Compressor RAW_TAIL_COMPRESSOR = new ClassFileCompressor(Compressors.ZSTD, false);
+
+    private static DynamicTest createTest(String name, byte[] bytes, Compressor compressor) {
         return DynamicTest.dynamicTest("Compress " + name, () -> {
             ByteArrayPoolBuilder poolBuilder = new ByteArrayPoolBuilder();
             CompressContext context = () -> poolBuilder;
-            CompressResult result = Compressors.CLASSFILE.compress(context, bytes);
+            CompressResult result = compressor.compress(context, bytes);
 
             byte[] output = new byte[bytes.length];
             ClassFileDecompressor.decompress(
@@ -77,7 +80,8 @@ public class ClassFileCompressorTest {
                 if (name.endsWith(".class")) {
                     byte[] bytes = zipFile.getInputStream(element).readAllBytes();
 
-                    tests.add(createTest(name, bytes));
+                    tests.add(createTest(name, bytes, Compressors.CLASSFILE));
+                    tests.add(createTest(name + " (raw tail)", bytes, RAW_TAIL_COMPRESSOR));
                     entries.put(name, bytes);
                 }
             }
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.packer.compressor;
+
+import org.glavo.japp.CompressionMethod;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompressionCacheTest {
+
+    @TempDir
+    Path cacheDir;
+
+    private static long entriesSize(Path dir) throws IOException {
+        try (Stream<Path> stream = Files.walk(dir)) {
+            return stream.filter(Files::isRegularFile)
+                    .filter(file -> file.getParent() != dir)
+                    .mapToLong(file -> file.toFile().length())
+                    .sum();
+        }
+    }
+
+    @Test
+    public void testGetAndPut() throws IOException {
+        byte[] source = new byte[4096];
+        new Random(0).nextBytes(source);
+        byte[] compressed = Arrays.copyOf(source, 100);
+
+        try (CompressionCache cache = new CompressionCache(cacheDir, CompressionCache.DEFAULT_MAX_SIZE)) {
+            CompressionCache.Key key = cache.getKey(CompressionMethod.ZSTD, 8, null, source, 0, source.length);
+            assertNotNull(key);
+            assertNull(cache.get(key));
+            cache.put(key, compressed, 0, compressed.length);
+        }
+
+        try (CompressionCache cache = new CompressionCache(cacheDir, CompressionCache.DEFAULT_MAX_SIZE)) {
+            assertArrayEquals(compressed, cache.get(cache.getKey(CompressionMethod.ZSTD, 8, null, source, 0, source.length)));
+            assertNull(cache.get(cache.getKey(CompressionMethod.ZSTD, 9, null, source, 0, source.length)));
+            assertNull(cache.get(cache.getKey(CompressionMethod.ZSTD, 8, null, source, 1, source.length - 1)));
+
+            source[0]++;
+            assertNull(cache.get(cache.getKey(CompressionMethod.ZSTD, 8, null, source, 0, source.length)));
+
+            assertEquals(1, cache.getHitCount());
+            assertEquals(3, cache.getMissCount());
+
+            // Small inputs are not cached
+            assertNull(cache.getKey(CompressionMethod.ZSTD, 8, null, source, 0, 16));
+        }
+    }
+
+    @Test
+    public void testEviction() throws IOException {
+        final long maxSize = 64 * 1024;
+        Random random = new Random(0);
+
+        byte[][] sources = new byte[64][];
+        for (int i = 0; i < sources.length; i++) {
+            byte[] source = new byte[2048];
+            random.nextBytes(source);
+            sources[i] = source;
+
+            try (CompressionCache cache = new CompressionCache(cacheDir, maxSize)) {
+                cache.put(cache.getKey(CompressionMethod.ZSTD, 8, null, source, 0, source.length), source, 0, source.length);
+            }
+
+            assertTrue(entriesSize(cacheDir) <= maxSize);
+        }
+
+        try (CompressionCache cache = new CompressionCache(cacheDir, maxSize)) {
+            byte[] last = sources[sources.length - 1];
+            assertArrayEquals(last, cache.get(cache.getKey(CompressionMethod.ZSTD, 8, null, last, 0, last.length)));
+        }
+    }
+}
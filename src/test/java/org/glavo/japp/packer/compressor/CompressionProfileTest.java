@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.packer.compressor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompressionProfileTest {
+
+    private static Map<String, String> options(String... pairs) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            options.put(pairs[i], pairs[i + 1]);
+        }
+        return options;
+    }
+
+    @Test
+    public void testWithOptions() {
+        Map<String, String> options = options("name", "foo");
+        assertSame(CompressionProfile.BALANCED, CompressionProfile.BALANCED.withOptions(options));
+        assertEquals(options("name", "foo"), options);
+
+        options = options("compress", "lz4", "name", "foo");
+        CompressionProfile profile = CompressionProfile.MAX.withOptions(options);
+        assertEquals(options("name", "foo"), options);
+        assertSame(Compressors.FAST_START, profile.getCompressor());
+        assertEquals(CompressionProfile.MAX.getZstdCompressionLevel(), profile.getZstdCompressionLevel());
+
+        profile = CompressionProfile.FAST_START.withOptions(options("level", "3"));
+        assertSame(Compressors.FAST_START, profile.getCompressor());
+        assertEquals(3, profile.getZstdCompressionLevel());
+
+        profile = CompressionProfile.BALANCED.withOptions(options("compress", "none"));
+        assertSame(Compressors.NONE, profile.getCompressor());
+
+        assertThrows(IllegalArgumentException.class, () -> CompressionProfile.BALANCED.withOptions(options("compress", "gzip")));
+        assertThrows(IllegalArgumentException.class, () -> CompressionProfile.BALANCED.withOptions(options("level", "0")));
+        assertThrows(IllegalArgumentException.class, () -> CompressionProfile.BALANCED.withOptions(options("level", "abc")));
+    }
+
+    @Test
+    public void testOf() {
+        assertSame(CompressionProfile.FAST_START, CompressionProfile.of("fast-start"));
+        assertSame(CompressionProfile.BALANCED, CompressionProfile.of("balanced"));
+        assertSame(CompressionProfile.MAX, CompressionProfile.of("max"));
+        assertThrows(IllegalArgumentException.class, () -> CompressionProfile.of("fast"));
+    }
+}
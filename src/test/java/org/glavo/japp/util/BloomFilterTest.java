@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2023 Glavo
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.glavo.japp.util;
+
+import org.glavo.japp.io.ByteBufferOutputStream;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BloomFilterTest {
+
+    private static final long SEED = 0L;
+    private static final long OTHER_SEED = 1L;
+
+    @Test
+    public void test() throws Throwable {
+        int count = 10000;
+
+        BloomFilter filter = BloomFilter.create(count);
+        for (int i = 0; i < count; i++) {
+            filter.add("org/example/Class" + i + ".class", SEED);
+        }
+        filter.add("资源/文件.txt", SEED);
+
+        ByteBufferOutputStream output = new ByteBufferOutputStream();
+        filter.writeTo(output);
+        ByteBuffer buffer = ByteBuffer.wrap(output.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+        BloomFilter read = BloomFilter.readFrom(buffer);
+        assertFalse(buffer.hasRemaining());
+
+        for (BloomFilter f : new BloomFilter[]{filter, read}) {
+            for (int i = 0; i < count; i++) {
+                String str = "org/example/Class" + i + ".class";
+                assertTrue(f.mightContain(str, SEED), str);
+
+                byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+                assertTrue(f.mightContain(bytes, 0, bytes.length, SEED), str);
+            }
+
+            byte[] bytes = "/资源/文件.txt".getBytes(StandardCharsets.UTF_8);
+            assertTrue(f.mightContain("资源/文件.txt", SEED));
+            assertTrue(f.mightContain(bytes, 1, bytes.length - 1, SEED));
+
+            int falsePositives = 0;
+            for (int i = 0; i < count; i++) {
+                if (f.mightContain("org/example/Missing" + i + ".class", SEED)) {
+                    falsePositives++;
+                }
+                if (f.mightContain("org/example/Class" + i + ".class", OTHER_SEED)) {
+                    falsePositives++;
+                }
+            }
+            assertTrue(falsePositives < count * 2 / 30, "false positives: " + falsePositives);
+        }
+    }
+}